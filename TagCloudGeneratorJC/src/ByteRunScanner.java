@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Skips runs of ASCII bytes of one kind in UTF-8 input: separator bytes
+ * between words, or the word bytes of a word. Word boundaries in
+ * mostly-ASCII text are then found a run at a time instead of a byte at a
+ * time; bytes of multi-byte sequences always stop a run, so the caller
+ * still decodes those one by one.
+ *
+ * <p>
+ * {@link #of(CharClass)} returns a scanner built on the incubating Vector
+ * API, which classifies a whole vector of bytes per step, when the JVM runs
+ * with {@code --add-modules jdk.incubator.vector}; otherwise, or if the
+ * system property {@code tagcloud.vector} is {@code false}, it returns the
+ * scalar scanner, which classifies a byte per step with a table lookup.
+ * Scanners are immutable and may be shared between threads.
+ *
+ * @author Victor Ruan
+ */
+public interface ByteRunScanner {
+
+    /**
+     * Returns the index of the first byte in {@code bytes[from, to)} that is
+     * not an ASCII separator, or {@code to} if there is none.
+     *
+     * @param bytes
+     *            the UTF-8 encoded input; its position and limit are ignored
+     * @param from
+     *            the index of the first byte to examine
+     * @param to
+     *            the index one past the last byte to examine
+     * @return the end of the run of separators starting at {@code from}
+     * @requires 0 <= from <= to <= bytes.capacity()
+     */
+    int skipSeparators(ByteBuffer bytes, int from, int to);
+
+    /**
+     * Returns the index of the first byte in {@code bytes[from, to)} that is
+     * an ASCII separator or not ASCII at all, or {@code to} if there is none.
+     *
+     * @param bytes
+     *            the UTF-8 encoded input; its position and limit are ignored
+     * @param from
+     *            the index of the first byte to examine
+     * @param to
+     *            the index one past the last byte to examine
+     * @return the end of the run of ASCII word bytes starting at {@code from}
+     * @requires 0 <= from <= to <= bytes.capacity()
+     */
+    int skipWord(ByteBuffer bytes, int from, int to);
+
+    /**
+     * Returns the fastest scanner the JVM supports for the ASCII members of
+     * {@code separators}.
+     *
+     * @param separators
+     *            the separator characters
+     * @return the scanner
+     */
+    static ByteRunScanner of(CharClass separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        if (!"false".equals(System.getProperty("tagcloud.vector"))) {
+            try {
+                // Loaded by name, so this class links without the module
+                return (ByteRunScanner) Class.forName("VectorByteRunScanner")
+                        .getConstructor(CharClass.class)
+                        .newInstance(separators);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // jdk.incubator.vector is not in the boot layer
+            }
+        }
+        return new ScalarByteRunScanner(separators);
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of characters compiled for fast membership tests. Characters
+ * in the Basic Multilingual Plane are stored in a flat bitmap that only
+ * extends as far as the largest member (so a Latin-1 class takes four
+ * {@code long}s); supplementary code points fall back to a sorted array of
+ * range boundaries searched with binary search, so a class defined by a
+ * Unicode property stays small.
+ *
+ * @author Victor Ruan
+ */
+public final class CharClass {
+
+    /**
+     * Shift from a character to its bitmap word: log2 of the 64 bits in a
+     * word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of bitmap words covering Latin-1 (U+0000..U+00FF).
+     */
+    private static final int LATIN1_WORDS = 4;
+
+    /**
+     * Bitmap of member BMP characters; bit {@code c} is set iff {@code c} is
+     * a member.
+     */
+    private final long[] bits;
+
+    /**
+     * Boundaries of the member ranges above U+FFFF, ascending: the code
+     * points in {@code [supplementary[2i], supplementary[2i + 1])} are
+     * members.
+     */
+    private final int[] supplementary;
+
+    /**
+     * Skips runs of ASCII members and non-members in UTF-8 bytes; created on
+     * first use.
+     */
+    private volatile ByteRunScanner byteRuns;
+
+    /**
+     * Constructor.
+     *
+     * @param bits
+     *            the BMP bitmap
+     * @param supplementary
+     *            the boundaries of the supplementary ranges
+     */
+    private CharClass(long[] bits, int[] supplementary) {
+        this.bits = bits;
+        this.supplementary = supplementary;
+    }
+
+    /**
+     * Compiles the set of code points in the given {@code CharSequence}.
+     *
+     * @param chars
+     *            the member characters
+     * @return the compiled {@code CharClass}
+     * @ensures of = entries(chars)
+     */
+    public static CharClass of(CharSequence chars) {
+        assert chars != null : "Violation of: chars is not null";
+
+        int maxBmp = 0;
+        int[] codePoints = chars.codePoints().sorted().distinct().toArray();
+        for (int cp : codePoints) {
+            if (Character.isBmpCodePoint(cp)) {
+                maxBmp = cp;
+            }
+        }
+
+        long[] bits = new long[Math.max(LATIN1_WORDS,
+                (maxBmp >>> WORD_SHIFT) + 1)];
+        IntStream.Builder ranges = IntStream.builder();
+        int rangeEnd = -1;
+        for (int cp : codePoints) {
+            if (Character.isBmpCodePoint(cp)) {
+                bits[cp >>> WORD_SHIFT] |= 1L << cp;
+            } else if (cp != rangeEnd) {
+                if (rangeEnd >= 0) {
+                    ranges.add(rangeEnd);
+                }
+                ranges.add(cp);
+                rangeEnd = cp + 1;
+            } else {
+                rangeEnd++;
+            }
+        }
+        if (rangeEnd >= 0) {
+            ranges.add(rangeEnd);
+        }
+        return new CharClass(bits, ranges.build().toArray());
+    }
+
+    /**
+     * Compiles the set of code points that satisfy {@code members}. Every
+     * code point is tested once, here, so the predicate may be as slow as a
+     * Unicode property lookup.
+     *
+     * @param members
+     *            the membership test
+     * @return the compiled {@code CharClass}
+     * @ensures where = {cp : members.test(cp)}
+     */
+    public static CharClass where(IntPredicate members) {
+        assert members != null : "Violation of: members is not null";
+
+        long[] bits = new long[(Character.MAX_VALUE >>> WORD_SHIFT) + 1];
+        int maxBmp = 0;
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            if (members.test(c)) {
+                bits[c >>> WORD_SHIFT] |= 1L << c;
+                maxBmp = c;
+            }
+        }
+
+        IntStream.Builder ranges = IntStream.builder();
+        boolean inRange = false;
+        for (int cp = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                cp <= Character.MAX_CODE_POINT; cp++) {
+            if (members.test(cp) != inRange) {
+                ranges.add(cp);
+                inRange = !inRange;
+            }
+        }
+        if (inRange) {
+            ranges.add(Character.MAX_CODE_POINT + 1);
+        }
+        return new CharClass(Arrays.copyOf(bits,
+                Math.max(LATIN1_WORDS, (maxBmp >>> WORD_SHIFT) + 1)),
+                ranges.build().toArray());
+    }
+
+    /**
+     * Returns the scanner that skips runs of this class's ASCII members, and
+     * of other ASCII characters, in UTF-8 bytes. It is created once per class
+     * and shared.
+     *
+     * @return the scanner
+     */
+    public ByteRunScanner byteRuns() {
+        ByteRunScanner scanner = this.byteRuns;
+        if (scanner == null) {
+            // A race only builds an equivalent scanner twice
+            scanner = ByteRunScanner.of(this);
+            this.byteRuns = scanner;
+        }
+        return scanner;
+    }
+
+    /**
+     * Reports whether the given {@code char} is a member of this class.
+     *
+     * @param c
+     *            the character
+     * @return true iff {@code c} is in this
+     */
+    public boolean contains(char c) {
+        int word = c >>> WORD_SHIFT;
+        return word < this.bits.length && (this.bits[word] & (1L << c)) != 0;
+    }
+
+    /**
+     * Reports whether the given code point is a member of this class.
+     *
+     * @param codePoint
+     *            the code point
+     * @return true iff {@code codePoint} is in this
+     */
+    public boolean contains(int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            return this.contains((char) codePoint);
+        }
+        if (this.supplementary.length == 0) {
+            return false;
+        }
+        // A range starts at each even index and ends before each odd one
+        int i = Arrays.binarySearch(this.supplementary, codePoint);
+        if (i < 0) {
+            return ((-i - 1) & 1) == 1;
+        }
+        return (i & 1) == 0;
+    }
+}
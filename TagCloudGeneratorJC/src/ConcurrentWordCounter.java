@@ -0,0 +1,472 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@code WordCounter} that many threads can update at once. Words are spread
+ * over lock-striped segments, each a {@code HashWordCounter}, so producers
+ * counting different words rarely meet on a lock.
+ *
+ * <p>
+ * Heavy hitters such as "the" would still send every producer to the same
+ * segment, so each thread first counts into a small buffer of its own: a
+ * direct-mapped table of recently seen words and their pending counts. A
+ * pending count reaches its segment when its word is evicted by another
+ * word, when it grows past a threshold, or when the thread calls
+ * {@link #flush()}. A producer must call {@code flush()} when it is done;
+ * {@link #size()}, {@link #forEach(ObjIntConsumer)} and {@link #snapshot()}
+ * see only flushed counts. The buffer pays off only on a thread that counts
+ * many words before it flushes, so a long-lived producer should flush once,
+ * when it stops, not after each input.
+ *
+ * @author Victor Ruan
+ */
+public final class ConcurrentWordCounter implements WordCounter {
+
+    /**
+     * Words each thread buffers; a power of two.
+     */
+    private static final int HOT_SLOTS = 64;
+
+    /**
+     * Pending count at which a buffered word is flushed anyway.
+     */
+    private static final int FLUSH_THRESHOLD = 1 << 10;
+
+    /**
+     * Initial capacity, in chars, of a buffered word.
+     */
+    private static final int INITIAL_WORD_CHARS = 16;
+
+    /**
+     * Segments per available processor.
+     */
+    private static final int SEGMENTS_PER_PROCESSOR = 4;
+
+    /**
+     * Largest number of segments.
+     */
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    /**
+     * One stripe of the table.
+     */
+    private static final class Segment {
+
+        /**
+         * Guards {@code words}.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Counts of the words hashed to this segment.
+         */
+        private final HashWordCounter words = new HashWordCounter();
+    }
+
+    /**
+     * A thread's buffer of recently counted words. It holds no reference to
+     * its counter, so a dropped counter does not stay reachable from the
+     * threads that used it.
+     */
+    private static final class HotKeys {
+
+        /**
+         * Characters of the word in each slot.
+         */
+        private final char[][] chars = new char[HOT_SLOTS][];
+
+        /**
+         * Length of the word in each slot.
+         */
+        private final int[] lengths = new int[HOT_SLOTS];
+
+        /**
+         * {@code String.hashCode()} of the word in each slot.
+         */
+        private final int[] hashes = new int[HOT_SLOTS];
+
+        /**
+         * Unflushed count of the word in each slot; 0 marks an empty slot.
+         */
+        private final int[] pending = new int[HOT_SLOTS];
+
+        /**
+         * Returns the storage of {@code slot}, able to hold {@code length}
+         * chars.
+         *
+         * @param slot
+         *            the slot
+         * @param length
+         *            the word length
+         * @return the slot's char array
+         */
+        char[] reserve(int slot, int length) {
+            char[] word = this.chars[slot];
+            if (word == null || word.length < length) {
+                word = new char[Math.max(length, INITIAL_WORD_CHARS)];
+                this.chars[slot] = word;
+            }
+            this.lengths[slot] = length;
+            return word;
+        }
+    }
+
+    /**
+     * The segments; the length is a power of two.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Number of hash bits that select a segment.
+     */
+    private final int segmentBits;
+
+    /**
+     * Each thread's buffer.
+     */
+    private final ThreadLocal<HotKeys> hotKeys = ThreadLocal
+            .withInitial(HotKeys::new);
+
+    /**
+     * No-argument constructor, sized for the available processors.
+     */
+    public ConcurrentWordCounter() {
+        this(Runtime.getRuntime().availableProcessors()
+                * SEGMENTS_PER_PROCESSOR);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param segments
+     *            the minimum number of segments
+     * @requires segments > 0
+     */
+    public ConcurrentWordCounter(int segments) {
+        assert segments > 0 : "Violation of: segments > 0";
+
+        int n = Integer.highestOneBit(Math.min(segments, MAX_SEGMENTS));
+        if (n < segments && n < MAX_SEGMENTS) {
+            n <<= 1;
+        }
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentBits = Integer.numberOfTrailingZeros(n);
+    }
+
+    /**
+     * Returns the segment of a word. Segments take the top bits of the
+     * mixed hash; {@code HashWordCounter} probes from the bottom ones.
+     *
+     * @param hash
+     *            {@code String.hashCode()} of the word
+     * @return its segment
+     */
+    private Segment segment(int hash) {
+        if (this.segmentBits == 0) {
+            return this.segments[0];
+        }
+        int mixed = hash * 0x9E3779B9;
+        return this.segments[mixed >>> (Integer.SIZE - this.segmentBits)];
+    }
+
+    /**
+     * Returns the buffer slot of a word.
+     *
+     * @param hash
+     *            {@code String.hashCode()} of the word
+     * @return its slot
+     */
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (HOT_SLOTS - 1);
+    }
+
+    /**
+     * Returns {@code String.hashCode()} of {@code text[offset, offset +
+     * length)}.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character
+     * @param length
+     *            the number of characters
+     * @return the hash code
+     */
+    private static int hash(char[] text, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + text[i];
+        }
+        return h;
+    }
+
+    /**
+     * Returns {@code String.hashCode()} of the characters of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @return the hash code
+     */
+    private static int hash(CharSequence word) {
+        if (word instanceof String) {
+            return word.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < word.length(); i++) {
+            h = 31 * h + word.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Adds a buffered word's pending count to its segment and empties its
+     * slot.
+     *
+     * @param hot
+     *            the calling thread's buffer
+     * @param slot
+     *            a full slot
+     */
+    private void flush(HotKeys hot, int slot) {
+        Segment segment = this.segment(hot.hashes[slot]);
+        segment.lock.lock();
+        try {
+            segment.words.add(hot.chars[slot], 0, hot.lengths[slot],
+                    hot.pending[slot]);
+        } finally {
+            segment.lock.unlock();
+        }
+        hot.pending[slot] = 0;
+    }
+
+    /**
+     * Adds {@code count} to a buffered word, flushing it if its pending
+     * count is past the threshold.
+     *
+     * @param hot
+     *            the calling thread's buffer
+     * @param slot
+     *            the word's slot
+     * @param count
+     *            the number of occurrences to add
+     */
+    private void addPending(HotKeys hot, int slot, int count) {
+        hot.pending[slot] += count;
+        if (hot.pending[slot] >= FLUSH_THRESHOLD) {
+            this.flush(hot, slot);
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        assert text != null : "Violation of: text is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        int h = hash(text, offset, length);
+        int slot = slot(h);
+        HotKeys hot = this.hotKeys.get();
+        if (hot.pending[slot] != 0) {
+            if (hot.hashes[slot] == h && hot.lengths[slot] == length
+                    && Arrays.equals(hot.chars[slot], 0, length,
+                            text, offset, offset + length)) {
+                this.addPending(hot, slot, count);
+                return;
+            }
+            this.flush(hot, slot);
+        }
+        System.arraycopy(text, offset, hot.reserve(slot, length), 0, length);
+        hot.hashes[slot] = h;
+        this.addPending(hot, slot, count);
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert word.length() > 0 : "Violation of: |word| > 0";
+
+        int h = hash(word);
+        int slot = slot(h);
+        int length = word.length();
+        HotKeys hot = this.hotKeys.get();
+        if (hot.pending[slot] != 0) {
+            if (hot.hashes[slot] == h && matches(hot, slot, word)) {
+                this.addPending(hot, slot, count);
+                return;
+            }
+            this.flush(hot, slot);
+        }
+        char[] chars = hot.reserve(slot, length);
+        if (word instanceof String) {
+            ((String) word).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = word.charAt(i);
+            }
+        }
+        hot.hashes[slot] = h;
+        this.addPending(hot, slot, count);
+    }
+
+    /**
+     * Reports whether a full slot holds {@code word}.
+     *
+     * @param hot
+     *            the buffer
+     * @param slot
+     *            the slot
+     * @param word
+     *            the word
+     * @return true iff the slot's word equals {@code word}
+     */
+    private static boolean matches(HotKeys hot, int slot, CharSequence word) {
+        if (hot.lengths[slot] != word.length()) {
+            return false;
+        }
+        char[] chars = hot.chars[slot];
+        for (int i = 0; i < word.length(); i++) {
+            if (chars[i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds every count in {@code other} straight to the segments: a merged
+     * table has each word once, so buffering it would only add work.
+     *
+     * @param other
+     *            the counts to merge in
+     * @updates this
+     */
+    @Override
+    public void addAll(WordCounter other) {
+        assert other != null : "Violation of: other is not null";
+
+        other.forEach((word, count) -> {
+            Segment segment = this.segment(word.hashCode());
+            segment.lock.lock();
+            try {
+                segment.words.add(word, count);
+            } finally {
+                segment.lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Flushes the calling thread's buffer, so its counts are seen by every
+     * reader.
+     */
+    public void flush() {
+        HotKeys hot = this.hotKeys.get();
+        for (int slot = 0; slot < HOT_SLOTS; slot++) {
+            if (hot.pending[slot] != 0) {
+                this.flush(hot, slot);
+            }
+        }
+    }
+
+    /**
+     * Returns the flushed count of {@code word} plus the count the calling
+     * thread has buffered for it.
+     *
+     * @param word
+     *            the word
+     * @return the count of {@code word} as this thread sees it
+     */
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        int h = hash(word);
+        int count = 0;
+        int slot = slot(h);
+        HotKeys hot = this.hotKeys.get();
+        if (hot.pending[slot] != 0 && hot.hashes[slot] == h
+                && matches(hot, slot, word)) {
+            count = hot.pending[slot];
+        }
+        Segment segment = this.segment(h);
+        segment.lock.lock();
+        try {
+            return count + segment.words.count(word);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct flushed words. Segments are read one at
+     * a time, so under concurrent updates the result may match no single
+     * instant; use {@link #snapshot()} for that.
+     *
+     * @return the number of distinct words
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            segment.lock.lock();
+            try {
+                size += segment.words.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Calls {@code action} for every flushed word and its count, one segment
+     * at a time with that segment locked. {@code action} must not update
+     * this counter.
+     *
+     * @param action
+     *            receives each (word, count) pair
+     */
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (Segment segment : this.segments) {
+            segment.lock.lock();
+            try {
+                segment.words.forEach(action);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the flushed counts as of a single instant: every
+     * segment is locked, in order, before any is copied.
+     *
+     * @return the counts
+     */
+    public HashWordCounter snapshot() {
+        for (Segment segment : this.segments) {
+            segment.lock.lock();
+        }
+        try {
+            int size = 0;
+            for (Segment segment : this.segments) {
+                size += segment.words.size();
+            }
+            HashWordCounter copy = new HashWordCounter(size);
+            for (Segment segment : this.segments) {
+                segment.words.forEach(copy::add);
+            }
+            return copy;
+        } finally {
+            for (int i = this.segments.length - 1; i >= 0; i--) {
+                this.segments[i].lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the words of every file under a directory into one table, for
+ * corpora made of very many small UTF-8 documents. The tree is walked on the
+ * calling thread and its regular files are queued for up to
+ * {@code maxOpenFiles} worker threads, so the latency of opening one file
+ * overlaps the others instead of adding up. A semaphore bounds the files
+ * open at once; the walk waits for a permit before queueing the next file.
+ * Every file is counted straight into one shared
+ * {@code ConcurrentWordCounter}. Each worker counts many files on the same
+ * thread, so its buffer of hot words in that table absorbs repeats across
+ * files and is flushed once, when the worker stops.
+ *
+ * @author Victor Ruan
+ */
+public final class CorpusWordCount {
+
+    /**
+     * Default bound on the number of files open at once.
+     */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /**
+     * Most failures attached to the exception thrown for a corpus.
+     */
+    private static final int MAX_REPORTED_FAILURES = 16;
+
+    /**
+     * Queued after the last file, once per worker, to stop it.
+     */
+    private static final Path END = Paths.get("");
+
+    /**
+     * The separators words are split on.
+     */
+    private final CharClass separators;
+
+    /**
+     * Bounds the files being counted at once.
+     */
+    private final Semaphore open;
+
+    /**
+     * Number of permits of {@code open}.
+     */
+    private final int maxOpenFiles;
+
+    /**
+     * The table every file is counted into.
+     */
+    private final ConcurrentWordCounter counter;
+
+    /**
+     * Files waiting for a worker; the semaphore keeps at most
+     * {@code maxOpenFiles} of them queued or being counted.
+     */
+    private final BlockingQueue<Path> files = new LinkedBlockingQueue<>();
+
+    /**
+     * Number of workers started; used by the walking thread only.
+     */
+    private int workers;
+
+    /**
+     * Guards {@code failure} and {@code failures}.
+     */
+    private final Object failureLock = new Object();
+
+    /**
+     * The first failure, with later ones suppressed, or null.
+     */
+    private IOException failure;
+
+    /**
+     * Number of files that could not be counted.
+     */
+    private int failures;
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separator characters
+     * @param maxOpenFiles
+     *            bound on the number of files open at once
+     * @param counter
+     *            the table the words are counted into
+     */
+    private CorpusWordCount(CharClass separators, int maxOpenFiles,
+            ConcurrentWordCounter counter) {
+        this.separators = separators;
+        this.open = new Semaphore(maxOpenFiles);
+        this.maxOpenFiles = maxOpenFiles;
+        this.counter = counter;
+    }
+
+    /**
+     * Counts the words in every file under {@code dir} using the default
+     * separators and bound on open files.
+     *
+     * @param dir
+     *            the corpus directory
+     * @return the combined word counts
+     * @throws IOException
+     *             if the directory or any file under it cannot be read
+     */
+    public static WordCounter countWords(Path dir) throws IOException {
+        return countWords(dir,
+                TokenizerProfile.PROSE.separators(),
+                DEFAULT_MAX_OPEN_FILES, new ConcurrentWordCounter());
+    }
+
+    /**
+     * Adds the words in every regular file under {@code dir} to
+     * {@code counter}. Symbolic links are not followed. Files that cannot be
+     * read do not stop the others; once every file has been tried, the first
+     * failure is thrown with some of the later ones suppressed.
+     *
+     * @param dir
+     *            the corpus directory
+     * @param separators
+     *            the separator characters
+     * @param maxOpenFiles
+     *            bound on the number of files open at once
+     * @param counter
+     *            the table the words are counted into
+     * @return {@code counter}
+     * @throws IOException
+     *             if the directory or any file under it cannot be read
+     * @requires maxOpenFiles > 0
+     */
+    public static WordCounter countWords(Path dir, CharClass separators,
+            int maxOpenFiles, ConcurrentWordCounter counter)
+            throws IOException {
+        assert dir != null : "Violation of: dir is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert maxOpenFiles > 0 : "Violation of: maxOpenFiles > 0";
+        assert counter != null : "Violation of: counter is not null";
+
+        CorpusWordCount corpus = new CorpusWordCount(separators, maxOpenFiles,
+                counter);
+        ExecutorService threads = VirtualThreads
+                .newThreadPerTaskExecutor("tagcloud-corpus");
+        try {
+            corpus.walk(dir, threads);
+        } finally {
+            corpus.stop(threads);
+        }
+        synchronized (corpus.failureLock) {
+            if (corpus.failure != null) {
+                if (corpus.failures > 1) {
+                    corpus.failure.addSuppressed(new IOException(
+                            corpus.failures + " files could not be counted"));
+                }
+                throw corpus.failure;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Queues every file under {@code dir} for the workers.
+     *
+     * @param dir
+     *            the corpus directory
+     * @param threads
+     *            runs the workers
+     * @throws IOException
+     *             if the walk is interrupted
+     */
+    private void walk(Path dir, ExecutorService threads) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    CorpusWordCount.this.queue(file, threads);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                CorpusWordCount.this.fail(e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Waits for a permit and queues {@code file}, starting another worker
+     * if fewer than {@code maxOpenFiles} are running.
+     *
+     * @param file
+     *            the file
+     * @param threads
+     *            runs the workers
+     * @throws InterruptedIOException
+     *             if interrupted while waiting for a permit
+     */
+    private void queue(Path file, ExecutorService threads)
+            throws InterruptedIOException {
+        try {
+            this.open.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted walking " + file);
+        }
+        this.files.add(file);
+        if (this.workers < this.maxOpenFiles) {
+            this.workers++;
+            threads.execute(this::work);
+        }
+    }
+
+    /**
+     * Counts queued files until it takes {@code END}, then flushes the words
+     * this thread buffered into the shared table.
+     */
+    private void work() {
+        try {
+            Path file = this.files.take();
+            while (file != END) {
+                try {
+                    MappedWordCount.countWords(file, this.separators,
+                            MappedWordCount.DEFAULT_WINDOW_BYTES,
+                            this.counter);
+                } catch (IOException e) {
+                    this.fail(e);
+                } finally {
+                    this.open.release();
+                }
+                file = this.files.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.counter.flush();
+        }
+    }
+
+    /**
+     * Stops every worker once the queued files are counted and waits until
+     * all of them have flushed.
+     *
+     * @param threads
+     *            runs the workers
+     */
+    private void stop(ExecutorService threads) {
+        for (int i = 0; i < this.workers; i++) {
+            this.files.add(END);
+        }
+        threads.shutdown();
+        boolean interrupted = false;
+        while (!threads.isTerminated()) {
+            try {
+                threads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a file that could not be counted.
+     *
+     * @param e
+     *            the reason
+     */
+    private void fail(IOException e) {
+        synchronized (this.failureLock) {
+            this.failures++;
+            if (this.failure == null) {
+                this.failure = e;
+            } else if (this.failures <= MAX_REPORTED_FAILURES) {
+                this.failure.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Saves word counts to a compact binary snapshot so that rendering the same
+ * input again skips tokenization. A snapshot is keyed by the SHA-256 digest
+ * of the input's content and the tokenizer profile's {@code spec()}, so it
+ * is never used for changed input or a different tokenization.
+ *
+ * <p>
+ * The format is: the magic number, the 32-byte key, the number of words as a
+ * varint, and then the words in {@code String} order, each front-coded as
+ * the varint length of the prefix it shares with the previous word, the
+ * varint number of remaining chars, the remaining chars as varints, and the
+ * varint count.
+ *
+ * @author Victor Ruan
+ */
+public final class CountSnapshot {
+
+    /**
+     * System property naming the directory snapshots are kept in. Snapshots
+     * are only written when it is set.
+     */
+    public static final String DIRECTORY_PROPERTY = "tagcloud.snapshots";
+
+    /**
+     * Identifies a snapshot file and its format version.
+     */
+    private static final int MAGIC = 0x54435331;
+
+    /**
+     * Number of bytes in a key.
+     */
+    private static final int KEY_BYTES = 32;
+
+    /**
+     * Size of the buffer input is hashed through.
+     */
+    private static final int HASH_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Fewest bytes a saved word takes: its shared prefix length, remaining
+     * length and count, one varint byte each.
+     */
+    private static final int MIN_WORD_BYTES = 3;
+
+    /**
+     * Initial size of the buffer words are decoded into.
+     */
+    private static final int INITIAL_WORD_BUFFER = 64;
+
+    /**
+     * Payload bits per varint byte.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask of the payload bits of a varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Flag marking a varint byte that is followed by another.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CountSnapshot() {
+    }
+
+    /**
+     * Returns the snapshot key of {@code input} tokenized with
+     * {@code separators}: the SHA-256 digest of the separators followed by
+     * the input's content.
+     *
+     * @param input
+     *            the input file
+     * @param separators
+     *            the separator characters, or the {@code spec()} of the
+     *            tokenizer profile
+     * @return the 32-byte key
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    public static byte[] key(Path input, String separators)
+            throws IOException {
+        assert input != null : "Violation of: input is not null";
+        assert separators != null : "Violation of: separators is not null";
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(separators.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        try (FileChannel channel = FileChannel.open(input,
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the path of the snapshot with the given key in {@code dir}.
+     *
+     * @param dir
+     *            the snapshot directory
+     * @param key
+     *            the snapshot key
+     * @return the snapshot path
+     */
+    public static Path location(Path dir, byte[] key) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : key) {
+            name.append(String.format("%02x", b));
+        }
+        return dir.resolve(name.append(".counts").toString());
+    }
+
+    /**
+     * Writes {@code value} as an unsigned varint.
+     *
+     * @param out
+     *            the output stream
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             if the stream cannot be written
+     * @requires value >= 0
+     */
+    private static void writeVarint(OutputStream out, int value)
+            throws IOException {
+        int v = value;
+        while ((v & ~VARINT_PAYLOAD) != 0) {
+            out.write((v & VARINT_PAYLOAD) | VARINT_MORE);
+            v >>>= VARINT_SHIFT;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in
+     *            the input stream
+     * @return the value read
+     * @throws IOException
+     *             if the stream ends early, cannot be read or holds a value
+     *             that does not fit in a non-negative int
+     */
+    private static int readVarint(InputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= Integer.SIZE) {
+                throw new IOException("Corrupt snapshot: varint too long");
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated snapshot");
+            }
+            value |= (long) (b & VARINT_PAYLOAD) << shift;
+            shift += VARINT_SHIFT;
+        } while ((b & VARINT_MORE) != 0);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt snapshot: varint out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the exception for a snapshot whose contents make no sense.
+     *
+     * @param file
+     *            the snapshot path
+     * @param problem
+     *            what is wrong with it
+     * @return the exception
+     */
+    private static IOException corrupt(Path file, String problem) {
+        return new IOException("Corrupt snapshot " + file + ": " + problem);
+    }
+
+    /**
+     * Saves {@code counter} as the snapshot at {@code file}. The snapshot is
+     * written to a temporary file first, so a reader never sees a partial
+     * one.
+     *
+     * @param file
+     *            the snapshot path
+     * @param key
+     *            the snapshot key
+     * @param counter
+     *            the word counts
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    public static void save(Path file, byte[] key, WordCounter counter)
+            throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert key != null : "Violation of: key is not null";
+        assert counter != null : "Violation of: counter is not null";
+
+        // Each count is taken with its word, not looked up again by word
+        List<Entry<String, Integer>> words = new ArrayList<>(counter.size());
+        counter.forEach((word, count) -> words
+                .add(new SimpleImmutableEntry<>(word, count)));
+        words.sort(Entry.comparingByKey());
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, ".snapshot", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.write(key);
+                writeVarint(out, words.size());
+                String previous = "";
+                for (Entry<String, Integer> entry : words) {
+                    String word = entry.getKey();
+                    int shared = 0;
+                    int limit = Math.min(previous.length(), word.length());
+                    while (shared < limit
+                            && previous.charAt(shared) == word.charAt(shared)) {
+                        shared++;
+                    }
+                    writeVarint(out, shared);
+                    writeVarint(out, word.length() - shared);
+                    for (int i = shared; i < word.length(); i++) {
+                        writeVarint(out, word.charAt(i));
+                    }
+                    writeVarint(out, entry.getValue());
+                    previous = word;
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads the snapshot at {@code file}.
+     *
+     * @param file
+     *            the snapshot path
+     * @param key
+     *            the expected snapshot key
+     * @return the saved word counts, or {@code null} if there is no snapshot
+     *         with the given key
+     * @throws IOException
+     *             if the snapshot cannot be read or is corrupt
+     */
+    public static WordCounter load(Path file, byte[] key) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert key != null : "Violation of: key is not null";
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            byte[] savedKey = new byte[KEY_BYTES];
+            in.readFully(savedKey);
+            if (!Arrays.equals(savedKey, key)) {
+                return null;
+            }
+
+            // Every word takes at least three bytes, and every char at least
+            // one, so the file size bounds the number and length of words
+            long bytes = Files.size(file);
+            int size = readVarint(in);
+            if (size > bytes / MIN_WORD_BYTES) {
+                throw corrupt(file, "too many words: " + size);
+            }
+            WordCounter counter = new HashWordCounter(size);
+            char[] word = new char[INITIAL_WORD_BUFFER];
+            int previousLength = 0;
+            for (int w = 0; w < size; w++) {
+                int shared = readVarint(in);
+                if (shared > previousLength) {
+                    throw corrupt(file, "shared prefix longer than the "
+                            + "previous word");
+                }
+                int rest = readVarint(in);
+                if (rest > bytes) {
+                    throw corrupt(file, "word too long");
+                }
+                int length = shared + rest;
+                if (length == 0) {
+                    throw corrupt(file, "empty word");
+                }
+                if (length > word.length) {
+                    word = Arrays.copyOf(word, Math.max(length,
+                            2 * word.length));
+                }
+                for (int i = shared; i < length; i++) {
+                    int c = readVarint(in);
+                    if (c > Character.MAX_VALUE) {
+                        throw corrupt(file, "char out of range");
+                    }
+                    word[i] = (char) c;
+                }
+                int count = readVarint(in);
+                if (count == 0) {
+                    throw corrupt(file, "zero count");
+                }
+                counter.add(word, 0, length, count);
+                previousLength = length;
+            }
+            return counter;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the snapshot directory named by the {@code tagcloud.snapshots}
+     * system property.
+     *
+     * @return the snapshot directory, or {@code null} if snapshots are off
+     */
+    public static Path configuredDirectory() {
+        String dir = System.getProperty(DIRECTORY_PROPERTY);
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return Paths.get(dir);
+    }
+
+    /**
+     * Counts the words in a UTF-8 {@code input} with the default separators,
+     * loading them from a snapshot in {@code dir} if the input has been
+     * counted before, and saving a new snapshot otherwise.
+     *
+     * @param input
+     *            the input file
+     * @param dir
+     *            the snapshot directory
+     * @return the word counts of {@code input}
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    public static WordCounter countWords(Path input, Path dir)
+            throws IOException {
+        return countWords(input, dir, TokenizerProfile.PROSE);
+    }
+
+    /**
+     * Counts the words in a UTF-8 {@code input} as {@code profile} splits
+     * them, loading them from a snapshot in {@code dir} if the input has been
+     * counted with an equivalent profile before, and saving a new snapshot
+     * otherwise.
+     *
+     * @param input
+     *            the input file
+     * @param dir
+     *            the snapshot directory
+     * @param profile
+     *            the tokenizer profile
+     * @return the word counts of {@code input}
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    public static WordCounter countWords(Path input, Path dir,
+            TokenizerProfile profile) throws IOException {
+        assert input != null : "Violation of: input is not null";
+        assert dir != null : "Violation of: dir is not null";
+        assert profile != null : "Violation of: profile is not null";
+
+        byte[] key = key(input, profile.spec());
+        Path file = location(dir, key);
+        WordCounter counter = null;
+        try {
+            counter = load(file, key);
+        } catch (IOException e) {
+            // A corrupt snapshot is rebuilt below
+            counter = null;
+        }
+        if (counter == null) {
+            counter = MappedWordCount.countWords(input, profile.separators(),
+                    MappedWordCount.DEFAULT_WINDOW_BYTES,
+                    new Utf8WordCounter());
+            try {
+                save(file, key, counter);
+            } catch (IOException e) {
+                // The counts are still valid without a snapshot
+                System.err.println("Could not save snapshot: " + e.getMessage());
+            }
+        }
+        return counter;
+    }
+}
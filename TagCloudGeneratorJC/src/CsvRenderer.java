@@ -0,0 +1,99 @@
+import java.io.IOException;
+
+/**
+ * Renders a tag cloud as RFC 4180 CSV with a {@code word,count,size} header
+ * row and one row per word in display order. A word containing a comma,
+ * quote or line break is quoted, with its quotes doubled. Approximate
+ * counts add an {@code error} column.
+ *
+ * @author Victor Ruan
+ */
+public final class CsvRenderer implements TagCloudRenderer {
+
+    /**
+     * Header row.
+     */
+    private static final byte[] HEADER = Utf8Sink
+            .utf8("word,count,size\r\n");
+
+    /**
+     * Header row of approximate counts, with their error bounds.
+     */
+    private static final byte[] APPROXIMATE_HEADER = Utf8Sink
+            .utf8("word,count,size,error\r\n");
+
+    /**
+     * Row terminator.
+     */
+    private static final byte[] CRLF = Utf8Sink.utf8("\r\n");
+
+    /**
+     * Escapes inside a quoted field: a quote is doubled.
+     */
+    private static final byte[][] QUOTED = quoted();
+
+    /**
+     * Returns the escape table of quoted fields.
+     *
+     * @return the escapes, indexed by character
+     */
+    private static byte[][] quoted() {
+        byte[][] escapes = new byte[128][];
+        escapes['"'] = Utf8Sink.utf8("\"\"");
+        return escapes;
+    }
+
+    /**
+     * Reports whether {@code field} must be quoted.
+     *
+     * @param field
+     *            the field
+     * @return true iff {@code field} holds a comma, quote or line break
+     */
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String name() {
+        return "csv";
+    }
+
+    @Override
+    public String contentType() {
+        return "text/csv; charset=utf-8";
+    }
+
+    @Override
+    public void render(TagCloud cloud, Utf8Sink out) throws IOException {
+        assert cloud != null : "Violation of: cloud is not null";
+        assert out != null : "Violation of: out is not null";
+
+        out.put(cloud.isApproximate() ? APPROXIMATE_HEADER : HEADER);
+        for (int i = 0; i < cloud.size(); i++) {
+            String word = cloud.word(i);
+            if (needsQuotes(word)) {
+                out.putAscii('"');
+                out.putText(word, QUOTED);
+                out.putAscii('"');
+            } else {
+                out.putText(word);
+            }
+            out.putAscii(',');
+            out.putInt(cloud.count(i));
+            out.putAscii(',');
+            out.putInt(cloud.fontSize(i));
+            if (cloud.isApproximate()) {
+                out.putAscii(',');
+                out.putInt(cloud.error(i));
+            }
+            out.put(CRLF);
+        }
+    }
+}
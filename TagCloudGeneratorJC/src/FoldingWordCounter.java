@@ -0,0 +1,446 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Open-addressing {@code WordCounter} that counts words regardless of case:
+ * "The", "the" and "THE" are one word. Words are hashed and compared with
+ * each character case-folded as it is read, so no lower-cased copy of a
+ * token is ever built. Each word is shown in its most frequent casing; ties
+ * go to the casing that comes first in {@link String#compareTo(String)}
+ * order, so the result does not depend on the order words arrive in.
+ *
+ * <p>
+ * Characters are folded one UTF-16 unit at a time, as
+ * {@link String#equalsIgnoreCase(String)} compares them.
+ *
+ * @author Victor Ruan
+ */
+public final class FoldingWordCounter implements WordCounter {
+
+    /**
+     * Default initial number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Result of a comparison: the words differ even ignoring case.
+     */
+    private static final int DIFFERENT = 0;
+
+    /**
+     * Result of a comparison: the words are equal ignoring case only.
+     */
+    private static final int SAME_FOLDED = 1;
+
+    /**
+     * Result of a comparison: the words are identical.
+     */
+    private static final int IDENTICAL = 2;
+
+    /**
+     * Initial capacity of the casings of a word beyond the shown one.
+     */
+    private static final int INITIAL_CASINGS = 2;
+
+    /**
+     * The casings of a word other than the one shown, with their counts.
+     */
+    private static final class Casings {
+
+        /**
+         * The casings.
+         */
+        private String[] forms = new String[INITIAL_CASINGS];
+
+        /**
+         * Count of each casing.
+         */
+        private int[] counts = new int[INITIAL_CASINGS];
+
+        /**
+         * Number of casings.
+         */
+        private int size;
+
+        /**
+         * Returns the index of {@code text[offset, offset + length)}, adding
+         * it with count 0 if it is new.
+         *
+         * @param text
+         *            the buffer holding the casing
+         * @param offset
+         *            the index of its first character
+         * @param length
+         *            the number of characters
+         * @return the index of the casing
+         */
+        int indexOf(char[] text, int offset, int length) {
+            for (int i = 0; i < this.size; i++) {
+                if (compare(this.forms[i], text, offset, length)
+                        == IDENTICAL) {
+                    return i;
+                }
+            }
+            if (this.size == this.forms.length) {
+                this.forms = Arrays.copyOf(this.forms, 2 * this.size);
+                this.counts = Arrays.copyOf(this.counts, 2 * this.size);
+            }
+            this.forms[this.size] = new String(text, offset, length);
+            this.counts[this.size] = 0;
+            this.size++;
+            return this.size - 1;
+        }
+    }
+
+    /**
+     * Shown casing of the word in each slot; {@code null} marks an empty
+     * slot.
+     */
+    private String[] keys;
+
+    /**
+     * Case-folded hash code of the word in each slot.
+     */
+    private int[] hashes;
+
+    /**
+     * Count of the word in each slot, over all its casings.
+     */
+    private int[] counts;
+
+    /**
+     * Count of the shown casing in each slot.
+     */
+    private int[] keyCounts;
+
+    /**
+     * Other casings of the word in each slot, or null if it has only one.
+     */
+    private Casings[] casings;
+
+    /**
+     * Number of distinct words stored.
+     */
+    private int size;
+
+    /**
+     * Number of distinct words at which the table grows.
+     */
+    private int threshold;
+
+    /**
+     * No-argument constructor.
+     */
+    public FoldingWordCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedWords
+     *            the number of distinct words expected
+     * @requires expectedWords >= 0
+     */
+    public FoldingWordCounter(int expectedWords) {
+        assert expectedWords >= 0 : "Violation of: expectedWords >= 0";
+
+        int capacity = Integer.highestOneBit(Math.max(2 * expectedWords, 16));
+        if (capacity < 2 * expectedWords) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    /**
+     * Replaces the slot arrays with empty arrays of the given size.
+     *
+     * @param capacity
+     *            the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.keyCounts = new int[capacity];
+        this.casings = new Casings[capacity];
+        this.threshold = capacity >>> 1;
+    }
+
+    /**
+     * Parses a case mode option: {@code sensitive} counts every casing of a
+     * word apart, {@code insensitive} counts them together in this table.
+     *
+     * @param mode
+     *            the mode, in any case
+     * @return whether {@code mode} ignores case
+     * @throws IllegalArgumentException
+     *             if the mode is unknown
+     */
+    public static boolean ignoresCase(String mode) {
+        assert mode != null : "Violation of: mode is not null";
+
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "sensitive":
+                return false;
+            case "insensitive":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown case mode: "
+                        + mode);
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code before masking.
+     *
+     * @param hash
+     *            the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns {@code c} case-folded. ASCII is folded with one comparison;
+     * other characters go through the case mappings of {@code Character}.
+     *
+     * @param c
+     *            the character
+     * @return the folded character
+     */
+    private static char fold(char c) {
+        final char asciiLimit = 0x80;
+        if (c < asciiLimit) {
+            if (c >= 'A' && c <= 'Z') {
+                return (char) (c + ('a' - 'A'));
+            }
+            return c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Returns the case-folded hash code of {@code text[offset, offset +
+     * length)}.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @return the hash code
+     */
+    private static int hash(char[] text, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + fold(text[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Compares {@code key} with {@code text[offset, offset + length)}.
+     *
+     * @param key
+     *            the stored word
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @return {@code IDENTICAL}, {@code SAME_FOLDED} or {@code DIFFERENT}
+     */
+    private static int compare(String key, char[] text, int offset,
+            int length) {
+        if (key.length() != length) {
+            return DIFFERENT;
+        }
+        int result = IDENTICAL;
+        for (int i = 0; i < length; i++) {
+            char k = key.charAt(i);
+            char t = text[offset + i];
+            if (k != t) {
+                if (fold(k) != fold(t)) {
+                    return DIFFERENT;
+                }
+                result = SAME_FOLDED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slot holding the word {@code text[offset, offset +
+     * length)} in any casing, or the empty slot where it belongs.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @param hash
+     *            the case-folded hash code of the word
+     * @return the slot
+     */
+    private int find(char[] text, int offset, int length, int hash) {
+        int mask = this.keys.length - 1;
+        int slot = mix(hash) & mask;
+        String key = this.keys[slot];
+        while (key != null) {
+            if (this.hashes[slot] == hash
+                    && compare(key, text, offset, length) != DIFFERENT) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+            key = this.keys[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Adds {@code count} to a casing of the word in {@code slot} other than
+     * the shown one, and shows that casing instead if it now ranks higher.
+     *
+     * @param slot
+     *            the word's slot
+     * @param text
+     *            the buffer holding the casing
+     * @param offset
+     *            the index of its first character
+     * @param length
+     *            the number of characters
+     * @param count
+     *            the number of occurrences to add
+     */
+    private void addCasing(int slot, char[] text, int offset, int length,
+            int count) {
+        Casings other = this.casings[slot];
+        if (other == null) {
+            other = new Casings();
+            this.casings[slot] = other;
+        }
+        int i = other.indexOf(text, offset, length);
+        other.counts[i] += count;
+        int c = other.counts[i];
+        String form = other.forms[i];
+        if (c > this.keyCounts[slot] || (c == this.keyCounts[slot]
+                && form.compareTo(this.keys[slot]) < 0)) {
+            other.forms[i] = this.keys[slot];
+            other.counts[i] = this.keyCounts[slot];
+            this.keys[slot] = form;
+            this.keyCounts[slot] = c;
+        }
+    }
+
+    /**
+     * Doubles the number of slots and rehashes every word.
+     */
+    private void grow() {
+        String[] oldKeys = this.keys;
+        int[] oldHashes = this.hashes;
+        int[] oldCounts = this.counts;
+        int[] oldKeyCounts = this.keyCounts;
+        Casings[] oldCasings = this.casings;
+        this.allocate(oldKeys.length << 1);
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.hashes[slot] = oldHashes[i];
+                this.counts[slot] = oldCounts[i];
+                this.keyCounts[slot] = oldKeyCounts[i];
+                this.casings[slot] = oldCasings[i];
+            }
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        assert text != null : "Violation of: text is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        int h = hash(text, offset, length);
+        int slot = this.find(text, offset, length, h);
+        String key = this.keys[slot];
+        if (key == null) {
+            this.keys[slot] = new String(text, offset, length);
+            this.hashes[slot] = h;
+            this.counts[slot] = count;
+            this.keyCounts[slot] = count;
+            this.size++;
+            if (this.size > this.threshold) {
+                this.grow();
+            }
+        } else {
+            this.counts[slot] += count;
+            if (compare(key, text, offset, length) == IDENTICAL) {
+                this.keyCounts[slot] += count;
+            } else {
+                this.addCasing(slot, text, offset, length, count);
+            }
+        }
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert word.length() > 0 : "Violation of: |word| > 0";
+
+        char[] text = word.toString().toCharArray();
+        this.add(text, 0, text.length, count);
+    }
+
+    /**
+     * Returns the count of {@code word} over all its casings.
+     *
+     * @param word
+     *            the word, in any casing
+     * @return the count of {@code word}, or 0 if it has not been added
+     */
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        char[] text = word.toString().toCharArray();
+        int slot = this.find(text, 0, text.length,
+                hash(text, 0, text.length));
+        if (this.keys[slot] == null) {
+            return 0;
+        }
+        return this.counts[slot];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Calls {@code action} for every word, in its most frequent casing, and
+     * its count over all casings.
+     *
+     * @param action
+     *            receives each (word, count) pair
+     */
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                action.accept(this.keys[i], this.counts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Curves mapping a word's count to one of the {@code f11}..{@code f48} font
+ * size classes of {@code tagcloud.css}. Every curve sizes a word in O(1)
+ * and returns a shared class-name constant, so sizing allocates nothing.
+ *
+ * @author Victor Ruan
+ */
+public enum FontScale {
+
+    /**
+     * Size proportional to the count, exactly as the original incremental
+     * {@code getFontSize} loop computed it.
+     */
+    LINEAR {
+        @Override
+        public int size(int wordCount, int largestCount) {
+            float ratio = (float) wordCount / largestCount;
+            if (!(ratio <= LINEAR_STEPS[LINEAR_STEPS.length - 1])) {
+                // NaN (0 / 0) never entered the loop; larger ratios are
+                // clamped rather than looping on
+                return ratio != ratio ? MIN_SIZE - 1 : MAX_SIZE;
+            }
+
+            // The float steps drift from k / 37 by far less than one step,
+            // so the guess is off by at most one in either direction
+            int k = (int) (ratio * STEPS);
+            if (LINEAR_STEPS[k] > ratio) {
+                k--;
+            } else if (k + 1 < LINEAR_STEPS.length
+                    && LINEAR_STEPS[k + 1] <= ratio) {
+                k++;
+            }
+            return MIN_SIZE + k;
+        }
+    },
+
+    /**
+     * Size proportional to the square root of the count, which spreads out
+     * the less common words.
+     */
+    SQRT {
+        @Override
+        public int size(int wordCount, int largestCount) {
+            return scaled(Math.sqrt((double) wordCount / largestCount));
+        }
+    },
+
+    /**
+     * Size proportional to the logarithm of the count, which suits the
+     * long-tailed counts of natural language.
+     */
+    LOG {
+        @Override
+        public int size(int wordCount, int largestCount) {
+            return scaled(Math.log1p(wordCount) / Math.log1p(largestCount));
+        }
+    };
+
+    /**
+     * Smallest font size.
+     */
+    public static final int MIN_SIZE = 11;
+
+    /**
+     * Largest font size.
+     */
+    public static final int MAX_SIZE = 48;
+
+    /**
+     * Number of steps between the smallest and largest size.
+     */
+    private static final int STEPS = MAX_SIZE - MIN_SIZE;
+
+    /**
+     * Ratios at which {@code LINEAR} moves up one size, accumulated in
+     * {@code float} exactly as the original loop did.
+     */
+    private static final float[] LINEAR_STEPS = linearSteps();
+
+    /**
+     * Interned class names; {@code CLASS_NAMES[i]} is {@code "f" + i}.
+     */
+    private static final String[] CLASS_NAMES = classNames();
+
+    /**
+     * Returns the thresholds of the original loop, which started at 0 and
+     * added {@code 1.0f / 37} until it passed the ratio.
+     *
+     * @return the thresholds
+     */
+    private static float[] linearSteps() {
+        final float incrementer = 1.0f / STEPS;
+        float[] steps = new float[STEPS + 1];
+        float i = 0;
+        for (int k = 0; k < steps.length; k++) {
+            steps[k] = i;
+            i += incrementer;
+        }
+        return steps;
+    }
+
+    /**
+     * Returns the class names up to {@code MAX_SIZE}.
+     *
+     * @return the class names
+     */
+    private static String[] classNames() {
+        String[] names = new String[MAX_SIZE + 1];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = ("f" + i).intern();
+        }
+        return names;
+    }
+
+    /**
+     * Maps a fraction in [0, 1] to a size, 1 being the largest.
+     *
+     * @param fraction
+     *            the fraction
+     * @return the size
+     */
+    private static int scaled(double fraction) {
+        if (!(fraction > 0)) {
+            return MIN_SIZE;
+        }
+        return MIN_SIZE + (int) Math.min(STEPS, fraction * STEPS);
+    }
+
+    /**
+     * Returns the font size of a word.
+     *
+     * @param wordCount
+     *            number of occurrences of the word
+     * @param largestCount
+     *            number of occurrences of the most common word
+     * @return the font size
+     * @requires 0 <= wordCount <= largestCount and largestCount > 0
+     * @ensures MIN_SIZE <= size <= MAX_SIZE
+     */
+    public abstract int size(int wordCount, int largestCount);
+
+    /**
+     * Returns the CSS class name of a word's font size.
+     *
+     * @param wordCount
+     *            number of occurrences of the word
+     * @param largestCount
+     *            number of occurrences of the most common word
+     * @return the class name, such as {@code "f24"}
+     * @requires 0 <= wordCount <= largestCount and largestCount > 0
+     */
+    public String className(int wordCount, int largestCount) {
+        return CLASS_NAMES[this.size(wordCount, largestCount)];
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Open-addressing {@code WordCounter} with linear probing. Keys, their hash
+ * codes and their counts live in parallel arrays, so a lookup is a single
+ * probe sequence with no boxing. Character spans are hashed and compared in
+ * place; a {@code String} is created only when a new word is inserted.
+ *
+ * @author Victor Ruan
+ */
+public final class HashWordCounter implements WordCounter {
+
+    /**
+     * Default initial number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Words in each slot; {@code null} marks an empty slot.
+     */
+    private String[] keys;
+
+    /**
+     * {@code String.hashCode()} of the word in each slot.
+     */
+    private int[] hashes;
+
+    /**
+     * Count of the word in each slot.
+     */
+    private int[] counts;
+
+    /**
+     * Number of distinct words stored.
+     */
+    private int size;
+
+    /**
+     * Number of distinct words at which the table grows.
+     */
+    private int threshold;
+
+    /**
+     * No-argument constructor.
+     */
+    public HashWordCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedWords
+     *            the number of distinct words expected
+     * @requires expectedWords >= 0
+     */
+    public HashWordCounter(int expectedWords) {
+        assert expectedWords >= 0 : "Violation of: expectedWords >= 0";
+
+        int capacity = Integer.highestOneBit(Math.max(2 * expectedWords, 16));
+        if (capacity < 2 * expectedWords) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    /**
+     * Replaces the slot arrays with empty arrays of the given size.
+     *
+     * @param capacity
+     *            the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.threshold = capacity >>> 1;
+    }
+
+    /**
+     * Spreads the bits of a {@code String} hash code before masking.
+     *
+     * @param hash
+     *            the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns {@code String.hashCode()} of {@code text[offset, offset +
+     * length)} without building the {@code String}.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @return the hash code
+     */
+    private static int hash(char[] text, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + text[i];
+        }
+        return h;
+    }
+
+    /**
+     * Returns {@code String.hashCode()} of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @return the hash code
+     */
+    private static int hash(CharSequence word) {
+        if (word instanceof String) {
+            return word.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < word.length(); i++) {
+            h = 31 * h + word.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Reports whether {@code key} equals {@code text[offset, offset +
+     * length)}.
+     *
+     * @param key
+     *            the stored word
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @return true iff the two words are equal
+     */
+    private static boolean matches(String key, char[] text, int offset,
+            int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports whether {@code key} equals {@code word}.
+     *
+     * @param key
+     *            the stored word
+     * @param word
+     *            the word
+     * @return true iff the two words are equal
+     */
+    private static boolean matches(String key, CharSequence word) {
+        if (key.length() != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores a new word in the empty slot {@code slot}, growing the table if
+     * it is now too full.
+     *
+     * @param slot
+     *            the empty slot
+     * @param key
+     *            the word
+     * @param hash
+     *            the hash code of {@code key}
+     * @param count
+     *            the initial count
+     */
+    private void insert(int slot, String key, int hash, int count) {
+        this.keys[slot] = key;
+        this.hashes[slot] = hash;
+        this.counts[slot] = count;
+        this.size++;
+        if (this.size > this.threshold) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Doubles the number of slots and rehashes every word.
+     */
+    private void grow() {
+        String[] oldKeys = this.keys;
+        int[] oldHashes = this.hashes;
+        int[] oldCounts = this.counts;
+        this.allocate(oldKeys.length << 1);
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.hashes[slot] = oldHashes[i];
+                this.counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        assert text != null : "Violation of: text is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        int h = hash(text, offset, length);
+        int mask = this.keys.length - 1;
+        int slot = mix(h) & mask;
+        String key = this.keys[slot];
+        while (key != null) {
+            if (this.hashes[slot] == h && matches(key, text, offset, length)) {
+                this.counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+            key = this.keys[slot];
+        }
+        this.insert(slot, new String(text, offset, length), h, count);
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert word.length() > 0 : "Violation of: |word| > 0";
+
+        int h = hash(word);
+        int mask = this.keys.length - 1;
+        int slot = mix(h) & mask;
+        String key = this.keys[slot];
+        while (key != null) {
+            if (this.hashes[slot] == h && matches(key, word)) {
+                this.counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+            key = this.keys[slot];
+        }
+        this.insert(slot, word.toString(), h, count);
+    }
+
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        int h = hash(word);
+        int mask = this.keys.length - 1;
+        int slot = mix(h) & mask;
+        String key = this.keys[slot];
+        while (key != null) {
+            if (this.hashes[slot] == h && matches(key, word)) {
+                return this.counts[slot];
+            }
+            slot = (slot + 1) & mask;
+            key = this.keys[slot];
+        }
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                action.accept(this.keys[i], this.counts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+
+/**
+ * Renders the tag cloud HTML page. The static header, footer and span
+ * fragments and the size class names are UTF-8 encoded once; per word only
+ * the word itself and the count digits are encoded, so rendering a page
+ * allocates nothing. The source name and every word are escaped, so text
+ * from the input cannot inject markup into the page. The tooltip of an
+ * approximate count also gives its error bound.
+ *
+ * <p>
+ * The page is byte-for-byte the one {@code outputCloud} prints to a
+ * {@code PrintWriter} on a system whose default charset is UTF-8.
+ *
+ * @author Victor Ruan
+ */
+public final class HtmlRenderer implements TagCloudRenderer {
+
+    /**
+     * Line separator, as {@code PrintWriter.println} writes it.
+     */
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Start of the page, up to the number of words in the title.
+     */
+    private static final byte[] TITLE_START = Utf8Sink
+            .utf8("<html>" + NL + "<head>" + NL + "<title>Top");
+
+    /**
+     * Between the number of words and the file name.
+     */
+    private static final byte[] WORDS_IN = Utf8Sink.utf8(" words in ");
+
+    /**
+     * End of the title up to the number of words in the heading.
+     */
+    private static final byte[] TITLE_END = Utf8Sink.utf8("</title>" + NL
+            + "<link href=\"http://www.cse.ohio-state.edu/software/2231"
+            + "/web-sw2/assignments/projects/tag-cloud-generator/data/"
+            + "tagcloud.css\" rel=\"stylesheet\" type=\"text/css\">" + NL
+            + "<link href=\"tagcloud.css\" rel=\"stylesheet\" "
+            + "type=\"text/css\">" + NL + "</head>" + NL + "<body>" + NL
+            + "<h2>Top ");
+
+    /**
+     * End of the heading and start of the cloud.
+     */
+    private static final byte[] HEADING_END = Utf8Sink.utf8("</h2>" + NL
+            + "<hr>" + NL + "<div class=\"cdiv\">" + NL + "<p class=\"cbox\">"
+            + NL);
+
+    /**
+     * Start of a word's span, up to its size class.
+     */
+    private static final byte[] SPAN_START = Utf8Sink
+            .utf8("<span style=\"cursor:default\" class=\"");
+
+    /**
+     * Between the size class and the count.
+     */
+    private static final byte[] SPAN_COUNT = Utf8Sink
+            .utf8("\" title=\"count: ");
+
+    /**
+     * Between an approximate count and its error bound.
+     */
+    private static final byte[] SPAN_ERROR = Utf8Sink.utf8(", error: ");
+
+    /**
+     * Between the count and the word.
+     */
+    private static final byte[] SPAN_WORD = Utf8Sink.utf8("\">");
+
+    /**
+     * End of a word's span.
+     */
+    private static final byte[] SPAN_END = Utf8Sink.utf8("</span>" + NL);
+
+    /**
+     * End of the page.
+     */
+    private static final byte[] FOOTER = Utf8Sink.utf8("</p>" + NL + "</div>"
+            + NL + "</body>" + NL + "</html>" + NL);
+
+    /**
+     * Encoded size class names; {@code SIZE_CLASSES[i]} is {@code "f" + i}.
+     */
+    private static final byte[][] SIZE_CLASSES = sizeClasses();
+
+    /**
+     * Escapes of the HTML markup characters.
+     */
+    private static final byte[][] ESCAPES = escapes();
+
+    /**
+     * Returns the encoded size class names up to {@code FontScale.MAX_SIZE}.
+     *
+     * @return the class names
+     */
+    private static byte[][] sizeClasses() {
+        byte[][] names = new byte[FontScale.MAX_SIZE + 1][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = Utf8Sink.utf8("f" + i);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the escape table.
+     *
+     * @return the escapes, indexed by character
+     */
+    private static byte[][] escapes() {
+        byte[][] escapes = new byte[128][];
+        escapes['&'] = Utf8Sink.utf8("&amp;");
+        escapes['<'] = Utf8Sink.utf8("&lt;");
+        escapes['>'] = Utf8Sink.utf8("&gt;");
+        escapes['"'] = Utf8Sink.utf8("&quot;");
+        return escapes;
+    }
+
+    @Override
+    public String name() {
+        return "html";
+    }
+
+    @Override
+    public String contentType() {
+        return "text/html; charset=utf-8";
+    }
+
+    @Override
+    public void render(TagCloud cloud, Utf8Sink out) throws IOException {
+        assert cloud != null : "Violation of: cloud is not null";
+        assert out != null : "Violation of: out is not null";
+
+        out.put(TITLE_START);
+        out.putInt(cloud.numOfWords());
+        out.put(WORDS_IN);
+        out.putText(cloud.source(), ESCAPES);
+        out.put(TITLE_END);
+        out.putInt(cloud.numOfWords());
+        out.put(WORDS_IN);
+        out.putText(cloud.source(), ESCAPES);
+        out.put(HEADING_END);
+
+        for (int i = 0; i < cloud.size(); i++) {
+            out.put(SPAN_START);
+            out.put(SIZE_CLASSES[cloud.fontSize(i)]);
+            out.put(SPAN_COUNT);
+            out.putInt(cloud.count(i));
+            if (cloud.isApproximate()) {
+                out.put(SPAN_ERROR);
+                out.putInt(cloud.error(i));
+            }
+            out.put(SPAN_WORD);
+            out.putText(cloud.word(i), ESCAPES);
+            out.put(SPAN_END);
+        }
+
+        out.put(FOOTER);
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+
+/**
+ * Renders a tag cloud as one JSON object:
+ *
+ * <pre>
+ * {"source":"alice.txt","numOfWords":100,"largestCount":1642,
+ *  "words":[{"word":"a","count":632,"size":25},...]}
+ * </pre>
+ *
+ * The words are in display order, and each approximate count is followed by
+ * its {@code "error"} bound. Strings are escaped per RFC 8259.
+ *
+ * @author Victor Ruan
+ */
+public final class JsonRenderer implements TagCloudRenderer {
+
+    /**
+     * Start of the object, up to the source name.
+     */
+    private static final byte[] SOURCE = Utf8Sink.utf8("{\"source\":\"");
+
+    /**
+     * Between the source name and the number of words.
+     */
+    private static final byte[] NUM_OF_WORDS = Utf8Sink
+            .utf8("\",\"numOfWords\":");
+
+    /**
+     * Between the number of words and the largest count.
+     */
+    private static final byte[] LARGEST_COUNT = Utf8Sink
+            .utf8(",\"largestCount\":");
+
+    /**
+     * Start of the word array.
+     */
+    private static final byte[] WORDS = Utf8Sink.utf8(",\"words\":[");
+
+    /**
+     * Start of a word object, up to the word.
+     */
+    private static final byte[] WORD = Utf8Sink.utf8("{\"word\":\"");
+
+    /**
+     * Between the word and its count.
+     */
+    private static final byte[] COUNT = Utf8Sink.utf8("\",\"count\":");
+
+    /**
+     * Between the count and the size.
+     */
+    private static final byte[] SIZE = Utf8Sink.utf8(",\"size\":");
+
+    /**
+     * Between the size and the error bound of an approximate count.
+     */
+    private static final byte[] ERROR = Utf8Sink.utf8(",\"error\":");
+
+    /**
+     * End of the word array and the object.
+     */
+    private static final byte[] END = Utf8Sink.utf8("]}\n");
+
+    /**
+     * Escapes of the ASCII characters that cannot appear raw in a string.
+     */
+    private static final byte[][] ESCAPES = escapes();
+
+    /**
+     * Returns the escape table.
+     *
+     * @return the escapes, indexed by character
+     */
+    private static byte[][] escapes() {
+        final int controlEnd = 0x20;
+        byte[][] escapes = new byte[128][];
+        for (int c = 0; c < controlEnd; c++) {
+            escapes[c] = Utf8Sink.utf8(String.format("\\u%04x", c));
+        }
+        escapes['\b'] = Utf8Sink.utf8("\\b");
+        escapes['\f'] = Utf8Sink.utf8("\\f");
+        escapes['\n'] = Utf8Sink.utf8("\\n");
+        escapes['\r'] = Utf8Sink.utf8("\\r");
+        escapes['\t'] = Utf8Sink.utf8("\\t");
+        escapes['"'] = Utf8Sink.utf8("\\\"");
+        escapes['\\'] = Utf8Sink.utf8("\\\\");
+        return escapes;
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json";
+    }
+
+    @Override
+    public void render(TagCloud cloud, Utf8Sink out) throws IOException {
+        assert cloud != null : "Violation of: cloud is not null";
+        assert out != null : "Violation of: out is not null";
+
+        out.put(SOURCE);
+        out.putText(cloud.source(), ESCAPES);
+        out.put(NUM_OF_WORDS);
+        out.putInt(cloud.numOfWords());
+        out.put(LARGEST_COUNT);
+        out.putInt(cloud.largestCount());
+        out.put(WORDS);
+        for (int i = 0; i < cloud.size(); i++) {
+            if (i > 0) {
+                out.putAscii(',');
+            }
+            out.put(WORD);
+            out.putText(cloud.word(i), ESCAPES);
+            out.put(COUNT);
+            out.putInt(cloud.count(i));
+            out.put(SIZE);
+            out.putInt(cloud.fontSize(i));
+            if (cloud.isApproximate()) {
+                out.put(ERROR);
+                out.putInt(cloud.error(i));
+            }
+            out.putAscii('}');
+        }
+        out.put(END);
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Counts the words of a UTF-8 file by memory-mapping it and tokenizing the
+ * bytes in place, with no intermediate reader buffer, charset decoding or
+ * per-line {@code String}s. Files of any size are handled as a sequence of
+ * mapped windows; a word that straddles the end of a window is rescanned at
+ * the start of the next one. Small files are simply read whole.
+ *
+ * @author Victor Ruan
+ */
+public final class MappedWordCount {
+
+    /**
+     * Default number of bytes mapped at a time.
+     */
+    public static final int DEFAULT_WINDOW_BYTES = 1 << 28;
+
+    /**
+     * Files smaller than this are read into the heap rather than mapped,
+     * since setting up and tearing down a mapping costs more than copying a
+     * few pages.
+     */
+    private static final int MIN_MAPPED_BYTES = 1 << 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private MappedWordCount() {
+    }
+
+    /**
+     * Counts the words in a UTF-8 {@code file} using the default separators,
+     * into a {@code Utf8WordCounter}, so words are kept as bytes and decoded
+     * only when read back.
+     *
+     * @param file
+     *            the input file
+     * @return the word counts of {@code file}
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    public static WordCounter countWords(Path file) throws IOException {
+        return countWords(file,
+                TokenizerProfile.PROSE.separators(),
+                DEFAULT_WINDOW_BYTES, new Utf8WordCounter());
+    }
+
+    /**
+     * Adds the words in a UTF-8 {@code file} to {@code counter}, mapping at
+     * most about {@code windowBytes} bytes at a time. A window grows only if a
+     * single word is longer than it.
+     *
+     * @param file
+     *            the input file
+     * @param separators
+     *            the separator characters
+     * @param windowBytes
+     *            the preferred number of bytes mapped at a time
+     * @param counter
+     *            the table the words are counted into
+     * @return {@code counter}
+     * @throws IOException
+     *             if the file cannot be mapped
+     * @requires windowBytes > 0
+     */
+    public static WordCounter countWords(Path file, CharClass separators,
+            int windowBytes, WordCounter counter) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert windowBytes > 0 : "Violation of: windowBytes > 0";
+        assert counter != null : "Violation of: counter is not null";
+
+        Utf8WordScanner scanner = new Utf8WordScanner(separators);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MIN_MAPPED_BYTES) {
+                return countSmall(channel, (int) size, scanner, counter);
+            }
+            long pos = 0;
+            long window = windowBytes;
+            while (pos < size) {
+                int length = (int) Math.min(window, size - pos);
+                boolean last = pos + length == size;
+                MappedByteBuffer bytes = channel
+                        .map(FileChannel.MapMode.READ_ONLY, pos, length);
+                int consumed = scanner.scan(bytes, 0, length, last, counter);
+                if (consumed == 0 && !last) {
+                    // One word fills the whole window: map a larger one
+                    if (window >= Integer.MAX_VALUE) {
+                        throw new IOException("Word at byte " + pos
+                                + " is too long to map");
+                    }
+                    window = Math.min(2 * window, Integer.MAX_VALUE);
+                } else {
+                    pos += consumed;
+                    window = windowBytes;
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Adds the words of a small file to {@code counter} by reading it whole
+     * into a heap buffer.
+     *
+     * @param channel
+     *            the open file
+     * @param size
+     *            the size of the file
+     * @param scanner
+     *            the scanner
+     * @param counter
+     *            the table the words are counted into
+     * @return {@code counter}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static WordCounter countSmall(FileChannel channel, int size,
+            Utf8WordScanner scanner, WordCounter counter) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                break;
+            }
+        }
+        scanner.scan(bytes, 0, bytes.position(), true, counter);
+        return counter;
+    }
+}
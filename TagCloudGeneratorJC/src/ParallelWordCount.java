@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the words of a single large UTF-8 file in parallel. The file is
+ * split into byte ranges whose boundaries are moved forward to the next
+ * ASCII separator byte, so no word is cut in half; each range is scanned by
+ * its own {@code Utf8WordScanner} into its own {@code Utf8WordCounter} on a
+ * {@code ForkJoinPool} worker, and the partial tables are merged pairwise as
+ * the tasks join.
+ *
+ * <p>
+ * An ASCII byte never occurs inside a UTF-8 multi-byte sequence, and the
+ * scanner replaces each malformed byte on its own, so the counts are exactly
+ * those of {@code MappedWordCount}, malformed and supplementary input
+ * included.
+ *
+ * @author Victor Ruan
+ */
+public final class ParallelWordCount {
+
+    /**
+     * Smallest byte range worth counting on its own.
+     */
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Number of chunks per worker, so that uneven chunks balance out.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Initial size of the buffer each chunk is read through.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelWordCount() {
+    }
+
+    /**
+     * Counts the words in a UTF-8 {@code file} using the default separators
+     * and the common {@code ForkJoinPool}.
+     *
+     * @param file
+     *            the input file
+     * @return the word counts of {@code file}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCounter countWords(Path file) throws IOException {
+        return countWords(file, TokenizerProfile.PROSE.separators(),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the words in a UTF-8 {@code file} on the workers of
+     * {@code pool}. The result has the same counts as
+     * {@link MappedWordCount#countWords(Path, CharClass, int, WordCounter)}.
+     *
+     * @param file
+     *            the input file
+     * @param separators
+     *            the separator characters
+     * @param pool
+     *            the pool that counts the chunks
+     * @return the word counts of {@code file}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordCounter countWords(Path file, CharClass separators,
+            ForkJoinPool pool) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long[] bounds = splitPoints(channel, separators,
+                    pool.getParallelism() * CHUNKS_PER_WORKER);
+            try {
+                return pool.invoke(new CountTask(channel, separators, bounds,
+                        0, bounds.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Reports whether byte {@code b} is an ASCII separator character.
+     *
+     * @param b
+     *            the byte
+     * @param separators
+     *            the separator characters
+     * @return true iff {@code b} is an ASCII byte in {@code separators}
+     */
+    private static boolean isSeparatorByte(byte b, CharClass separators) {
+        return b >= 0 && separators.contains((char) b);
+    }
+
+    /**
+     * Returns the chunk boundaries of the file open on {@code channel}: the
+     * first is 0, the last is the file size, and every other boundary is the
+     * position of an ASCII separator byte.
+     *
+     * @param channel
+     *            the open file
+     * @param separators
+     *            the separator characters
+     * @param targetChunks
+     *            the preferred number of chunks
+     * @return the increasing chunk boundaries
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long[] splitPoints(FileChannel channel,
+            CharClass separators, int targetChunks) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_BYTES,
+                size / Math.max(1, targetChunks));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(BUFFER_SIZE);
+        long next = chunkSize;
+        while (next < size) {
+            // Move the nominal boundary forward to the next separator byte
+            long boundary = size;
+            long pos = next;
+            while (pos < size && boundary == size) {
+                probe.clear();
+                int n = channel.read(probe, pos);
+                for (int i = 0; i < n && boundary == size; i++) {
+                    if (isSeparatorByte(probe.get(i), separators)) {
+                        boundary = pos + i;
+                    }
+                }
+                pos += Math.max(n, 0);
+                if (n < 0) {
+                    pos = size;
+                }
+            }
+            if (boundary < size) {
+                bounds.add(boundary);
+            }
+            next = boundary + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the words in bytes {@code [start, end)} of the file open on
+     * {@code channel}.
+     *
+     * @param channel
+     *            the open file
+     * @param separators
+     *            the separator characters
+     * @param start
+     *            the first byte of the chunk
+     * @param end
+     *            one past the last byte of the chunk, the position of a
+     *            separator or the end of the file
+     * @return the word counts of the chunk
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static Utf8WordCounter countRange(FileChannel channel,
+            CharClass separators, long start, long end) throws IOException {
+        Utf8WordScanner scanner = new Utf8WordScanner(separators);
+        Utf8WordCounter counter = new Utf8WordCounter();
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+        long pos = start;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            bytes.clear();
+            bytes.limit((int) Math.min(bytes.capacity(), end - pos));
+            int n = 0;
+            while (bytes.hasRemaining() && n >= 0) {
+                n = channel.read(bytes, pos + bytes.position());
+            }
+            int length = bytes.position();
+            endOfInput = n < 0 || pos + length >= end;
+
+            // Count complete words and read the trailing partial word again
+            int consumed = scanner.scan(bytes, 0, length, endOfInput, counter);
+            if (consumed == 0 && !endOfInput) {
+                // A single word fills the buffer: read it again with room
+                bytes = ByteBuffer.allocate(2 * bytes.capacity());
+            }
+            pos += consumed;
+        }
+        return counter;
+    }
+
+    /**
+     * Counts a run of consecutive chunks, splitting it in half until a
+     * single chunk remains.
+     */
+    private static final class CountTask
+            extends RecursiveTask<Utf8WordCounter> {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The open file.
+         */
+        private final transient FileChannel channel;
+
+        /**
+         * The separator characters.
+         */
+        private final transient CharClass separators;
+
+        /**
+         * Chunk boundaries shared by all tasks.
+         */
+        private final long[] bounds;
+
+        /**
+         * Index of the first chunk counted by this task.
+         */
+        private final int from;
+
+        /**
+         * Index one past the last chunk counted by this task.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the open file
+         * @param separators
+         *            the separator characters
+         * @param bounds
+         *            the chunk boundaries
+         * @param from
+         *            the index of the first chunk
+         * @param to
+         *            the index one past the last chunk
+         */
+        CountTask(FileChannel channel, CharClass separators, long[] bounds,
+                int from, int to) {
+            this.channel = channel;
+            this.separators = separators;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Utf8WordCounter compute() {
+            if (this.to - this.from <= 1) {
+                if (this.from == this.to) {
+                    return new Utf8WordCounter();
+                }
+                try {
+                    return countRange(this.channel, this.separators,
+                            this.bounds[this.from], this.bounds[this.to]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int mid = (this.from + this.to) >>> 1;
+            CountTask left = new CountTask(this.channel, this.separators,
+                    this.bounds, this.from, mid);
+            CountTask right = new CountTask(this.channel, this.separators,
+                    this.bounds, mid, this.to);
+            left.fork();
+            Utf8WordCounter rightCounts = right.compute();
+            Utf8WordCounter leftCounts = left.join();
+
+            // Merge the smaller table into the larger one
+            if (leftCounts.size() < rightCounts.size()) {
+                rightCounts.addAll(leftCounts);
+                return rightCounts;
+            }
+            leftCounts.addAll(rightCounts);
+            return leftCounts;
+        }
+    }
+}
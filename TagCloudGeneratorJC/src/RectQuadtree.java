@@ -0,0 +1,301 @@
+/**
+ * Region quadtree of axis-aligned integer rectangles, answering "does this
+ * rectangle overlap any stored one?" in about O(log n). Each rectangle is
+ * kept in the smallest node that fully contains it; rectangles outside the
+ * root bounds stay in the root, so any coordinates are accepted.
+ *
+ * @author Victor Ruan
+ */
+public final class RectQuadtree {
+
+    /**
+     * Rectangles a node holds before it splits.
+     */
+    private static final int SPLIT_THRESHOLD = 8;
+
+    /**
+     * Depth below which nodes never split.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * Ints per stored rectangle: x0, y0, x1, y1.
+     */
+    private static final int STRIDE = 4;
+
+    /**
+     * A node covering [x0, x1) x [y0, y1).
+     */
+    private static final class Node {
+
+        /**
+         * Bounds of the node.
+         */
+        private final int x0, y0, x1, y1;
+
+        /**
+         * Depth of the node; the root is at 0.
+         */
+        private final int depth;
+
+        /**
+         * Rectangles held here, {@code STRIDE} ints each.
+         */
+        private int[] rects = new int[SPLIT_THRESHOLD * STRIDE];
+
+        /**
+         * Number of rectangles held here.
+         */
+        private int count;
+
+        /**
+         * The four quadrants, or null while this is a leaf.
+         */
+        private Node[] children;
+
+        /**
+         * Constructor.
+         *
+         * @param x0
+         *            left bound
+         * @param y0
+         *            top bound
+         * @param x1
+         *            right bound (exclusive)
+         * @param y1
+         *            bottom bound (exclusive)
+         * @param depth
+         *            depth of the node
+         */
+        Node(int x0, int y0, int x1, int y1, int depth) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The root node.
+     */
+    private final Node root;
+
+    /**
+     * Number of rectangles stored.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param x0
+     *            left bound of the indexed area
+     * @param y0
+     *            top bound of the indexed area
+     * @param x1
+     *            right bound (exclusive) of the indexed area
+     * @param y1
+     *            bottom bound (exclusive) of the indexed area
+     * @requires x0 < x1 and y0 < y1
+     */
+    public RectQuadtree(int x0, int y0, int x1, int y1) {
+        assert x0 < x1 : "Violation of: x0 < x1";
+        assert y0 < y1 : "Violation of: y0 < y1";
+
+        this.root = new Node(x0, y0, x1, y1, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of rectangles stored.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the child of {@code node} that fully contains the rectangle,
+     * or null if none does.
+     *
+     * @param node
+     *            a node with children
+     * @param x0
+     *            left
+     * @param y0
+     *            top
+     * @param x1
+     *            right (exclusive)
+     * @param y1
+     *            bottom (exclusive)
+     * @return the containing child, or null
+     */
+    private static Node childContaining(Node node, int x0, int y0, int x1,
+            int y1) {
+        int midX = (int) (((long) node.x0 + node.x1) >> 1);
+        int midY = (int) (((long) node.y0 + node.y1) >> 1);
+        int quadrant;
+        if (x1 <= midX && x0 >= node.x0) {
+            quadrant = 0;
+        } else if (x0 >= midX && x1 <= node.x1) {
+            quadrant = 1;
+        } else {
+            return null;
+        }
+        if (y1 <= midY && y0 >= node.y0) {
+            return node.children[quadrant];
+        } else if (y0 >= midY && y1 <= node.y1) {
+            return node.children[quadrant + 2];
+        }
+        return null;
+    }
+
+    /**
+     * Splits a leaf into quadrants and pushes down the rectangles that fit
+     * in one.
+     *
+     * @param node
+     *            the leaf
+     */
+    private static void split(Node node) {
+        int midX = (int) (((long) node.x0 + node.x1) >> 1);
+        int midY = (int) (((long) node.y0 + node.y1) >> 1);
+        int d = node.depth + 1;
+        node.children = new Node[] {new Node(node.x0, node.y0, midX, midY, d),
+            new Node(midX, node.y0, node.x1, midY, d),
+            new Node(node.x0, midY, midX, node.y1, d),
+            new Node(midX, midY, node.x1, node.y1, d)};
+
+        int[] r = node.rects;
+        int kept = 0;
+        for (int i = 0; i < node.count; i++) {
+            int o = i * STRIDE;
+            Node child = childContaining(node, r[o], r[o + 1], r[o + 2],
+                    r[o + 3]);
+            if (child == null) {
+                System.arraycopy(r, o, r, kept * STRIDE, STRIDE);
+                kept++;
+            } else {
+                add(child, r[o], r[o + 1], r[o + 2], r[o + 3]);
+            }
+        }
+        node.count = kept;
+    }
+
+    /**
+     * Appends a rectangle to a node's own list.
+     *
+     * @param node
+     *            the node
+     * @param x0
+     *            left
+     * @param y0
+     *            top
+     * @param x1
+     *            right (exclusive)
+     * @param y1
+     *            bottom (exclusive)
+     */
+    private static void add(Node node, int x0, int y0, int x1, int y1) {
+        int o = node.count * STRIDE;
+        if (o == node.rects.length) {
+            int[] grown = new int[2 * node.rects.length];
+            System.arraycopy(node.rects, 0, grown, 0, o);
+            node.rects = grown;
+        }
+        node.rects[o] = x0;
+        node.rects[o + 1] = y0;
+        node.rects[o + 2] = x1;
+        node.rects[o + 3] = y1;
+        node.count++;
+    }
+
+    /**
+     * Stores the rectangle [x0, x1) x [y0, y1).
+     *
+     * @param x0
+     *            left
+     * @param y0
+     *            top
+     * @param x1
+     *            right (exclusive)
+     * @param y1
+     *            bottom (exclusive)
+     * @requires x0 < x1 and y0 < y1
+     */
+    public void insert(int x0, int y0, int x1, int y1) {
+        assert x0 < x1 : "Violation of: x0 < x1";
+        assert y0 < y1 : "Violation of: y0 < y1";
+
+        Node node = this.root;
+        while (node.children != null) {
+            Node child = childContaining(node, x0, y0, x1, y1);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        add(node, x0, y0, x1, y1);
+        if (node.children == null && node.count > SPLIT_THRESHOLD
+                && node.depth < MAX_DEPTH) {
+            split(node);
+        }
+        this.size++;
+    }
+
+    /**
+     * Reports whether [x0, x1) x [y0, y1) overlaps any stored rectangle.
+     *
+     * @param x0
+     *            left
+     * @param y0
+     *            top
+     * @param x1
+     *            right (exclusive)
+     * @param y1
+     *            bottom (exclusive)
+     * @return true iff some stored rectangle overlaps it
+     */
+    public boolean intersects(int x0, int y0, int x1, int y1) {
+        return intersects(this.root, x0, y0, x1, y1);
+    }
+
+    /**
+     * Reports whether the rectangle overlaps any rectangle stored in the
+     * subtree of {@code node}.
+     *
+     * @param node
+     *            the subtree
+     * @param x0
+     *            left
+     * @param y0
+     *            top
+     * @param x1
+     *            right (exclusive)
+     * @param y1
+     *            bottom (exclusive)
+     * @return true iff some rectangle in the subtree overlaps it
+     */
+    private static boolean intersects(Node node, int x0, int y0, int x1,
+            int y1) {
+        int[] r = node.rects;
+        for (int o = 0, end = node.count * STRIDE; o < end; o += STRIDE) {
+            if (x0 < r[o + 2] && r[o] < x1 && y0 < r[o + 3]
+                    && r[o + 1] < y1) {
+                return true;
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (x0 < child.x1 && child.x0 < x1 && y0 < child.y1
+                        && child.y0 < y1
+                        && intersects(child, x0, y0, x1, y1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
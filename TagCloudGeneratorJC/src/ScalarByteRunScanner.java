@@ -0,0 +1,69 @@
+import java.nio.ByteBuffer;
+
+/**
+ * {@code ByteRunScanner} that classifies one byte per step with a 256-entry
+ * table.
+ *
+ * @author Victor Ruan
+ */
+public final class ScalarByteRunScanner implements ByteRunScanner {
+
+    /**
+     * Class of an ASCII byte that is part of a word.
+     */
+    private static final byte WORD = 0;
+
+    /**
+     * Class of an ASCII separator byte.
+     */
+    private static final byte SEPARATOR = 1;
+
+    /**
+     * Class of a byte of a multi-byte sequence.
+     */
+    private static final byte NON_ASCII = 2;
+
+    /**
+     * Class of each byte value, indexed by the unsigned byte.
+     */
+    private final byte[] classes = new byte[256];
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separator characters
+     */
+    public ScalarByteRunScanner(CharClass separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        final int asciiLimit = 0x80;
+        for (int b = 0; b < this.classes.length; b++) {
+            if (b >= asciiLimit) {
+                this.classes[b] = NON_ASCII;
+            } else if (separators.contains((char) b)) {
+                this.classes[b] = SEPARATOR;
+            }
+        }
+    }
+
+    @Override
+    public int skipSeparators(ByteBuffer bytes, int from, int to) {
+        final int byteMask = 0xFF;
+        int i = from;
+        while (i < to && this.classes[bytes.get(i) & byteMask] == SEPARATOR) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipWord(ByteBuffer bytes, int from, int to) {
+        final int byteMask = 0xFF;
+        int i = from;
+        while (i < to && this.classes[bytes.get(i) & byteMask] == WORD) {
+            i++;
+        }
+        return i;
+    }
+}
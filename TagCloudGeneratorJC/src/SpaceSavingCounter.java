@@ -0,0 +1,452 @@
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Approximate {@code WordCounter} that tracks the heavy hitters of an
+ * unbounded stream in fixed memory using the Space-Saving algorithm. At most
+ * {@code capacity} words are monitored; when a new word arrives and the table
+ * is full, it replaces the monitored word with the smallest count and
+ * inherits that count as its possible overestimation.
+ *
+ * <p>
+ * For every monitored word, {@code count - error <= true count <= count}.
+ * Any word with a true count greater than {@link #minCount()} is monitored,
+ * and {@code minCount() <= totalCount() / capacity}. Choosing
+ * {@code capacity} a few times larger than the number of words rendered keeps
+ * the reported top words exact in practice.
+ *
+ * @author Victor Ruan
+ */
+public final class SpaceSavingCounter implements WordCounter {
+
+    /**
+     * Receives a monitored word with its count and error bound.
+     */
+    @FunctionalInterface
+    public interface BoundedCountConsumer {
+
+        /**
+         * Accepts one monitored word.
+         *
+         * @param word
+         *            the word
+         * @param count
+         *            the estimated count, an upper bound on the true count
+         * @param error
+         *            the maximum overestimation of {@code count}
+         */
+        void accept(String word, int count, int error);
+    }
+
+    /**
+     * Maximum number of monitored words.
+     */
+    private final int capacity;
+
+    /**
+     * Monitored word in each slot.
+     */
+    private final String[] words;
+
+    /**
+     * {@code String.hashCode()} of the word in each slot.
+     */
+    private final int[] hashes;
+
+    /**
+     * Estimated count of the word in each slot.
+     */
+    private final int[] counts;
+
+    /**
+     * Maximum overestimation of the count in each slot.
+     */
+    private final int[] errors;
+
+    /**
+     * Min-heap of slots ordered by count.
+     */
+    private final int[] heap;
+
+    /**
+     * Position of each slot in {@code heap}.
+     */
+    private final int[] heapIndex;
+
+    /**
+     * Open-addressing index from word to slot; holds slot + 1, or 0 if
+     * empty.
+     */
+    private final int[] index;
+
+    /**
+     * Number of monitored words.
+     */
+    private int size;
+
+    /**
+     * Total number of occurrences added.
+     */
+    private long total;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            the maximum number of monitored words
+     * @requires capacity > 0
+     */
+    public SpaceSavingCounter(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.capacity = capacity;
+        this.words = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.errors = new int[capacity];
+        this.heap = new int[capacity];
+        this.heapIndex = new int[capacity];
+        int indexSize = Integer.highestOneBit(2 * capacity) << 1;
+        this.index = new int[indexSize];
+        this.size = 0;
+        this.total = 0;
+    }
+
+    /**
+     * Spreads the bits of a {@code String} hash code before masking.
+     *
+     * @param hash
+     *            the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the index position holding {@code slot}.
+     *
+     * @param slot
+     *            a monitored slot
+     * @return the position of {@code slot} in {@code index}
+     */
+    private int indexPosition(int slot) {
+        int mask = this.index.length - 1;
+        int pos = mix(this.hashes[slot]) & mask;
+        while (this.index[pos] != slot + 1) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    /**
+     * Removes {@code slot} from the index, shifting later entries of its
+     * probe run back so that lookups still find them.
+     *
+     * @param slot
+     *            a monitored slot
+     */
+    private void unindex(int slot) {
+        int mask = this.index.length - 1;
+        int hole = this.indexPosition(slot);
+        int pos = (hole + 1) & mask;
+        while (this.index[pos] != 0) {
+            int home = mix(this.hashes[this.index[pos] - 1]) & mask;
+            // Move the entry into the hole unless its home lies after the
+            // hole in the (cyclic) probe run
+            if (((pos - home) & mask) >= ((pos - hole) & mask)) {
+                this.index[hole] = this.index[pos];
+                hole = pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        this.index[hole] = 0;
+    }
+
+    /**
+     * Reports whether {@code key} equals {@code text[offset, offset +
+     * length)}.
+     *
+     * @param key
+     *            the monitored word
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @return true iff the two words are equal
+     */
+    private static boolean matches(String key, char[] text, int offset,
+            int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the heap entry at {@code i} toward the leaves to restore the heap
+     * property after its count grew.
+     *
+     * @param i
+     *            the heap position
+     */
+    private void siftDown(int i) {
+        int slot = this.heap[i];
+        int count = this.counts[slot];
+        int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < this.size && this.counts[this.heap[right]]
+                    < this.counts[this.heap[child]]) {
+                child = right;
+            }
+            if (this.counts[this.heap[child]] >= count) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            this.heapIndex[this.heap[i]] = i;
+            i = child;
+        }
+        this.heap[i] = slot;
+        this.heapIndex[slot] = i;
+    }
+
+    /**
+     * Moves the heap entry at {@code i} toward the root.
+     *
+     * @param i
+     *            the heap position
+     */
+    private void siftUp(int i) {
+        int slot = this.heap[i];
+        int count = this.counts[slot];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.counts[this.heap[parent]] <= count) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            this.heapIndex[this.heap[i]] = i;
+            i = parent;
+        }
+        this.heap[i] = slot;
+        this.heapIndex[slot] = i;
+    }
+
+    /**
+     * Starts monitoring a word that is not monitored yet.
+     *
+     * @param pos
+     *            the empty index position where the word's probe run ended
+     * @param word
+     *            the word, or {@code null} to build it from {@code text}
+     * @param text
+     *            the buffer holding the word if {@code word} is null
+     * @param offset
+     *            the index of the first character of the word in {@code text}
+     * @param length
+     *            the number of characters in the word in {@code text}
+     * @param hash
+     *            the hash code of the word
+     * @param count
+     *            the number of occurrences to add
+     */
+    private void monitor(int pos, String word, char[] text, int offset,
+            int length, int hash, int count) {
+        String key = word;
+        if (key == null) {
+            key = new String(text, offset, length);
+        }
+        if (this.size < this.capacity) {
+            int slot = this.size;
+            this.words[slot] = key;
+            this.hashes[slot] = hash;
+            this.counts[slot] = count;
+            this.errors[slot] = 0;
+            this.index[pos] = slot + 1;
+            this.heap[this.size] = slot;
+            this.heapIndex[slot] = this.size;
+            this.size++;
+            this.siftUp(this.size - 1);
+        } else {
+            // Replace the word with the smallest count
+            int slot = this.heap[0];
+            int minCount = this.counts[slot];
+            this.unindex(slot);
+            this.words[slot] = key;
+            this.hashes[slot] = hash;
+            this.counts[slot] = minCount + count;
+            this.errors[slot] = minCount;
+
+            // The removal may have moved entries, so find the run end again
+            int mask = this.index.length - 1;
+            int p = mix(hash) & mask;
+            while (this.index[p] != 0) {
+                p = (p + 1) & mask;
+            }
+            this.index[p] = slot + 1;
+            this.siftDown(0);
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        assert text != null : "Violation of: text is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        this.total += count;
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + text[i];
+        }
+        int mask = this.index.length - 1;
+        int pos = mix(h) & mask;
+        while (this.index[pos] != 0) {
+            int slot = this.index[pos] - 1;
+            if (this.hashes[slot] == h
+                    && matches(this.words[slot], text, offset, length)) {
+                this.counts[slot] += count;
+                this.siftDown(this.heapIndex[slot]);
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        this.monitor(pos, null, text, offset, length, h, count);
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert word.length() > 0 : "Violation of: |word| > 0";
+
+        String key = word.toString();
+        this.total += count;
+        int h = key.hashCode();
+        int mask = this.index.length - 1;
+        int pos = mix(h) & mask;
+        while (this.index[pos] != 0) {
+            int slot = this.index[pos] - 1;
+            if (this.hashes[slot] == h && this.words[slot].equals(key)) {
+                this.counts[slot] += count;
+                this.siftDown(this.heapIndex[slot]);
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        this.monitor(pos, key, null, 0, 0, h, count);
+    }
+
+    /**
+     * Returns the slot monitoring {@code word}, or -1 if it is not monitored.
+     *
+     * @param word
+     *            the word
+     * @return the slot of {@code word}, or -1
+     */
+    private int find(CharSequence word) {
+        String key = word.toString();
+        int h = key.hashCode();
+        int mask = this.index.length - 1;
+        int pos = mix(h) & mask;
+        while (this.index[pos] != 0) {
+            int slot = this.index[pos] - 1;
+            if (this.hashes[slot] == h && this.words[slot].equals(key)) {
+                return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the estimated count of {@code word}: an upper bound on its true
+     * count if it is monitored, or 0 if it is not (its true count is then at
+     * most {@link #minCount()}).
+     *
+     * @param word
+     *            the word
+     * @return the estimated count of {@code word}
+     */
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        int slot = this.find(word);
+        return slot < 0 ? 0 : this.counts[slot];
+    }
+
+    /**
+     * Returns the maximum overestimation of {@code count(word)}.
+     *
+     * @param word
+     *            the word
+     * @return the error bound of {@code word}, or {@link #minCount()} if it
+     *         is not monitored
+     */
+    public int error(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        int slot = this.find(word);
+        return slot < 0 ? this.minCount() : this.errors[slot];
+    }
+
+    /**
+     * Returns the smallest monitored count, which bounds the true count of
+     * every word that is not monitored.
+     *
+     * @return the smallest monitored count, or 0 if the table is not full
+     */
+    public int minCount() {
+        if (this.size < this.capacity) {
+            return 0;
+        }
+        return this.counts[this.heap[0]];
+    }
+
+    /**
+     * Returns the total number of occurrences added.
+     *
+     * @return the stream length
+     */
+    public long totalCount() {
+        return this.total;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (int slot = 0; slot < this.size; slot++) {
+            action.accept(this.words[slot], this.counts[slot]);
+        }
+    }
+
+    /**
+     * Calls {@code action} once for every monitored word with its estimated
+     * count and error bound, in no particular order.
+     *
+     * @param action
+     *            receives each (word, count, error) triple
+     */
+    public void forEachWithError(BoundedCountConsumer action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (int slot = 0; slot < this.size; slot++) {
+            action.accept(this.words[slot], this.counts[slot],
+                    this.errors[slot]);
+        }
+    }
+}
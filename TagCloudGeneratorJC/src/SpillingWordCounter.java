@@ -0,0 +1,602 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@code WordCounter} for vocabularies larger than the heap. Words are
+ * counted in an in-memory {@code HashWordCounter} until its estimated size
+ * passes a memory budget; the table is then written to a temporary run file
+ * in {@code String} order and emptied. {@link #forEach(ObjIntConsumer)}
+ * k-way merges the runs, summing the counts of equal words, in one streaming
+ * pass, so top-K selection over it needs memory only for the {@code k}
+ * words it keeps. When the runs reach a fan-in limit they are merged into
+ * one, which bounds the files open at once.
+ *
+ * <p>
+ * Runs use the front coding of {@code CountSnapshot}, without its header:
+ * each word is the varint length of the prefix it shares with the previous
+ * word, the varint number of remaining chars, the remaining chars as varints
+ * and the varint count; an empty word ends the run.
+ *
+ * <p>
+ * Once anything has been spilled, {@link #size()} and
+ * {@link #count(CharSequence)} read every run. I/O failures while counting
+ * or merging are thrown as {@code UncheckedIOException}. Close the counter
+ * to delete its runs.
+ *
+ * @author Victor Ruan
+ */
+public final class SpillingWordCounter implements WordCounter, Closeable {
+
+    /**
+     * Estimated heap bytes per distinct word besides its chars: the
+     * {@code String} and its array, plus the table's key, hash and count
+     * slots at a load factor of at most one half.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 88;
+
+    /**
+     * Largest number of runs merged at once.
+     */
+    private static final int MAX_RUNS = 64;
+
+    /**
+     * Size of the buffer of each run being read or written.
+     */
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Initial size of the buffer a run's words are decoded into.
+     */
+    private static final int INITIAL_WORD_BUFFER = 64;
+
+    /**
+     * Payload bits in each varint byte.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask of the payload bits of a varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Flag of a varint byte that is followed by another.
+     */
+    private static final int VARINT_MORE = 0x80;
+
+    /**
+     * Most bytes in a varint.
+     */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /**
+     * A run being read, positioned on its current word.
+     */
+    private static final class Run implements Closeable {
+
+        /**
+         * The run file.
+         */
+        private final InputStream in;
+
+        /**
+         * Bytes read from the run.
+         */
+        private final byte[] buffer = new byte[IO_BUFFER_SIZE];
+
+        /**
+         * Index of the next unread byte in {@code buffer}.
+         */
+        private int position;
+
+        /**
+         * Number of valid bytes in {@code buffer}.
+         */
+        private int limit;
+
+        /**
+         * The chars of the current word.
+         */
+        private char[] chars = new char[INITIAL_WORD_BUFFER];
+
+        /**
+         * The current word, or null once the run is exhausted.
+         */
+        private String word;
+
+        /**
+         * Count of the current word.
+         */
+        private int count;
+
+        /**
+         * Opens a run and reads its first word.
+         *
+         * @param file
+         *            the run file
+         * @throws IOException
+         *             if the run cannot be read
+         */
+        Run(Path file) throws IOException {
+            this.in = Files.newInputStream(file);
+            this.advance();
+        }
+
+        /**
+         * Reads an unsigned varint.
+         *
+         * @return the value read
+         * @throws IOException
+         *             if the run ends early or cannot be read
+         */
+        private int readVarint() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (this.position == this.limit) {
+                    this.limit = this.in.read(this.buffer);
+                    this.position = 0;
+                    if (this.limit <= 0) {
+                        this.limit = 0;
+                        throw new EOFException("Truncated run");
+                    }
+                }
+                b = this.buffer[this.position++];
+                value |= (b & VARINT_PAYLOAD) << shift;
+                shift += VARINT_SHIFT;
+            } while ((b & VARINT_MORE) != 0);
+            return value;
+        }
+
+        /**
+         * Moves to the next word.
+         *
+         * @return true iff there is a next word
+         * @throws IOException
+         *             if the run cannot be read
+         */
+        boolean advance() throws IOException {
+            int shared = this.readVarint();
+            int length = shared + this.readVarint();
+            if (length == 0) {
+                this.word = null;
+                return false;
+            }
+            if (length > this.chars.length) {
+                this.chars = Arrays.copyOf(this.chars,
+                        Math.max(length, 2 * this.chars.length));
+            }
+            for (int i = shared; i < length; i++) {
+                this.chars[i] = (char) this.readVarint();
+            }
+            this.word = new String(this.chars, 0, length);
+            this.count = this.readVarint();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Writes a run.
+     */
+    private static final class RunWriter implements Closeable {
+
+        /**
+         * The run file.
+         */
+        private final OutputStream out;
+
+        /**
+         * Bytes not yet written to the run.
+         */
+        private final byte[] buffer = new byte[IO_BUFFER_SIZE];
+
+        /**
+         * Number of bytes in {@code buffer}.
+         */
+        private int position;
+
+        /**
+         * The word written last.
+         */
+        private String previous = "";
+
+        /**
+         * Creates a run file.
+         *
+         * @param file
+         *            the run file
+         * @throws IOException
+         *             if the run cannot be created
+         */
+        RunWriter(Path file) throws IOException {
+            this.out = Files.newOutputStream(file);
+        }
+
+        /**
+         * Appends {@code value} as an unsigned varint.
+         *
+         * @param value
+         *            the value
+         * @throws IOException
+         *             if the run cannot be written
+         * @requires value >= 0
+         */
+        private void writeVarint(int value) throws IOException {
+            if (this.position + MAX_VARINT_BYTES > this.buffer.length) {
+                this.out.write(this.buffer, 0, this.position);
+                this.position = 0;
+            }
+            int v = value;
+            while ((v & ~VARINT_PAYLOAD) != 0) {
+                this.buffer[this.position++] = (byte) ((v & VARINT_PAYLOAD)
+                        | VARINT_MORE);
+                v >>>= VARINT_SHIFT;
+            }
+            this.buffer[this.position++] = (byte) v;
+        }
+
+        /**
+         * Appends a word, which must come after the previous one.
+         *
+         * @param word
+         *            the word
+         * @param count
+         *            its count
+         * @throws IOException
+         *             if the run cannot be written
+         */
+        void write(String word, int count) throws IOException {
+            int shared = 0;
+            int limit = Math.min(this.previous.length(), word.length());
+            while (shared < limit
+                    && this.previous.charAt(shared) == word.charAt(shared)) {
+                shared++;
+            }
+            this.writeVarint(shared);
+            this.writeVarint(word.length() - shared);
+            for (int i = shared; i < word.length(); i++) {
+                this.writeVarint(word.charAt(i));
+            }
+            this.writeVarint(count);
+            this.previous = word;
+        }
+
+        /**
+         * Ends the run and closes the file.
+         *
+         * @throws IOException
+         *             if the run cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.writeVarint(0);
+                this.writeVarint(0);
+                this.out.write(this.buffer, 0, this.position);
+            } finally {
+                this.out.close();
+            }
+        }
+    }
+
+    /**
+     * Estimated heap bytes the in-memory table may use.
+     */
+    private final long memoryBudget;
+
+    /**
+     * Directory the runs are written to.
+     */
+    private final Path spillDirectory;
+
+    /**
+     * Runs on disk, oldest first.
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * Counts not yet spilled.
+     */
+    private HashWordCounter memory = new HashWordCounter();
+
+    /**
+     * Estimated heap bytes of {@code memory}.
+     */
+    private long memoryBytes;
+
+    /**
+     * Number of distinct words, or -1 if not known since the last update.
+     */
+    private int size = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param memoryBudget
+     *            estimated heap bytes the in-memory table may use
+     * @param spillDirectory
+     *            directory the runs are written to
+     * @requires memoryBudget > 0
+     */
+    public SpillingWordCounter(long memoryBudget, Path spillDirectory) {
+        assert memoryBudget > 0 : "Violation of: memoryBudget > 0";
+        assert spillDirectory != null
+                : "Violation of: spillDirectory is not null";
+
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns the number of runs on disk.
+     *
+     * @return the number of runs
+     */
+    public int runs() {
+        return this.runs.size();
+    }
+
+    /**
+     * Accounts for a word just added to {@code memory}, spilling if the
+     * budget is exceeded.
+     *
+     * @param sizeBefore
+     *            size of {@code memory} before the add
+     * @param length
+     *            length of the word
+     */
+    private void added(int sizeBefore, int length) {
+        this.size = -1;
+        if (this.memory.size() != sizeBefore) {
+            this.memoryBytes += ENTRY_OVERHEAD_BYTES + 2L * length;
+            if (this.memoryBytes > this.memoryBudget) {
+                try {
+                    this.spill();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        int sizeBefore = this.memory.size();
+        this.memory.add(text, offset, length, count);
+        this.added(sizeBefore, length);
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        int sizeBefore = this.memory.size();
+        this.memory.add(word, count);
+        this.added(sizeBefore, word.length());
+    }
+
+    /**
+     * Writes the in-memory table as a new run and empties it, merging the
+     * runs into one if there are too many.
+     *
+     * @throws IOException
+     *             if the run cannot be written
+     */
+    private void spill() throws IOException {
+        if (this.memory.size() == 0) {
+            return;
+        }
+        String[] words = new String[this.memory.size()];
+        int[] n = {0};
+        this.memory.forEach((word, count) -> words[n[0]++] = word);
+        Arrays.sort(words);
+
+        Path run = Files.createTempFile(this.spillDirectory, "tagcloud-run",
+                ".tmp");
+        try (RunWriter out = new RunWriter(run)) {
+            for (String word : words) {
+                out.write(word, this.memory.count(word));
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        this.runs.add(run);
+        // The next run will likely be about as large
+        this.memory = new HashWordCounter(words.length);
+        this.memoryBytes = 0;
+
+        if (this.runs.size() >= MAX_RUNS) {
+            Path merged = Files.createTempFile(this.spillDirectory,
+                    "tagcloud-run", ".tmp");
+            try (RunWriter out = new RunWriter(merged)) {
+                merge(this.runs, (word, count) -> {
+                    try {
+                        out.write(word, count);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                Files.deleteIfExists(merged);
+                throw e.getCause();
+            }
+            for (Path old : this.runs) {
+                Files.deleteIfExists(old);
+            }
+            this.runs.clear();
+            this.runs.add(merged);
+        }
+    }
+
+    /**
+     * Merges {@code files}, calling {@code action} once per distinct word,
+     * in {@code String} order, with the sum of its counts.
+     *
+     * @param files
+     *            the runs
+     * @param action
+     *            receives each (word, count) pair
+     * @throws IOException
+     *             if a run cannot be read
+     */
+    private static void merge(List<Path> files,
+            ObjIntConsumer<String> action) throws IOException {
+        PriorityQueue<Run> heads = new PriorityQueue<>(
+                Math.max(1, files.size()),
+                (a, b) -> a.word.compareTo(b.word));
+        List<Run> open = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                Run run = new Run(file);
+                open.add(run);
+                if (run.word != null) {
+                    heads.add(run);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Run first = heads.poll();
+                String word = first.word;
+                long count = first.count;
+                if (first.advance()) {
+                    heads.add(first);
+                }
+                while (!heads.isEmpty() && heads.peek().word.equals(word)) {
+                    Run same = heads.poll();
+                    count += same.count;
+                    if (same.advance()) {
+                        heads.add(same);
+                    }
+                }
+                action.accept(word, (int) Math.min(count, Integer.MAX_VALUE));
+            }
+        } finally {
+            for (Run run : open) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the count of {@code word}, reading every run.
+     *
+     * @param word
+     *            the word
+     * @return the count of {@code word}, or 0 if it has not been added
+     */
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        String key = word.toString();
+        long count = this.memory.count(key);
+        try {
+            for (Path file : this.runs) {
+                try (Run run = new Run(file)) {
+                    while (run.word != null && run.word.compareTo(key) < 0) {
+                        run.advance();
+                    }
+                    if (key.equals(run.word)) {
+                        count += run.count;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of distinct words, merging the runs if anything has
+     * been spilled since the last update.
+     *
+     * @return the number of distinct words
+     */
+    @Override
+    public int size() {
+        if (this.runs.isEmpty()) {
+            return this.memory.size();
+        }
+        if (this.size < 0) {
+            int[] n = {0};
+            this.forEach((word, count) -> n[0]++);
+            this.size = n[0];
+        }
+        return this.size;
+    }
+
+    /**
+     * Calls {@code action} once for every distinct word and its count. If
+     * anything has been spilled, the in-memory counts are spilled too and
+     * the words come in {@code String} order from a streaming merge of the
+     * runs.
+     *
+     * @param action
+     *            receives each (word, count) pair
+     */
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        if (this.runs.isEmpty()) {
+            this.memory.forEach(action);
+            return;
+        }
+        int[] n = {0};
+        try {
+            this.spill();
+            merge(this.runs, (word, count) -> {
+                n[0]++;
+                action.accept(word, count);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.size = n[0];
+    }
+
+    /**
+     * Deletes the runs. The counter is empty afterwards.
+     *
+     * @throws IOException
+     *             if a run cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Path run : this.runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        this.runs.clear();
+        this.memory = new HashWordCounter();
+        this.memoryBytes = 0;
+        this.size = -1;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
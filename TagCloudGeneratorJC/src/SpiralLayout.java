@@ -0,0 +1,568 @@
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Wordle-style layout of a {@code TagCloud}. Each word's box is measured
+ * with headless AWT font metrics, then the word is moved outwards along an
+ * Archimedean spiral from the center until its box overlaps no word placed
+ * before it. Placed boxes are kept in a {@code RectQuadtree}, so each
+ * collision test costs about O(log n) rather than O(n).
+ *
+ * <p>
+ * Words are placed tallest first, and among words of the same height,
+ * narrowest first. A box that contains an earlier box (same height, at
+ * least as wide) also collides at every spiral point where the earlier one
+ * did, so its search resumes just after the point where the earlier word
+ * landed. This keeps the total spiral walk close to linear in the area of
+ * the cloud.
+ *
+ * @author Victor Ruan
+ */
+public final class SpiralLayout {
+
+    /**
+     * Font family the words are measured in; renderers should draw in the
+     * matching generic family.
+     */
+    public static final String FONT_FAMILY = Font.SANS_SERIF;
+
+    /**
+     * Empty space kept around each word's box, in pixels.
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * Margin around the whole cloud, in pixels.
+     */
+    private static final int MARGIN = 8;
+
+    /**
+     * Distance between successive turns of the spiral, in pixels.
+     */
+    private static final double RING_SPACING = 3;
+
+    /**
+     * Distance between successive points along the spiral, in pixels.
+     */
+    private static final double ARC_STEP = 2;
+
+    /**
+     * Horizontal stretch of the spiral, so the cloud comes out wider than
+     * tall.
+     */
+    private static final double ASPECT = 1.5;
+
+    /**
+     * Factor by which the spiral may outgrow the radius of a perfectly
+     * packed cloud before a word is given up.
+     */
+    private static final int MAX_RADIUS_FACTOR = 8;
+
+    /**
+     * Measurement context: anti-aliased, fractional metrics, no transform.
+     */
+    private static final FontRenderContext FRC = headlessContext();
+
+    /**
+     * Fonts by size, created once.
+     */
+    private static final Font[] FONTS = fonts();
+
+    /**
+     * Points of the spiral, centered on the origin, computed as far as they
+     * are needed and shared by every word of one layout. Points where no box
+     * can be centered any more are closed and skipped by later searches
+     * through path-compressed links to the next open point.
+     */
+    private static final class Spiral {
+
+        /**
+         * Growth rate a of r = a * theta.
+         */
+        private static final double A = RING_SPACING / (2 * Math.PI);
+
+        /**
+         * Largest rotation between points computed incrementally; the
+         * Taylor terms used are accurate to about 1e-9 below it.
+         */
+        private static final double MAX_ROTATION_STEP = 0.05;
+
+        /**
+         * Points between exact sine and cosine evaluations, so rounding
+         * errors of the incremental rotation cannot build up; a power of 2.
+         */
+        private static final int RESYNC_INTERVAL = 256;
+
+        /**
+         * Initial number of points allocated.
+         */
+        private static final int INITIAL_CAPACITY = 1024;
+
+        /**
+         * Number of points within the maximum radius.
+         */
+        private final int maxSteps;
+
+        /**
+         * x of each computed point.
+         */
+        private int[] x = new int[INITIAL_CAPACITY];
+
+        /**
+         * y of each computed point.
+         */
+        private int[] y = new int[INITIAL_CAPACITY];
+
+        /**
+         * Each point's own index while it is open, or else a later index no
+         * greater than the next open point.
+         */
+        private int[] next = new int[INITIAL_CAPACITY];
+
+        /**
+         * Number of computed points.
+         */
+        private int count = 0;
+
+        /**
+         * Angle of the last computed point.
+         */
+        private double theta = 0;
+
+        /**
+         * Cosine of {@code theta}.
+         */
+        private double cos = 1;
+
+        /**
+         * Sine of {@code theta}.
+         */
+        private double sin = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param maxRadius
+         *            the radius past which words are given up
+         */
+        Spiral(double maxRadius) {
+            // Arc length of r = a * theta is about a * theta^2 / 2, so the
+            // k-th of equally spaced points sits at r = sqrt(2 * a * s * k)
+            this.maxSteps = (int) Math.min(Integer.MAX_VALUE - 8,
+                    maxRadius * maxRadius / (2 * A * ARC_STEP));
+        }
+
+        /**
+         * Computes the points up to {@code step}.
+         *
+         * @param step
+         *            the index of the point needed
+         * @requires step < maxSteps
+         */
+        private void extendTo(int step) {
+            while (this.count <= step) {
+                if (this.count == this.x.length) {
+                    int capacity = (int) Math.min(this.maxSteps,
+                            2L * this.count);
+                    this.x = Arrays.copyOf(this.x, capacity);
+                    this.y = Arrays.copyOf(this.y, capacity);
+                    this.next = Arrays.copyOf(this.next, capacity);
+                }
+                double theta = Math.sqrt(2 * ARC_STEP * this.count / A);
+                double d = theta - this.theta;
+                if (d < MAX_ROTATION_STEP
+                        && (this.count & (RESYNC_INTERVAL - 1)) != 0) {
+                    // Rotate by the small angle d, with its sine and cosine
+                    // from the first terms of their Taylor series
+                    double d2 = d * d;
+                    double cosD = 1 - d2 / 2 + d2 * d2 / 24;
+                    double sinD = d - d * d2 / 6 + d * d2 * d2 / 120;
+                    double cos = this.cos * cosD - this.sin * sinD;
+                    this.sin = this.sin * cosD + this.cos * sinD;
+                    this.cos = cos;
+                } else {
+                    this.cos = Math.cos(theta);
+                    this.sin = Math.sin(theta);
+                }
+                this.theta = theta;
+                double r = A * theta;
+                this.x[this.count] = (int) Math.round(ASPECT * r * this.cos);
+                this.y[this.count] = (int) Math.round(r * this.sin);
+                this.next[this.count] = this.count;
+                this.count++;
+            }
+        }
+
+        /**
+         * Returns the first open point at or after {@code step}.
+         *
+         * @param step
+         *            the index to start from
+         * @return the index of the open point, or {@code maxSteps} if there
+         *         is none
+         */
+        int nextOpen(int step) {
+            int open = step;
+            while (open < this.maxSteps) {
+                this.extendTo(open);
+                if (this.next[open] == open) {
+                    break;
+                }
+                open = this.next[open];
+            }
+            for (int k = step; k < open && k < this.count;) {
+                int following = this.next[k];
+                this.next[k] = open;
+                k = following;
+            }
+            return open;
+        }
+
+        /**
+         * Closes point {@code step}.
+         *
+         * @param step
+         *            the index of a computed point
+         */
+        void close(int step) {
+            this.next[step] = step + 1;
+        }
+    }
+
+    /**
+     * Bitmap of grid cells where no word's box can be centered, because every
+     * point of the cell is too close to one placed box. It rejects most
+     * spiral points in the filled core of the cloud without a quadtree
+     * query.
+     */
+    private static final class CoverMask {
+
+        /**
+         * log2 of the cell size in pixels.
+         */
+        private static final int CELL_SHIFT = 2;
+
+        /**
+         * The mask covers [-extent, extent) on both axes.
+         */
+        private final int extent;
+
+        /**
+         * Number of cells along each axis.
+         */
+        private final int cells;
+
+        /**
+         * One bit per cell, row by row.
+         */
+        private final long[] bits;
+
+        /**
+         * Constructor.
+         *
+         * @param extent
+         *            half the side of the covered square, in pixels
+         */
+        CoverMask(int extent) {
+            this.extent = extent;
+            this.cells = (2 * extent) >> CELL_SHIFT;
+            this.bits = new long[(int) (((long) this.cells * this.cells
+                    + Long.SIZE - 1) / Long.SIZE)];
+        }
+
+        /**
+         * Reports whether the point lies in a covered cell.
+         *
+         * @param px
+         *            x of the point
+         * @param py
+         *            y of the point
+         * @return true iff no box can be centered at the point
+         */
+        boolean contains(int px, int py) {
+            int cx = (px + this.extent) >> CELL_SHIFT;
+            int cy = (py + this.extent) >> CELL_SHIFT;
+            if (cx < 0 || cy < 0 || cx >= this.cells || cy >= this.cells) {
+                return false;
+            }
+            long bit = (long) cy * this.cells + cx;
+            return (this.bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+        }
+
+        /**
+         * Marks the cells that lie entirely inside [x0, x1) x [y0, y1).
+         *
+         * @param x0
+         *            left
+         * @param y0
+         *            top
+         * @param x1
+         *            right (exclusive)
+         * @param y1
+         *            bottom (exclusive)
+         */
+        void cover(int x0, int y0, int x1, int y1) {
+            final int cellSize = 1 << CELL_SHIFT;
+            int cx0 = Math.max(0,
+                    (x0 + this.extent + cellSize - 1) >> CELL_SHIFT);
+            int cy0 = Math.max(0,
+                    (y0 + this.extent + cellSize - 1) >> CELL_SHIFT);
+            int cx1 = Math.min(this.cells, (x1 + this.extent) >> CELL_SHIFT);
+            int cy1 = Math.min(this.cells, (y1 + this.extent) >> CELL_SHIFT);
+            for (int cy = cy0; cy < cy1; cy++) {
+                for (int cx = cx0; cx < cx1; cx++) {
+                    long bit = (long) cy * this.cells + cx;
+                    this.bits[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Left x of each word's text, parallel to the cloud.
+     */
+    private final int[] x;
+
+    /**
+     * Baseline y of each word's text, parallel to the cloud.
+     */
+    private final int[] y;
+
+    /**
+     * Whether each word found a place.
+     */
+    private final boolean[] placed;
+
+    /**
+     * Width of the laid-out cloud, in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height of the laid-out cloud, in pixels.
+     */
+    private final int height;
+
+    /**
+     * Constructor.
+     *
+     * @param x
+     *            the left x of each word
+     * @param y
+     *            the baseline y of each word
+     * @param placed
+     *            whether each word was placed
+     * @param width
+     *            the width of the cloud
+     * @param height
+     *            the height of the cloud
+     */
+    private SpiralLayout(int[] x, int[] y, boolean[] placed, int width,
+            int height) {
+        this.x = x;
+        this.y = y;
+        this.placed = placed;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Switches AWT to headless mode, unless the user chose otherwise, and
+     * returns the measurement context.
+     *
+     * @return the context
+     */
+    private static FontRenderContext headlessContext() {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        return new FontRenderContext(null, true, true);
+    }
+
+    /**
+     * Returns the fonts up to {@code FontScale.MAX_SIZE}.
+     *
+     * @return the fonts, indexed by size
+     */
+    private static Font[] fonts() {
+        Font base = new Font(FONT_FAMILY, Font.PLAIN, 1);
+        Font[] fonts = new Font[FontScale.MAX_SIZE + 1];
+        for (int size = 1; size < fonts.length; size++) {
+            fonts[size] = base.deriveFont((float) size);
+        }
+        return fonts;
+    }
+
+    /**
+     * Lays out {@code cloud}.
+     *
+     * @param cloud
+     *            the tag cloud
+     * @return the layout
+     */
+    public static SpiralLayout of(TagCloud cloud) {
+        assert cloud != null : "Violation of: cloud is not null";
+
+        int n = cloud.size();
+        // Padded box size and text ascent of each word
+        int[] boxWidth = new int[n];
+        int[] boxHeight = new int[n];
+        int[] ascent = new int[n];
+        long area = 0;
+        int minWidth = Integer.MAX_VALUE;
+        int minHeight = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Rectangle2D bounds = FONTS[cloud.fontSize(i)]
+                    .getStringBounds(cloud.word(i), FRC);
+            boxWidth[i] = (int) Math.ceil(bounds.getWidth()) + 2 * PADDING;
+            boxHeight[i] = (int) Math.ceil(bounds.getHeight()) + 2 * PADDING;
+            ascent[i] = (int) Math.ceil(-bounds.getY());
+            area += (long) boxWidth[i] * boxHeight[i];
+            minWidth = Math.min(minWidth, boxWidth[i]);
+            minHeight = Math.min(minHeight, boxHeight[i]);
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+                .<Integer>comparingInt(i -> -boxHeight[i])
+                .thenComparingInt(i -> boxWidth[i]));
+
+        // Radius the cloud would have if it were packed without gaps
+        double packedRadius = Math.sqrt(area / (Math.PI * ASPECT)) + 1;
+        double maxRadius = MAX_RADIUS_FACTOR * packedRadius
+                + FontScale.MAX_SIZE;
+        // Index the whole area the spiral can reach, so no box lands in
+        // the unsplittable root
+        int extent = (int) Math.min(Integer.MAX_VALUE / 4,
+                Math.ceil(ASPECT * maxRadius) + 2 * FontScale.MAX_SIZE);
+        RectQuadtree placedBoxes = new RectQuadtree(-extent, -extent, extent,
+                extent);
+        CoverMask covered = new CoverMask((int) Math.min(Integer.MAX_VALUE / 4,
+                Math.ceil(2 * ASPECT * packedRadius) + 2 * FontScale.MAX_SIZE));
+        Spiral spiral = new Spiral(maxRadius);
+
+        int[] left = new int[n];
+        int[] top = new int[n];
+        boolean[] placed = new boolean[n];
+        int step = 0;
+        int previous = -1;
+        for (int i : order) {
+            int w = boxWidth[i];
+            int h = boxHeight[i];
+            if (previous < 0 || h != boxHeight[previous]
+                    || w < boxWidth[previous]) {
+                step = 0;
+            }
+            for (step = spiral.nextOpen(step); step < spiral.maxSteps;
+                    step = spiral.nextOpen(step + 1)) {
+                int cx = spiral.x[step];
+                int cy = spiral.y[step];
+                if (covered.contains(cx, cy)) {
+                    spiral.close(step);
+                } else {
+                    int x0 = cx - w / 2;
+                    int y0 = cy - h / 2;
+                    if (!placedBoxes.intersects(x0, y0, x0 + w, y0 + h)) {
+                        placedBoxes.insert(x0, y0, x0 + w, y0 + h);
+                        // No box, being at least minWidth x minHeight, can
+                        // be centered this close to the new one
+                        covered.cover(x0 - (minWidth + 1) / 2 + 1,
+                                y0 - (minHeight + 1) / 2 + 1,
+                                x0 + w + minWidth / 2, y0 + h + minHeight / 2);
+                        left[i] = x0;
+                        top[i] = y0;
+                        placed[i] = true;
+                        break;
+                    }
+                }
+            }
+            previous = i;
+        }
+
+        // Move the cloud so its top left corner sits at the margin
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (placed[i]) {
+                minX = Math.min(minX, left[i]);
+                minY = Math.min(minY, top[i]);
+                maxX = Math.max(maxX, left[i] + boxWidth[i]);
+                maxY = Math.max(maxY, top[i] + boxHeight[i]);
+            }
+        }
+        if (minX > maxX) {
+            return new SpiralLayout(left, top, placed, 2 * MARGIN,
+                    2 * MARGIN);
+        }
+        int[] textX = new int[n];
+        int[] baseline = new int[n];
+        for (int i = 0; i < n; i++) {
+            textX[i] = left[i] - minX + MARGIN + PADDING;
+            baseline[i] = top[i] - minY + MARGIN + PADDING + ascent[i];
+        }
+        return new SpiralLayout(textX, baseline, placed,
+                maxX - minX + 2 * MARGIN, maxY - minY + 2 * MARGIN);
+    }
+
+    /**
+     * Returns the width of the cloud.
+     *
+     * @return the width in pixels, margins included
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the cloud.
+     *
+     * @return the height in pixels, margins included
+     */
+    public int height() {
+        return this.height;
+    }
+
+    /**
+     * Reports whether word {@code i} of the cloud found a place. Words that
+     * do not fit within the spiral's reach are left out.
+     *
+     * @param i
+     *            the position of the word in the cloud
+     * @return true iff the word was placed
+     */
+    public boolean isPlaced(int i) {
+        return this.placed[i];
+    }
+
+    /**
+     * Returns the left x of word {@code i}'s text.
+     *
+     * @param i
+     *            the position of the word in the cloud
+     * @return the x coordinate in pixels
+     * @requires isPlaced(i)
+     */
+    public int x(int i) {
+        return this.x[i];
+    }
+
+    /**
+     * Returns the baseline y of word {@code i}'s text.
+     *
+     * @param i
+     *            the position of the word in the cloud
+     * @return the y coordinate in pixels
+     * @requires isPlaced(i)
+     */
+    public int y(int i) {
+        return this.y[i];
+    }
+}
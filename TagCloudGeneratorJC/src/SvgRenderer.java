@@ -0,0 +1,151 @@
+import java.io.IOException;
+
+/**
+ * Renders a tag cloud as a standalone SVG image with every word absolutely
+ * positioned by a {@code SpiralLayout}, sized in pixels by its font size and
+ * with its count (and error bound, if approximate) as a tooltip. Words the
+ * layout could not place are left out.
+ *
+ * <p>
+ * The layout is computed before anything is written, so the image size can
+ * come first; the document itself is still streamed.
+ *
+ * @author Victor Ruan
+ */
+public final class SvgRenderer implements TagCloudRenderer {
+
+    /**
+     * Start of the document, up to the width.
+     */
+    private static final byte[] SVG_WIDTH = Utf8Sink.utf8(
+            "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+
+    /**
+     * Between the width and the height.
+     */
+    private static final byte[] SVG_HEIGHT = Utf8Sink.utf8("\" height=\"");
+
+    /**
+     * End of the svg tag, up to the source name in the title.
+     */
+    private static final byte[] TITLE = Utf8Sink.utf8("\" font-family="
+            + "\"sans-serif\">\n<title>Top ");
+
+    /**
+     * Between the number of words and the source name.
+     */
+    private static final byte[] WORDS_IN = Utf8Sink.utf8(" words in ");
+
+    /**
+     * End of the title.
+     */
+    private static final byte[] TITLE_END = Utf8Sink.utf8("</title>\n");
+
+    /**
+     * Start of a word, up to its x coordinate.
+     */
+    private static final byte[] TEXT_X = Utf8Sink.utf8("<text x=\"");
+
+    /**
+     * Between the x and y coordinates.
+     */
+    private static final byte[] TEXT_Y = Utf8Sink.utf8("\" y=\"");
+
+    /**
+     * Between the y coordinate and the font size.
+     */
+    private static final byte[] TEXT_SIZE = Utf8Sink
+            .utf8("\" font-size=\"");
+
+    /**
+     * Between the font size and the count.
+     */
+    private static final byte[] TEXT_COUNT = Utf8Sink
+            .utf8("\"><title>count: ");
+
+    /**
+     * Between the count and the word.
+     */
+    private static final byte[] TEXT_WORD = Utf8Sink.utf8("</title>");
+
+    /**
+     * Between an approximate count and its error bound.
+     */
+    private static final byte[] TEXT_ERROR = Utf8Sink.utf8(", error: ");
+
+    /**
+     * End of a word.
+     */
+    private static final byte[] TEXT_END = Utf8Sink.utf8("</text>\n");
+
+    /**
+     * End of the document.
+     */
+    private static final byte[] END = Utf8Sink.utf8("</svg>\n");
+
+    /**
+     * Escapes of the XML markup characters.
+     */
+    private static final byte[][] ESCAPES = escapes();
+
+    /**
+     * Returns the escape table.
+     *
+     * @return the escapes, indexed by character
+     */
+    private static byte[][] escapes() {
+        byte[][] escapes = new byte[128][];
+        escapes['&'] = Utf8Sink.utf8("&amp;");
+        escapes['<'] = Utf8Sink.utf8("&lt;");
+        escapes['>'] = Utf8Sink.utf8("&gt;");
+        escapes['"'] = Utf8Sink.utf8("&quot;");
+        return escapes;
+    }
+
+    @Override
+    public String name() {
+        return "svg";
+    }
+
+    @Override
+    public String contentType() {
+        return "image/svg+xml";
+    }
+
+    @Override
+    public void render(TagCloud cloud, Utf8Sink out) throws IOException {
+        assert cloud != null : "Violation of: cloud is not null";
+        assert out != null : "Violation of: out is not null";
+
+        SpiralLayout layout = SpiralLayout.of(cloud);
+        out.put(SVG_WIDTH);
+        out.putInt(layout.width());
+        out.put(SVG_HEIGHT);
+        out.putInt(layout.height());
+        out.put(TITLE);
+        out.putInt(cloud.numOfWords());
+        out.put(WORDS_IN);
+        out.putText(cloud.source(), ESCAPES);
+        out.put(TITLE_END);
+        for (int i = 0; i < cloud.size(); i++) {
+            if (layout.isPlaced(i)) {
+                out.put(TEXT_X);
+                out.putInt(layout.x(i));
+                out.put(TEXT_Y);
+                out.putInt(layout.y(i));
+                out.put(TEXT_SIZE);
+                out.putInt(cloud.fontSize(i));
+                out.put(TEXT_COUNT);
+                out.putInt(cloud.count(i));
+                if (cloud.isApproximate()) {
+                    out.put(TEXT_ERROR);
+                    out.putInt(cloud.error(i));
+                }
+                out.put(TEXT_WORD);
+                out.putText(cloud.word(i), ESCAPES);
+                out.put(TEXT_END);
+            }
+        }
+        out.put(END);
+    }
+}
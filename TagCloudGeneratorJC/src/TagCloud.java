@@ -0,0 +1,252 @@
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.ToIntFunction;
+
+/**
+ * The words of a tag cloud in display (case-insensitive alphabetical)
+ * order, each with its count and font size. It is built once from the
+ * top-K selection and shared by every {@code TagCloudRenderer}. The counts
+ * of an approximate cloud are upper bounds, each with the most it may
+ * overstate the true count.
+ *
+ * @author Victor Ruan
+ */
+public final class TagCloud {
+
+    /**
+     * Name of the input the words were counted from.
+     */
+    private final String source;
+
+    /**
+     * Number of words the user asked for.
+     */
+    private final int numOfWords;
+
+    /**
+     * Words in display order.
+     */
+    private final String[] words;
+
+    /**
+     * Counts parallel to {@code words}.
+     */
+    private final int[] counts;
+
+    /**
+     * Font sizes parallel to {@code words}.
+     */
+    private final int[] sizes;
+
+    /**
+     * Error bounds parallel to {@code words}, or null if the counts are
+     * exact.
+     */
+    private final int[] errors;
+
+    /**
+     * Count of the most common word, or 0 if there are no words.
+     */
+    private final int largestCount;
+
+    /**
+     * Constructor.
+     *
+     * @param source
+     *            the name of the input
+     * @param numOfWords
+     *            the number of words asked for
+     * @param words
+     *            the words in display order
+     * @param counts
+     *            the counts
+     * @param sizes
+     *            the font sizes
+     * @param errors
+     *            the error bounds, or null if the counts are exact
+     * @param largestCount
+     *            the count of the most common word
+     */
+    private TagCloud(String source, int numOfWords, String[] words,
+            int[] counts, int[] sizes, int[] errors, int largestCount) {
+        this.source = source;
+        this.numOfWords = numOfWords;
+        this.words = words;
+        this.counts = counts;
+        this.sizes = sizes;
+        this.errors = errors;
+        this.largestCount = largestCount;
+    }
+
+    /**
+     * Sizes the given most common words and puts them in display order.
+     *
+     * @param ranked
+     *            the most common (word, count) pairs in decreasing count order
+     * @param source
+     *            the name of the input the words were counted from
+     * @param numOfWords
+     *            the number of words the user asked for
+     * @param scale
+     *            maps counts to font sizes
+     * @return the tag cloud
+     * @updates ranked
+     * @ensures ranked is sorted in display order
+     */
+    public static TagCloud of(List<Entry<String, Integer>> ranked,
+            String source, int numOfWords, FontScale scale) {
+        return of(ranked, source, numOfWords, scale, null);
+    }
+
+    /**
+     * Sizes the given most common words, whose counts may be overestimated,
+     * and puts them in display order.
+     *
+     * @param ranked
+     *            the most common (word, count) pairs in decreasing count order
+     * @param source
+     *            the name of the input the words were counted from
+     * @param numOfWords
+     *            the number of words the user asked for
+     * @param scale
+     *            maps counts to font sizes
+     * @param errorBound
+     *            the most each word's count may overstate its true count, or
+     *            null if the counts are exact
+     * @return the tag cloud
+     * @updates ranked
+     * @ensures ranked is sorted in display order
+     */
+    public static TagCloud of(List<Entry<String, Integer>> ranked,
+            String source, int numOfWords, FontScale scale,
+            ToIntFunction<String> errorBound) {
+        assert ranked != null : "Violation of: ranked is not null";
+        assert source != null : "Violation of: source is not null";
+        assert scale != null : "Violation of: scale is not null";
+
+        // The first pair holds the count of the most common word
+        int largestCount = 0;
+        if (ranked.size() > 0) {
+            largestCount = ranked.get(0).getValue();
+        }
+        ranked.sort(Entry.comparingByKey(String.CASE_INSENSITIVE_ORDER));
+
+        int n = ranked.size();
+        String[] words = new String[n];
+        int[] counts = new int[n];
+        int[] sizes = new int[n];
+        int[] errors = null;
+        if (errorBound != null) {
+            errors = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            Entry<String, Integer> entry = ranked.get(i);
+            words[i] = entry.getKey();
+            counts[i] = entry.getValue();
+            sizes[i] = scale.size(counts[i], largestCount);
+            if (errors != null) {
+                errors[i] = errorBound.applyAsInt(words[i]);
+            }
+        }
+        return new TagCloud(source, numOfWords, words, counts, sizes, errors,
+                largestCount);
+    }
+
+    /**
+     * Returns the name of the input the words were counted from.
+     *
+     * @return the source name
+     */
+    public String source() {
+        return this.source;
+    }
+
+    /**
+     * Returns the number of words the user asked for, which may exceed
+     * {@link #size()}.
+     *
+     * @return the requested number of words
+     */
+    public int numOfWords() {
+        return this.numOfWords;
+    }
+
+    /**
+     * Returns the number of words in the cloud.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return this.words.length;
+    }
+
+    /**
+     * Returns the count of the most common word.
+     *
+     * @return the largest count, or 0 if the cloud is empty
+     */
+    public int largestCount() {
+        return this.largestCount;
+    }
+
+    /**
+     * Returns the word at position {@code i} in display order.
+     *
+     * @param i
+     *            the position
+     * @return the word
+     * @requires 0 <= i < size()
+     */
+    public String word(int i) {
+        return this.words[i];
+    }
+
+    /**
+     * Returns the count of the word at position {@code i}.
+     *
+     * @param i
+     *            the position
+     * @return the count
+     * @requires 0 <= i < size()
+     */
+    public int count(int i) {
+        return this.counts[i];
+    }
+
+    /**
+     * Reports whether the counts are estimates with error bounds.
+     *
+     * @return true iff the counts may overstate the true counts
+     */
+    public boolean isApproximate() {
+        return this.errors != null;
+    }
+
+    /**
+     * Returns the most the count of the word at position {@code i} may
+     * overstate its true count.
+     *
+     * @param i
+     *            the position
+     * @return the error bound, or 0 if the counts are exact
+     * @requires 0 <= i < size()
+     */
+    public int error(int i) {
+        if (this.errors == null) {
+            return 0;
+        }
+        return this.errors[i];
+    }
+
+    /**
+     * Returns the font size of the word at position {@code i}.
+     *
+     * @param i
+     *            the position
+     * @return the font size
+     * @requires 0 <= i < size()
+     */
+    public int fontSize(int i) {
+        return this.sizes[i];
+    }
+}
@@ -0,0 +1,669 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-interactive command line that generates many tag clouds in one JVM.
+ * Jobs come from the command line and from a manifest file, and run on a
+ * fixed pool of worker threads. Inputs are read as UTF-8 and split into
+ * words by one {@code TokenizerProfile}; an input that is a directory gives
+ * one cloud of all the files under it. A single large file may also be split
+ * into chunks counted in parallel by {@code ParallelWordCount}, or counted
+ * approximately in fixed memory by a {@code SpaceSavingCounter}, whose
+ * pages report each count's error bound.
+ *
+ * <p>
+ * A manifest has one job per line: the input path, a tab, the output path
+ * and optionally another tab and the number of words for that job. Blank
+ * lines and lines starting with {@code #} are skipped. The manifest is read
+ * as the jobs run, so it may list any number of jobs.
+ *
+ * @author Victor Ruan
+ */
+public final class TagCloudBatch {
+
+    /**
+     * Default number of words in each cloud.
+     */
+    public static final int DEFAULT_WORDS = 100;
+
+    /**
+     * Jobs queued per worker before the reader of the manifest waits.
+     */
+    private static final int QUEUED_PER_WORKER = 4;
+
+    /**
+     * Exit status for a usage or option error.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * Number of words in each cloud, unless a job says otherwise.
+     */
+    private final int numOfWords;
+
+    /**
+     * Maps counts to font sizes.
+     */
+    private final FontScale scale;
+
+    /**
+     * Writes every page, or null to choose by output file extension.
+     */
+    private final TagCloudRenderer renderer;
+
+    /**
+     * Heap budget of each job's count table, past which it spills to disk,
+     * or 0 to count in memory only. Only single files can be spilled.
+     */
+    private final long memoryBudget;
+
+    /**
+     * Splits every input into words.
+     */
+    private final TokenizerProfile profile;
+
+    /**
+     * Whether words differing only in case are counted as one.
+     */
+    private final boolean ignoreCase;
+
+    /**
+     * Counts the chunks of each input file in parallel, or null to count
+     * each file on its job's thread.
+     */
+    private final ForkJoinPool chunkPool;
+
+    /**
+     * Number of words a {@code SpaceSavingCounter} monitors for each input,
+     * or 0 to count exactly.
+     */
+    private final int approximateCapacity;
+
+    /**
+     * Collects the options of a {@code TagCloudBatch}. Every option has a
+     * default: {@link #DEFAULT_WORDS} words, a linear scale, the format
+     * named by each output file's extension, the prose profile, and exact,
+     * case-sensitive counting of each file on its job's thread.
+     */
+    public static final class Builder {
+
+        /**
+         * Default number of words in each cloud.
+         */
+        private int numOfWords = DEFAULT_WORDS;
+
+        /**
+         * Maps counts to font sizes.
+         */
+        private FontScale scale = FontScale.LINEAR;
+
+        /**
+         * Writes every page, or null to choose by output file extension.
+         */
+        private TagCloudRenderer renderer;
+
+        /**
+         * Heap budget of each job's count table, or 0 to count in memory
+         * only.
+         */
+        private long memoryBudget;
+
+        /**
+         * Splits every input into words.
+         */
+        private TokenizerProfile profile = TokenizerProfile.PROSE;
+
+        /**
+         * Whether words differing only in case are counted as one.
+         */
+        private boolean ignoreCase;
+
+        /**
+         * Counts the chunks of each input file in parallel, or null.
+         */
+        private ForkJoinPool chunkPool;
+
+        /**
+         * Number of words monitored for each input, or 0 to count exactly.
+         */
+        private int approximateCapacity;
+
+        /**
+         * Sets the default number of words in each cloud.
+         *
+         * @param numOfWords
+         *            the number of words
+         * @return this
+         */
+        public Builder words(int numOfWords) {
+            this.numOfWords = numOfWords;
+            return this;
+        }
+
+        /**
+         * Sets how counts map to font sizes.
+         *
+         * @param scale
+         *            the font scale
+         * @return this
+         */
+        public Builder scale(FontScale scale) {
+            this.scale = scale;
+            return this;
+        }
+
+        /**
+         * Sets the output format.
+         *
+         * @param renderer
+         *            the output format, or null to choose by output file
+         *            extension
+         * @return this
+         */
+        public Builder renderer(TagCloudRenderer renderer) {
+            this.renderer = renderer;
+            return this;
+        }
+
+        /**
+         * Sets the heap budget of each job's count table.
+         *
+         * @param memoryBudget
+         *            estimated heap bytes each job's count table may use
+         *            before it spills sorted runs to the temporary
+         *            directory, or 0 to count in memory only
+         * @return this
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Sets how every input is split into words.
+         *
+         * @param profile
+         *            the tokenizer profile
+         * @return this
+         */
+        public Builder profile(TokenizerProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * Sets whether words differing only in case are counted as one,
+         * shown in their most frequent casing.
+         *
+         * @param ignoreCase
+         *            whether case is ignored
+         * @return this
+         */
+        public Builder ignoreCase(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+            return this;
+        }
+
+        /**
+         * Sets the pool that counts the chunks of each input file in
+         * parallel.
+         *
+         * @param chunkPool
+         *            the pool, or null to count each file on its job's
+         *            thread
+         * @return this
+         */
+        public Builder chunkPool(ForkJoinPool chunkPool) {
+            this.chunkPool = chunkPool;
+            return this;
+        }
+
+        /**
+         * Sets the number of words a {@code SpaceSavingCounter} monitors for
+         * each input file.
+         *
+         * @param approximateCapacity
+         *            the number of words, or 0 to count exactly
+         * @return this
+         */
+        public Builder approximateCapacity(int approximateCapacity) {
+            this.approximateCapacity = approximateCapacity;
+            return this;
+        }
+
+        /**
+         * Returns a {@code TagCloudBatch} with these options.
+         *
+         * @return the batch
+         * @requires scale /= null and memoryBudget >= 0 and
+         *           profile /= null and
+         *           not (ignoreCase and memoryBudget > 0) and
+         *           not (chunkPool /= null and memoryBudget > 0) and
+         *           approximateCapacity >= 0 and
+         *           (approximateCapacity = 0 or (not ignoreCase and
+         *           memoryBudget = 0 and chunkPool = null))
+         */
+        public TagCloudBatch build() {
+            return new TagCloudBatch(this);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param options
+     *            the options; see {@link Builder#build()}
+     */
+    private TagCloudBatch(Builder options) {
+        assert options.scale != null : "Violation of: scale is not null";
+        assert options.memoryBudget >= 0 : "Violation of: memoryBudget >= 0";
+        assert options.profile != null : "Violation of: profile is not null";
+        assert !(options.ignoreCase && options.memoryBudget > 0) : ""
+                + "Violation of: not (ignoreCase and memoryBudget > 0)";
+        assert options.chunkPool == null || options.memoryBudget == 0 : ""
+                + "Violation of: not (chunkPool /= null and memoryBudget > 0)";
+        assert options.approximateCapacity >= 0 : ""
+                + "Violation of: approximateCapacity >= 0";
+        assert options.approximateCapacity == 0 || (!options.ignoreCase
+                && options.memoryBudget == 0 && options.chunkPool == null)
+                : "Violation of: approximateCapacity = 0"
+                        + " or no other counting option is set";
+
+        this.numOfWords = options.numOfWords;
+        this.scale = options.scale;
+        this.renderer = options.renderer;
+        this.memoryBudget = options.memoryBudget;
+        this.profile = options.profile;
+        this.ignoreCase = options.ignoreCase;
+        this.chunkPool = options.chunkPool;
+        this.approximateCapacity = options.approximateCapacity;
+    }
+
+    /**
+     * Returns {@code counts} with words differing only in case counted as
+     * one if this batch ignores case, folding each distinct word once.
+     *
+     * @param counts
+     *            the exact counts
+     * @return the counts to render
+     */
+    private WordCounter foldIfIgnoringCase(WordCounter counts) {
+        if (!this.ignoreCase || counts instanceof FoldingWordCounter) {
+            return counts;
+        }
+        FoldingWordCounter folded = new FoldingWordCounter(counts.size());
+        folded.addAll(counts);
+        return folded;
+    }
+
+    /**
+     * Generates one tag cloud.
+     *
+     * @param input
+     *            the UTF-8 input file, or a directory whose files are counted
+     *            together
+     * @param output
+     *            the output file
+     * @param words
+     *            the number of words in the cloud
+     * @throws IOException
+     *             if the input cannot be read or the output written, or if
+     *             the input is a directory and counting is approximate or
+     *             capped by a memory budget
+     * @requires words >= 0
+     */
+    public void generate(Path input, Path output, int words)
+            throws IOException {
+        assert input != null : "Violation of: input is not null";
+        assert output != null : "Violation of: output is not null";
+        assert words >= 0 : "Violation of: words >= 0";
+
+        if (this.approximateCapacity > 0) {
+            if (Files.isDirectory(input)) {
+                throw new IOException(input + ": approximate counting reads "
+                        + "single files, not directories");
+            }
+            this.write(MappedWordCount.countWords(input,
+                    this.profile.separators(),
+                    MappedWordCount.DEFAULT_WINDOW_BYTES,
+                    new SpaceSavingCounter(this.approximateCapacity)), input,
+                    output, words);
+        } else if (this.memoryBudget > 0) {
+            if (Files.isDirectory(input)) {
+                throw new IOException(input + ": memory-capped counting reads "
+                        + "single files, not directories");
+            }
+            try (SpillingWordCounter counts = new SpillingWordCounter(
+                    this.memoryBudget,
+                    Paths.get(System.getProperty("java.io.tmpdir")))) {
+                MappedWordCount.countWords(input, this.profile.separators(),
+                        MappedWordCount.DEFAULT_WINDOW_BYTES, counts);
+                this.write(counts, input, output, words);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else if (Files.isDirectory(input)) {
+            WordCounter counts = CorpusWordCount.countWords(input,
+                    this.profile.separators(),
+                    CorpusWordCount.DEFAULT_MAX_OPEN_FILES,
+                    new ConcurrentWordCounter());
+            this.write(this.foldIfIgnoringCase(counts), input, output, words);
+        } else if (this.chunkPool != null) {
+            WordCounter counts = ParallelWordCount.countWords(input,
+                    this.profile.separators(), this.chunkPool);
+            this.write(this.foldIfIgnoringCase(counts), input, output, words);
+        } else {
+            WordCounter counts;
+            if (this.ignoreCase) {
+                counts = new FoldingWordCounter();
+            } else {
+                counts = new Utf8WordCounter();
+            }
+            this.write(MappedWordCount.countWords(input,
+                    this.profile.separators(),
+                    MappedWordCount.DEFAULT_WINDOW_BYTES, counts), input,
+                    output, words);
+        }
+    }
+
+    /**
+     * Writes the page of one tag cloud.
+     *
+     * @param counts
+     *            the word counts
+     * @param input
+     *            the input, named in the page
+     * @param output
+     *            the output file
+     * @param words
+     *            the number of words in the cloud
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    private void write(WordCounter counts, Path input, Path output,
+            int words) throws IOException {
+        TagCloudRenderer format = this.renderer;
+        if (format == null) {
+            format = TagCloudRenderer.forFileName(output.toString());
+        }
+        try (FileChannel page = FileChannel.open(output,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            TagCloudGeneratorJC.generatePage(counts, words, input.toString(),
+                    page, this.scale, format);
+        }
+    }
+
+    /**
+     * Runs a job on {@code pool}, reporting a failure on the error stream.
+     *
+     * @param pool
+     *            the worker pool
+     * @param input
+     *            the input file
+     * @param output
+     *            the output file
+     * @param words
+     *            the number of words in the cloud
+     * @param failures
+     *            incremented if the job fails
+     */
+    private void submit(ThreadPoolExecutor pool, Path input, Path output,
+            int words, AtomicInteger failures) {
+        pool.execute(() -> {
+            try {
+                this.generate(input, output, words);
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                System.err.println(input + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Submits the jobs of a manifest.
+     *
+     * @param manifest
+     *            the manifest file
+     * @param pool
+     *            the worker pool
+     * @param failures
+     *            incremented for each job that fails
+     * @return the number of jobs submitted
+     * @throws IOException
+     *             if the manifest cannot be read or is malformed
+     */
+    private int submitManifest(Path manifest, ThreadPoolExecutor pool,
+            AtomicInteger failures) throws IOException {
+        int jobs = 0;
+        int lineNumber = 0;
+        try (BufferedReader in = Files.newBufferedReader(manifest,
+                StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            while (line != null) {
+                lineNumber++;
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    String[] fields = line.split("\t");
+                    if (fields.length < 2 || fields.length > 3) {
+                        throw new IOException(manifest + ":" + lineNumber
+                                + ": expected input<TAB>output[<TAB>words]");
+                    }
+                    int words = this.numOfWords;
+                    if (fields.length == 3) {
+                        try {
+                            words = Integer.parseInt(fields[2].trim());
+                        } catch (NumberFormatException e) {
+                            throw new IOException(manifest + ":" + lineNumber
+                                    + ": bad number of words", e);
+                        }
+                        if (words < 0) {
+                            throw new IOException(manifest + ":" + lineNumber
+                                    + ": number of words must be >= 0");
+                        }
+                    }
+                    this.submit(pool, Paths.get(fields[0]),
+                            Paths.get(fields[1]), words, failures);
+                    jobs++;
+                }
+                line = in.readLine();
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Prints the usage message.
+     */
+    private static void usage() {
+        System.err.println("Usage: TagCloudBatch [--words N] "
+                + "[--scale linear|sqrt|log] [--format html|json|csv|svg] "
+                + "[--workers N] [--memory-mb N] [--profiles FILE] "
+                + "[--profile NAME] [--case sensitive|insensitive] "
+                + "[--parallel N] [--approximate CAPACITY] "
+                + "[--manifest FILE] [<input> <output>]...");
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            options followed by input and output file pairs; see
+     *            {@link #usage()}
+     */
+    public static void main(String[] args) {
+        int numOfWords = DEFAULT_WORDS;
+        FontScale scale = FontScale.LINEAR;
+        TagCloudRenderer renderer = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        Path manifest = null;
+        long memoryBudget = 0;
+        String profileName = TokenizerProfile.PROSE.name();
+        TokenizerProfile profile;
+        boolean ignoreCase = false;
+        int parallelism = 0;
+        int approximateCapacity = 0;
+
+        int i = 0;
+        try {
+            while (i < args.length && args[i].startsWith("--")) {
+                if (i + 1 == args.length) {
+                    usage();
+                    System.exit(USAGE_ERROR);
+                    return;
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--words":
+                        numOfWords = Integer.parseInt(value);
+                        break;
+                    case "--scale":
+                        scale = FontScale
+                                .valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--format":
+                        renderer = TagCloudRenderer.forName(value);
+                        break;
+                    case "--workers":
+                        workers = Integer.parseInt(value);
+                        break;
+                    case "--memory-mb":
+                        memoryBudget = Math.multiplyExact(
+                                Long.parseLong(value), 1L << 20);
+                        break;
+                    case "--manifest":
+                        manifest = Paths.get(value);
+                        break;
+                    case "--profiles":
+                        TokenizerProfile.load(Paths.get(value));
+                        break;
+                    case "--profile":
+                        profileName = value;
+                        break;
+                    case "--approximate":
+                        approximateCapacity = Integer.parseInt(value);
+                        break;
+                    case "--parallel":
+                        parallelism = Integer.parseInt(value);
+                        break;
+                    case "--case":
+                        ignoreCase = FoldingWordCounter.ignoresCase(value);
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i]);
+                        usage();
+                        System.exit(USAGE_ERROR);
+                        return;
+                }
+                i += 2;
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // Also covers NumberFormatException, and a --memory-mb too
+            // large to count in bytes
+            System.err.println("Bad value for " + args[i] + ": " + args[i + 1]);
+            System.exit(USAGE_ERROR);
+            return;
+        } catch (IOException e) {
+            System.err.println("Error reading profiles: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        try {
+            profile = TokenizerProfile.forName(profileName);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if ((args.length - i) % 2 != 0 || numOfWords < 0 || workers < 1
+                || memoryBudget < 0 || (manifest == null && i == args.length)) {
+            usage();
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if (ignoreCase && memoryBudget > 0) {
+            System.err.println(
+                    "--case insensitive cannot be used with --memory-mb");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if (parallelism < 0 || approximateCapacity < 0) {
+            usage();
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if (parallelism > 0 && memoryBudget > 0) {
+            System.err.println("--parallel cannot be used with --memory-mb");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if (approximateCapacity > 0
+                && (ignoreCase || memoryBudget > 0 || parallelism > 0)) {
+            System.err.println("--approximate cannot be used with --case "
+                    + "insensitive, --memory-mb or --parallel");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+
+        ForkJoinPool chunkPool = null;
+        if (parallelism > 0) {
+            chunkPool = new ForkJoinPool(parallelism);
+        }
+        TagCloudBatch batch = new Builder().words(numOfWords).scale(scale)
+                .renderer(renderer).memoryBudget(memoryBudget)
+                .profile(profile).ignoreCase(ignoreCase).chunkPool(chunkPool)
+                .approximateCapacity(approximateCapacity).build();
+        AtomicInteger failures = new AtomicInteger();
+        // A short queue keeps a huge manifest from being read ahead of the
+        // workers; when it is full the reading thread runs the job itself
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUED_PER_WORKER * workers),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.nanoTime();
+        int jobs = 0;
+        try {
+            for (; i < args.length; i += 2) {
+                batch.submit(pool, Paths.get(args[i]), Paths.get(args[i + 1]),
+                        numOfWords, failures);
+                jobs++;
+            }
+            if (manifest != null) {
+                jobs += batch.submitManifest(manifest, pool, failures);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading manifest: " + e.getMessage());
+            failures.incrementAndGet();
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+        if (chunkPool != null) {
+            chunkPool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d of %d tag clouds in %.2f s%n",
+                jobs - Math.min(jobs, failures.get()), jobs, seconds);
+        if (failures.get() > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Keeps a tag cloud up to date while its UTF-8 input file grows. Each poll
+ * reads only the bytes appended since the last poll and adds their words to
+ * the running counts. A word at the very end of the file may still be
+ * growing, so it is held back until a separator follows it. The page is
+ * rewritten only when the set of top words or one of their font sizes
+ * changes.
+ *
+ * @author Victor Ruan
+ */
+public final class TagCloudFollower {
+
+    /**
+     * Default time between polls, in milliseconds.
+     */
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Initial size of the buffer appended bytes are read into.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Exit status for a usage or option error.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * The followed input file.
+     */
+    private final Path input;
+
+    /**
+     * The generated page, in the format its extension names.
+     */
+    private final Path output;
+
+    /**
+     * Number of words in the tag cloud.
+     */
+    private final int numOfWords;
+
+    /**
+     * Finds the words in the appended bytes.
+     */
+    private final Utf8WordScanner scanner;
+
+    /**
+     * Running word counts.
+     */
+    private WordCounter counter;
+
+    /**
+     * Number of input bytes whose words have been counted.
+     */
+    private long offset;
+
+    /**
+     * Buffer appended bytes are read into.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Font size class of each word on the last page written, or {@code null}
+     * before the first page.
+     */
+    private Map<String, String> rendered;
+
+    /**
+     * Constructor.
+     *
+     * @param input
+     *            the input file to follow
+     * @param output
+     *            the page to keep up to date, in the format its extension
+     *            names (HTML by default)
+     * @param numOfWords
+     *            number of words in the tag cloud
+     * @requires numOfWords >= 0
+     */
+    public TagCloudFollower(Path input, Path output, int numOfWords) {
+        assert input != null : "Violation of: input is not null";
+        assert output != null : "Violation of: output is not null";
+        assert numOfWords >= 0 : "Violation of: numOfWords >= 0";
+
+        this.input = input;
+        this.output = output;
+        this.numOfWords = numOfWords;
+        this.scanner = new Utf8WordScanner(
+                TokenizerProfile.PROSE.separators());
+        this.counter = new Utf8WordCounter();
+        this.offset = 0;
+        this.buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.rendered = null;
+    }
+
+    /**
+     * Returns the number of input bytes whose words have been counted.
+     *
+     * @return the processed byte offset
+     */
+    public long offset() {
+        return this.offset;
+    }
+
+    /**
+     * Counts the words appended to the input since the last poll and rewrites
+     * the page if the top words or their font sizes changed. A poll that
+     * finds no new complete words returns at once. If the input shrank, it
+     * is assumed to have been truncated or replaced and is counted again
+     * from the start.
+     *
+     * @return true iff the page was rewritten
+     * @throws IOException
+     *             if the input cannot be read or the page cannot be written
+     */
+    public boolean poll() throws IOException {
+        boolean counted;
+        try (FileChannel channel = FileChannel.open(this.input,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < this.offset) {
+                this.counter = new Utf8WordCounter();
+                this.offset = 0;
+                this.rendered = null;
+            }
+            long before = this.offset;
+            this.readAppended(channel, size);
+            counted = this.offset != before;
+        }
+        // With no new words the top words cannot have changed
+        if (!counted && this.rendered != null) {
+            return false;
+        }
+
+        List<Entry<String, Integer>> ranked = TopKSelector
+                .select(this.counter, this.numOfWords);
+        Map<String, String> sizes = fontSizes(ranked);
+        if (sizes.equals(this.rendered)) {
+            return false;
+        }
+        this.writePage(ranked);
+        this.rendered = sizes;
+        return true;
+    }
+
+    /**
+     * Counts the complete words in bytes {@code [offset, size)} of the input
+     * and advances {@code offset} past them.
+     *
+     * @param channel
+     *            the open input
+     * @param size
+     *            the current input size
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    private void readAppended(FileChannel channel, long size)
+            throws IOException {
+        while (this.offset < size) {
+            this.buffer.clear();
+            int n = channel.read(this.buffer, this.offset);
+            if (n <= 0) {
+                return;
+            }
+            int consumed = this.scanner.scan(this.buffer, 0, n, false,
+                    this.counter);
+            this.offset += consumed;
+            if (consumed == 0) {
+                if (n < this.buffer.capacity()) {
+                    // Only a word that may still grow is left
+                    return;
+                }
+                // A single word fills the buffer: read it again with room
+                this.buffer = ByteBuffer.allocate(2 * this.buffer.capacity());
+            }
+        }
+    }
+
+    /**
+     * Returns the font size class of each of the given words, as written on
+     * the page.
+     *
+     * @param ranked
+     *            the top (word, count) pairs in decreasing count order
+     * @return a map from each word to its font size class
+     */
+    private static Map<String, String> fontSizes(
+            List<Entry<String, Integer>> ranked) {
+        Map<String, String> sizes = new HashMap<>();
+        if (ranked.size() > 0) {
+            int largestCount = ranked.get(0).getValue();
+            for (Entry<String, Integer> entry : ranked) {
+                sizes.put(entry.getKey(), TagCloudGeneratorJC
+                        .getFontSize(entry.getValue(), largestCount));
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Writes the page to a temporary file and moves it over the output, so
+     * readers never see a partly written page.
+     *
+     * @param ranked
+     *            the top (word, count) pairs in decreasing count order
+     * @throws IOException
+     *             if the page cannot be written
+     */
+    private void writePage(List<Entry<String, Integer>> ranked)
+            throws IOException {
+        Path dir = this.output.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, ".tagcloud", ".tmp");
+        try {
+            TagCloud cloud = TagCloud.of(ranked, this.input.toString(),
+                    this.numOfWords, FontScale.LINEAR);
+            try (FileChannel mainPage = FileChannel.open(temp,
+                    StandardOpenOption.WRITE)) {
+                TagCloudRenderer.forFileName(this.output.toString())
+                        .render(cloud, mainPage);
+            }
+            try {
+                Files.move(temp, this.output,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, this.output,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // Gone after a successful move; left behind only by a failure
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the input file, the output file, the number of words and
+     *            optionally the poll interval in milliseconds
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: TagCloudFollower <input file> "
+                    + "<output file> <number of words> [interval millis]");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+
+        int numOfWords;
+        long interval = DEFAULT_INTERVAL_MILLIS;
+        try {
+            numOfWords = Integer.parseInt(args[2]);
+            if (args.length > 3) {
+                interval = Long.parseLong(args[3]);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Number of words and interval must be integers");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+        if (numOfWords < 0 || interval < 1) {
+            System.err.println("Number of words must be >= 0 and interval "
+                    + "must be > 0");
+            System.exit(USAGE_ERROR);
+            return;
+        }
+
+        TagCloudFollower follower = new TagCloudFollower(Paths.get(args[0]),
+                Paths.get(args[1]), numOfWords);
+        try {
+            while (true) {
+                if (follower.poll()) {
+                    System.out.println("Updated " + args[1] + " at byte "
+                            + follower.offset());
+                }
+                Thread.sleep(interval);
+            }
+        } catch (IOException e) {
+            System.err.println("Error following input file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,19 +1,23 @@
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.ToIntFunction;
 
 /**
  * Generates a tag cloud from a given input text.
@@ -23,24 +27,21 @@ import java.util.Set;
 public final class TagCloudGeneratorJC {
 
     /**
-     * Private constructor so this utility class cannot be instantiated.
+     * Characters that separate words in the input text.
      */
-    private TagCloudGeneratorJC() {
+    public static final String DEFAULT_SEPARATORS = " \t\n\r,-.!?[]';:/()\"*`";
 
-    }
+    /**
+     * Number of chars read from the input at a time; at least the default
+     * {@code BufferedReader} size, so reads bypass its buffer.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 14;
 
     /**
-     * Compare {Map.Pair<String, Integer>}'s count values in decreasing order.
+     * Private constructor so this utility class cannot be instantiated.
      */
-    private static class CompareWordCounts
-            implements Comparator<Map.Entry<String, Integer>> {
-        @Override
-        public int compare(Map.Entry<String, Integer> o1,
-                Map.Entry<String, Integer> o2) {
-            Integer a = o1.getValue();
-            Integer b = o2.getValue();
-            return b.compareTo(a);
-        }
+    private TagCloudGeneratorJC() {
+
     }
 
     /**
@@ -136,6 +137,107 @@ public final class TagCloudGeneratorJC {
         return text.substring(position, pos);
     }
 
+    /**
+     * Returns the first "word" or "separator string" in the given {@code text}
+     * starting at the given {@code position}, classifying code points with
+     * the given compiled {@code CharClass}, so a surrogate pair is never
+     * split.
+     *
+     * @param text
+     *            the {@code String} from which to get the word or separator
+     *            string
+     * @param position
+     *            the starting index
+     * @param separators
+     *            the compiled separator characters
+     * @return the first word or separator string found in {@code text} starting
+     *         at index {@code position}
+     * @requires 0 <= position < |text|
+     * @ensures same as {@link #nextWordOrSeparator(String, int, Set)}
+     */
+    public static String nextWordOrSeparator(String text, int position,
+            CharClass separators) {
+        assert text != null : "Violation of: text is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < text.length() : "Violation of: position < |text|";
+
+        int first = text.codePointAt(position);
+        int pos = position + Character.charCount(first);
+        if (!separators.contains(first)) {
+            while (pos < text.length()
+                    && !separators.contains(text.codePointAt(pos))) {
+                pos += Character.charCount(text.codePointAt(pos));
+            }
+        }
+        return text.substring(position, pos);
+    }
+
+    /**
+     * Counts the words in an input file, counting words with different
+     * capitalization as different words.
+     *
+     * @param in
+     *            the input stream
+     * @return a {@code WordCounter} holding all words from the input file and
+     *         their counts
+     * @throws IOException
+     * @ensures countWords = the word counts of the given input file
+     */
+    public static WordCounter countWords(BufferedReader in)
+            throws IOException {
+        return countWords(in, new HashWordCounter());
+    }
+
+    /**
+     * Adds the words in an input stream to the given {@code WordCounter},
+     * counting words with different capitalization as different words unless
+     * {@code counter} is a {@code FoldingWordCounter}. The input is read in
+     * fixed-size blocks of chars rather than by line, so memory use does not
+     * depend on line length; only a single word longer than a block makes the
+     * buffer grow.
+     *
+     * @param in
+     *            the input stream
+     * @param counter
+     *            the table the words are counted into
+     * @return {@code counter}
+     * @throws IOException
+     * @updates counter
+     * @ensures counter = #counter plus the word counts of the given input
+     */
+    public static WordCounter countWords(BufferedReader in,
+            WordCounter counter) throws IOException {
+
+        // The separators are compiled once and shared by every call
+        CharClass separatorSet = TokenizerProfile.PROSE.separators();
+
+        // Read blocks into a reusable buffer and count each word span in
+        // place; a String is only created the first time a word is seen. Line
+        // breaks are separators, so lines need not be found at all
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int carried = 0;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int n = in.read(buffer, carried, buffer.length - carried);
+            endOfInput = n < 0;
+            int end = carried + Math.max(n, 0);
+
+            // Count complete words and carry the trailing partial word over
+            int carry = WordSpanTokenizer.tokenize(buffer, 0, end,
+                    separatorSet, endOfInput, counter);
+            carried = end - carry;
+            System.arraycopy(buffer, carry, buffer, 0, carried);
+            if (carried == buffer.length) {
+                // A single word fills the buffer: make room for the rest
+                char[] larger = new char[2 * buffer.length];
+                System.arraycopy(buffer, 0, larger, 0, carried);
+                buffer = larger;
+            }
+        }
+        return counter;
+    }
+
     /**
      * Adds words from an input file and their counts into a map counting words
      * with different capitalization as a different word.
@@ -150,37 +252,7 @@ public final class TagCloudGeneratorJC {
      */
     public static Map<String, Integer> mapWithWordCount(BufferedReader in)
             throws IOException {
-
-        // Create a set with separator characters
-        String separator = " \t\n\r,-.!?[]';:/()\"*`";
-        Set<Character> separatorSet = new HashSet<>();
-        generateElements(separator, separatorSet);
-
-        Map<String, Integer> wordCountMap = new HashMap<String, Integer>();
-        String nextLine = in.readLine();
-        while (nextLine != null) {
-
-            // Iterate through the line of text and add each word to the map or
-            // increment the count if the word key already exists in the map
-            int startPos = 0;
-            while (startPos < nextLine.length()) {
-                String wordOrSep = nextWordOrSeparator(nextLine, startPos,
-                        separatorSet);
-
-                if (!separatorSet.contains(wordOrSep.charAt(0))) {
-                    if (wordCountMap.containsKey(wordOrSep)) {
-                        wordCountMap.replace(wordOrSep,
-                                wordCountMap.get(wordOrSep) + 1);
-                    } else {
-                        // Add word into map with count of 1
-                        wordCountMap.put(wordOrSep, 1);
-                    }
-                }
-                startPos += wordOrSep.length();
-            }
-            nextLine = in.readLine();
-        }
-        return wordCountMap;
+        return countWords(in).toMap();
     }
 
     /**
@@ -193,26 +265,13 @@ public final class TagCloudGeneratorJC {
      *            determined
      * @param largestCount
      *            number of occurrences of the most common word in the file
-     * @return the font size
+     * @return the font size class name, from the precomputed
+     *         {@link FontScale#LINEAR} table
      *
      * @ensures <pre> getFontSize = the appropriate font size of a given word </pre>
      */
-    private static String getFontSize(Integer wordCount, int largestCount) {
-
-        // Guaranteed to increment at least once so start at 10
-        final int minFontSize = 10;
-        // 48-11=37. This incrementer allows for font sizes from 11-48
-        final float incrementer = 1.0f / 37;
-
-        int fontSizeNum = minFontSize;
-        float ratio = (float) wordCount / largestCount;
-
-        // Increase font size until ratio is reached
-        for (float i = 0; i <= ratio; i += incrementer) {
-            fontSizeNum++;
-        }
-
-        return "f" + Integer.toString(fontSizeNum);
+    static String getFontSize(Integer wordCount, int largestCount) {
+        return FontScale.LINEAR.className(wordCount, largestCount);
     }
 
     /**
@@ -236,7 +295,7 @@ public final class TagCloudGeneratorJC {
         mainPage.println("<html>");
         mainPage.println("<head>");
         mainPage.println("<title>" + "Top" + numOfWords + " words in "
-                + fileInName + "</title>");
+                + escapeHtml(fileInName) + "</title>");
         mainPage.println(
                 "<link href=\"http://www.cse.ohio-state.edu/software/2231"
                         + "/web-sw2/assignments/projects/tag-cloud-generator/data/"
@@ -247,7 +306,8 @@ public final class TagCloudGeneratorJC {
 
         mainPage.println("<body>");
         mainPage.println(
-                "<h2>Top " + numOfWords + " words in " + fileInName + "</h2>");
+                "<h2>Top " + numOfWords + " words in " + escapeHtml(fileInName)
+                        + "</h2>");
         mainPage.println("<hr>");
 
         mainPage.println("<div class=\"cdiv\">");
@@ -276,43 +336,196 @@ public final class TagCloudGeneratorJC {
             int numOfWords, String fileInName, BufferedReader inFile,
             PrintWriter mainPage) {
 
-        outputHeader(mainPage, fileInName, numOfWords);
+        // Select the {@code numOfWords} most common words, in decreasing
+        // count order, without sorting the whole map
+        outputCloud(TopKSelector.select(wordCountMap, numOfWords), numOfWords,
+                fileInName, mainPage, FontScale.LINEAR);
+    }
 
-        // Add map entries to a {@code List} that will sort counts in
-        // decreasing order
-        List<Entry<String, Integer>> sortCounts = new ArrayList<>();
+    /**
+     * Generates the content of the HTML output file styled using css, reading
+     * the counts directly from a {@code WordCounter}.
+     *
+     * @param counter
+     *            the word counts
+     * @param numOfWords
+     *            number of words user chose to display in the tag cloud
+     * @param fileInName
+     *            the name of the file the user enters
+     * @param inFile
+     *            reads the input file
+     * @param mainPage
+     *            file where output will be generated
+     * @ensures generatePage includes title and table of words with their own
+     *          counts.
+     */
+    public static void generatePage(WordCounter counter, int numOfWords,
+            String fileInName, BufferedReader inFile, PrintWriter mainPage) {
+
+        generatePage(counter, numOfWords, fileInName, inFile, mainPage,
+                FontScale.LINEAR);
+    }
+
+    /**
+     * Generates the content of the HTML output file styled using css, reading
+     * the counts directly from a {@code WordCounter} and sizing the words
+     * with the given {@code FontScale}.
+     *
+     * @param counter
+     *            the word counts
+     * @param numOfWords
+     *            number of words user chose to display in the tag cloud
+     * @param fileInName
+     *            the name of the file the user enters
+     * @param inFile
+     *            reads the input file
+     * @param mainPage
+     *            file where output will be generated
+     * @param scale
+     *            maps counts to font sizes
+     * @ensures generatePage includes title and table of words with their own
+     *          counts.
+     */
+    public static void generatePage(WordCounter counter, int numOfWords,
+            String fileInName, BufferedReader inFile, PrintWriter mainPage,
+            FontScale scale) {
+
+        outputCloud(TopKSelector.select(counter, numOfWords), numOfWords,
+                fileInName, mainPage, scale);
+    }
+
+    /**
+     * Generates the HTML output file as UTF-8 with an {@code HtmlRenderer},
+     * reading the counts directly from a {@code WordCounter}.
+     *
+     * @param counter
+     *            the word counts
+     * @param numOfWords
+     *            number of words user chose to display in the tag cloud
+     * @param fileInName
+     *            the name of the file the user enters
+     * @param mainPage
+     *            channel the page is written to; it is not closed
+     * @param scale
+     *            maps counts to font sizes
+     * @throws IOException
+     *             if the page cannot be written
+     * @ensures generatePage includes title and table of words with their own
+     *          counts.
+     */
+    public static void generatePage(WordCounter counter, int numOfWords,
+            String fileInName, WritableByteChannel mainPage, FontScale scale)
+            throws IOException {
+
+        generatePage(counter, numOfWords, fileInName, mainPage, scale,
+                new HtmlRenderer());
+    }
 
-        for (Entry<String, Integer> entry : wordCountMap.entrySet()) {
-            sortCounts.add(entry);
+    /**
+     * Generates the tag cloud in the given {@code renderer}'s format,
+     * reading the counts directly from a {@code WordCounter}.
+     *
+     * @param counter
+     *            the word counts
+     * @param numOfWords
+     *            number of words user chose to display in the tag cloud
+     * @param fileInName
+     *            the name of the file the user enters
+     * @param out
+     *            channel the document is written to; it is not closed
+     * @param scale
+     *            maps counts to font sizes
+     * @param renderer
+     *            writes the document
+     * @throws IOException
+     *             if the document cannot be written
+     */
+    public static void generatePage(WordCounter counter, int numOfWords,
+            String fileInName, WritableByteChannel out, FontScale scale,
+            TagCloudRenderer renderer) throws IOException {
+
+        // Approximate counts carry error bounds for the renderer to show
+        ToIntFunction<String> errorBound = null;
+        if (counter instanceof SpaceSavingCounter) {
+            errorBound = ((SpaceSavingCounter) counter)::error;
         }
-        sortCounts.sort(new CompareWordCounts());
+        renderer.render(TagCloud.of(TopKSelector.select(counter, numOfWords),
+                fileInName, numOfWords, scale, errorBound), out);
+    }
 
-        // Create {@code List} that will sort words in alphabetical order
-        List<Entry<String, Integer>> sortAlphabetical = new ArrayList<>();
+    /**
+     * Outputs the whole HTML page for the given most common words.
+     *
+     * @param ranked
+     *            the most common (word, count) pairs in decreasing count order
+     * @param numOfWords
+     *            number of words user chose to display in the tag cloud
+     * @param fileInName
+     *            the name of the file the user enters
+     * @param mainPage
+     *            file where output will be generated
+     * @param scale
+     *            maps counts to font sizes
+     * @updates ranked
+     */
+    static void outputCloud(List<Entry<String, Integer>> ranked,
+            int numOfWords, String fileInName, PrintWriter mainPage,
+            FontScale scale) {
 
-        // Remove first pair before loop to obtain the count of the most common word
-        Entry<String, Integer> largestCountPair = sortCounts.remove(0);
-        int largestCount = largestCountPair.getValue();
-        sortAlphabetical.add(largestCountPair);
+        outputHeader(mainPage, fileInName, numOfWords);
 
-        // Add the first {@code numOfWords} to the alphabetical List
-        for (int i = 1; i < numOfWords; i++) {
-            sortAlphabetical.add(sortCounts.remove(0));
+        // The first pair holds the count of the most common word
+        int largestCount = 0;
+        if (ranked.size() > 0) {
+            largestCount = ranked.get(0).getValue();
         }
-        sortAlphabetical.sort(new SortAlphabetical());
+        ranked.sort(new SortAlphabetical());
 
         // Print each tag cloud word in alphabetical order with a specific font
-        while (sortAlphabetical.size() > 0) {
-            Entry<String, Integer> removed = sortAlphabetical.remove(0);
-            String fontSize = getFontSize(removed.getValue(), largestCount);
+        for (Entry<String, Integer> removed : ranked) {
+            String fontSize = scale.className(removed.getValue(),
+                    largestCount);
             mainPage.println("<span style=\"cursor:default\" class=\""
                     + fontSize + "\" title=\"count: " + removed.getValue()
-                    + "\">" + removed.getKey() + "</span>");
+                    + "\">" + escapeHtml(removed.getKey()) + "</span>");
         }
 
         outputFooter(mainPage);
     }
 
+    /**
+     * Returns {@code text} with the HTML markup characters escaped, as
+     * {@code HtmlRenderer} writes them.
+     *
+     * @param text
+     *            the text
+     * @return the escaped text
+     */
+    private static String escapeHtml(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+
     /**
      * Outputs the "closing" tags in the generated HTML file.
      *
@@ -333,9 +546,15 @@ public final class TagCloudGeneratorJC {
      * Main method.
      *
      * @param args
-     *            the command line arguments; unused here
+     *            the command line arguments; if there are any, they are
+     *            handed to {@link TagCloudBatch#main(String[])} instead of
+     *            prompting for a single job
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            TagCloudBatch.main(args);
+            return;
+        }
 
         BufferedReader in = new BufferedReader(
                 new InputStreamReader(System.in));
@@ -348,13 +567,17 @@ public final class TagCloudGeneratorJC {
             return;
         }
 
+        // A directory is a corpus: all of its files make one cloud
+        boolean corpus = Files.isDirectory(Paths.get(fileInName));
         BufferedReader inFile = null;
-        try {
-            inFile = new BufferedReader(new FileReader(fileInName));
-        } catch (FileNotFoundException e) {
-            System.err.println(
-                    "Error producing reader of input file (file not found)");
-            return;
+        if (!corpus) {
+            try {
+                inFile = new BufferedReader(new FileReader(fileInName));
+            } catch (FileNotFoundException e) {
+                System.err.println("Error producing reader of input file "
+                        + "(file not found)");
+                return;
+            }
         }
 
         System.out.print("Enter the name of an output file: ");
@@ -372,23 +595,44 @@ public final class TagCloudGeneratorJC {
         } catch (IOException e1) {
             System.err.println("Error reading from keyboard");
         }
+        if (numOfWords < 0) {
+            System.err.println("Number of words must be >= 0");
+            return;
+        }
 
-        // Get {@code Map} with words from input file and their counts
-        Map<String, Integer> wordCountMap = new HashMap<>();
+        // Get {@code WordCounter} with words from input file and their counts;
+        // UTF-8 input is memory-mapped and tokenized in place, or loaded from
+        // a snapshot if -Dtagcloud.snapshots names a directory and the input
+        // was counted before
+        WordCounter wordCounts = new HashWordCounter();
+        Path snapshots = CountSnapshot.configuredDirectory();
         try {
-            wordCountMap = mapWithWordCount(inFile);
+            if (corpus) {
+                wordCounts = CorpusWordCount.countWords(Paths.get(fileInName));
+            } else if (!StandardCharsets.UTF_8
+                    .equals(Charset.defaultCharset())) {
+                wordCounts = countWords(inFile);
+            } else if (snapshots != null) {
+                wordCounts = CountSnapshot.countWords(Paths.get(fileInName),
+                        snapshots);
+            } else {
+                wordCounts = MappedWordCount.countWords(Paths.get(fileInName));
+            }
         } catch (IOException e) {
             System.err.println("Error passing file reader as method paramter");
         }
 
-        // Open output file and generate page
-        try {
-            PrintWriter mainPage = new PrintWriter(
-                    new BufferedWriter(new FileWriter(outputFile)));
-            generatePage(wordCountMap, numOfWords, fileInName, inFile,
-                    mainPage);
-            mainPage.close();
-            inFile.close();
+        // Open output file and generate page in the format its extension
+        // names (.json, .csv, .svg), or else HTML
+        try (FileChannel mainPage = FileChannel.open(Paths.get(outputFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            generatePage(wordCounts, numOfWords, fileInName, mainPage,
+                    FontScale.LINEAR,
+                    TagCloudRenderer.forFileName(outputFile));
+            if (inFile != null) {
+                inFile.close();
+            }
         } catch (IOException e) {
             System.err.println("Error creating or closing output file.");
         }
@@ -0,0 +1,130 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.ServiceLoader;
+
+/**
+ * Writes a {@code TagCloud} in one output format. Renderers stream the
+ * document through a {@code Utf8Sink} as they go and never hold the whole
+ * document in memory.
+ *
+ * <p>
+ * The built-in formats are {@code html}, {@code json}, {@code csv} and
+ * {@code svg}. Further formats can be added as {@link ServiceLoader}
+ * providers of this interface.
+ *
+ * @author Victor Ruan
+ */
+public interface TagCloudRenderer {
+
+    /**
+     * Returns the name of the format, which is also its file extension.
+     *
+     * @return the format name, such as {@code "json"}
+     */
+    String name();
+
+    /**
+     * Returns the media type of the format.
+     *
+     * @return the media type, such as {@code "application/json"}
+     */
+    String contentType();
+
+    /**
+     * Writes {@code cloud} to {@code out}. The sink is not flushed.
+     *
+     * @param cloud
+     *            the tag cloud
+     * @param out
+     *            receives the document
+     * @throws IOException
+     *             if the document cannot be written
+     */
+    void render(TagCloud cloud, Utf8Sink out) throws IOException;
+
+    /**
+     * Writes {@code cloud} to {@code out} and flushes it. The stream is not
+     * closed.
+     *
+     * @param cloud
+     *            the tag cloud
+     * @param out
+     *            receives the document
+     * @throws IOException
+     *             if the document cannot be written
+     */
+    default void render(TagCloud cloud, OutputStream out) throws IOException {
+        Utf8Sink sink = new Utf8Sink(out);
+        this.render(cloud, sink);
+        sink.flush();
+    }
+
+    /**
+     * Writes {@code cloud} to {@code out}. The channel is not closed.
+     *
+     * @param cloud
+     *            the tag cloud
+     * @param out
+     *            receives the document
+     * @throws IOException
+     *             if the document cannot be written
+     */
+    default void render(TagCloud cloud, WritableByteChannel out)
+            throws IOException {
+        Utf8Sink sink = new Utf8Sink(out);
+        this.render(cloud, sink);
+        sink.flush();
+    }
+
+    /**
+     * Returns the renderer of the named format.
+     *
+     * @param name
+     *            the format name, in any case
+     * @return the renderer
+     * @throws IllegalArgumentException
+     *             if there is no such format
+     */
+    static TagCloudRenderer forName(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        TagCloudRenderer[] builtIn = {new HtmlRenderer(), new JsonRenderer(),
+            new CsvRenderer(), new SvgRenderer()};
+        for (TagCloudRenderer renderer : builtIn) {
+            if (renderer.name().equalsIgnoreCase(name)) {
+                return renderer;
+            }
+        }
+        for (TagCloudRenderer renderer : ServiceLoader
+                .load(TagCloudRenderer.class)) {
+            if (renderer.name().equalsIgnoreCase(name)) {
+                return renderer;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+
+    /**
+     * Returns the renderer for a file name's extension, or the HTML renderer
+     * if the extension names no format.
+     *
+     * @param fileName
+     *            the output file name
+     * @return the renderer
+     */
+    static TagCloudRenderer forFileName(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        int dot = fileName.lastIndexOf('.');
+        if (dot > fileName.lastIndexOf(File.separatorChar)) {
+            try {
+                return forName(fileName.substring(dot + 1));
+            } catch (IllegalArgumentException e) {
+                // Not a format name, such as "page.htm"
+            }
+        }
+        return new HtmlRenderer();
+    }
+}
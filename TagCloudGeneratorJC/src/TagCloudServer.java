@@ -0,0 +1,844 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running HTTP server that generates tag clouds on request, so a web
+ * front end does not start a JVM per page. Each request runs on its own
+ * thread: a virtual thread on JDK 21 and later, a pooled platform thread
+ * before that.
+ *
+ * <p>
+ * {@code POST /cloud} counts the UTF-8 request body; {@code GET /cloud?file=}
+ * counts a file under the server's root directory, and is refused if the
+ * server has none. Both take the optional parameters {@code words},
+ * {@code scale} ({@code linear}, {@code sqrt} or {@code log}), {@code format}
+ * ({@code html}, {@code json}, {@code csv}, {@code svg} or an installed
+ * renderer), {@code profile}, the {@code TokenizerProfile} that splits the
+ * text into words, {@code case} ({@code sensitive} or {@code insensitive},
+ * which counts words differing only in case as one), {@code approximate},
+ * the number of words a {@code SpaceSavingCounter} monitors to count in
+ * fixed memory, with an error bound for each count, and {@code name}, the
+ * source named in the page.
+ *
+ * <p>
+ * Rendered pages are kept in an LRU cache keyed by the SHA-256 digest of
+ * the input together with the parameters, so a repeated request is answered
+ * without counting or rendering anything. A file is keyed by its real path,
+ * size and modification time rather than its content, so a repeated file
+ * request does not read the file at all. Concurrent requests for the same
+ * page wait for one of them to render it. The cache is bounded by the total
+ * size of the pages it holds.
+ *
+ * <p>
+ * Each request may buffer a body of up to 64 MB, so the number of requests
+ * in progress at once is bounded; a request past the bound is refused with
+ * status 503 at once, before its body is read.
+ *
+ * @author Victor Ruan
+ */
+public final class TagCloudServer {
+
+    /**
+     * Default port.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Default bound on the bytes of cached pages.
+     */
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    /**
+     * Default bound on the requests in progress at once.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 16;
+
+    /**
+     * Largest request body accepted.
+     */
+    private static final int MAX_BODY_BYTES = 64 << 20;
+
+    /**
+     * Initial size of the buffer a request body is read into.
+     */
+    private static final int BODY_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Pending connections the listening socket queues.
+     */
+    private static final int BACKLOG = 256;
+
+    /**
+     * Largest number of words a page may show.
+     */
+    private static final int MAX_WORDS = 1 << 16;
+
+    /**
+     * Largest number of words an approximate count may monitor.
+     */
+    private static final int MAX_APPROXIMATE_CAPACITY = 1 << 20;
+
+    /**
+     * Status codes used in responses.
+     */
+    private static final int OK = 200, BAD_REQUEST = 400, FORBIDDEN = 403,
+            NOT_FOUND = 404, METHOD_NOT_ALLOWED = 405, TOO_LARGE = 413,
+            SERVER_ERROR = 500, UNAVAILABLE = 503;
+
+    /**
+     * Source name of a request body without a {@code name} parameter.
+     */
+    private static final String DEFAULT_BODY_NAME = "request";
+
+    /**
+     * Exit status for a usage or option error.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * Rendered pages, least recently used first.
+     */
+    private static final class PageCache {
+
+        /**
+         * Bound on the total bytes of the cached pages.
+         */
+        private final long maxBytes;
+
+        /**
+         * Pages by key, in access order.
+         */
+        private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(
+                16, 0.75f, true);
+
+        /**
+         * Total bytes of the cached pages.
+         */
+        private long bytes;
+
+        /**
+         * Constructor.
+         *
+         * @param maxBytes
+         *            bound on the total bytes of the cached pages
+         */
+        PageCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Returns the page cached under {@code key}, or null.
+         *
+         * @param key
+         *            the key
+         * @return the page, or null
+         */
+        synchronized Page get(String key) {
+            return this.pages.get(key);
+        }
+
+        /**
+         * Caches a page, evicting the least recently used ones until the
+         * cache is within its bound. A page larger than the bound is not
+         * cached.
+         *
+         * @param key
+         *            the key
+         * @param page
+         *            the page
+         */
+        synchronized void put(String key, Page page) {
+            if (page.body.length > this.maxBytes) {
+                return;
+            }
+            Page old = this.pages.put(key, page);
+            if (old != null) {
+                this.bytes -= old.body.length;
+            }
+            this.bytes += page.body.length;
+            Iterator<Page> eldest = this.pages.values().iterator();
+            while (this.bytes > this.maxBytes) {
+                this.bytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * A rendered page.
+     */
+    private static final class Page {
+
+        /**
+         * Media type of the page.
+         */
+        private final String contentType;
+
+        /**
+         * The encoded page.
+         */
+        private final byte[] body;
+
+        /**
+         * Constructor.
+         *
+         * @param contentType
+         *            media type of the page
+         * @param body
+         *            the encoded page
+         */
+        Page(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A request that cannot be answered with a page.
+     */
+    private static final class RequestException extends Exception {
+
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Response status.
+         */
+        private final int status;
+
+        /**
+         * Constructor.
+         *
+         * @param status
+         *            response status
+         * @param message
+         *            message sent as the response body
+         */
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Directory files may be read from, or null if file requests are
+     * refused.
+     */
+    private final Path root;
+
+    /**
+     * Rendered pages.
+     */
+    private final PageCache cache;
+
+    /**
+     * Pages being rendered, by cache key; a request for one of them waits
+     * for it instead of rendering it again.
+     */
+    private final Map<String, CompletableFuture<Page>> rendering =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Permits for the requests in progress.
+     */
+    private final Semaphore requests;
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            directory files may be read from, or null to refuse file
+     *            requests
+     * @param cacheBytes
+     *            bound on the bytes of cached pages
+     * @throws IOException
+     *             if {@code root} does not exist
+     */
+    public TagCloudServer(Path root, long cacheBytes) throws IOException {
+        this(root, cacheBytes, DEFAULT_MAX_REQUESTS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            directory files may be read from, or null to refuse file
+     *            requests
+     * @param cacheBytes
+     *            bound on the bytes of cached pages
+     * @param maxRequests
+     *            bound on the requests in progress at once
+     * @throws IOException
+     *             if {@code root} does not exist
+     * @requires maxRequests > 0
+     */
+    public TagCloudServer(Path root, long cacheBytes, int maxRequests)
+            throws IOException {
+        assert maxRequests > 0 : "Violation of: maxRequests > 0";
+
+        this.root = root == null ? null : root.toRealPath();
+        this.cache = new PageCache(cacheBytes);
+        this.requests = new Semaphore(maxRequests);
+    }
+
+    /**
+     * Starts serving on {@code address}.
+     *
+     * @param address
+     *            the address to listen on
+     * @return the running server; stop it to shut it down
+     * @throws IOException
+     *             if the address cannot be bound
+     */
+    public HttpServer start(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, BACKLOG);
+        ExecutorService executor = VirtualThreads
+                .newThreadPerTaskExecutor("tagcloud-http");
+        server.setExecutor(executor);
+        server.createContext("/cloud", this::handle);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Returns the query parameters of a request.
+     *
+     * @param exchange
+     *            the request
+     * @return the decoded parameters; a repeated name keeps its last value
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (!pair.isEmpty()) {
+                    int eq = pair.indexOf('=');
+                    String name = eq < 0 ? pair : pair.substring(0, eq);
+                    String value = eq < 0 ? "" : pair.substring(eq + 1);
+                    parameters.put(
+                            URLDecoder.decode(name, StandardCharsets.UTF_8),
+                            URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads a request body.
+     *
+     * @param exchange
+     *            the request
+     * @return the body
+     * @throws IOException
+     *             if the body cannot be read
+     * @throws RequestException
+     *             if the body is too large
+     */
+    private static byte[] readBody(HttpExchange exchange)
+            throws IOException, RequestException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(
+                BODY_BUFFER_SIZE);
+        byte[] buffer = new byte[BODY_BUFFER_SIZE];
+        try (InputStream in = exchange.getRequestBody()) {
+            int n = in.read(buffer);
+            while (n >= 0) {
+                if (body.size() + n > MAX_BODY_BYTES) {
+                    throw new RequestException(TOO_LARGE,
+                            "Request body is larger than " + MAX_BODY_BYTES
+                                    + " bytes");
+                }
+                body.write(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Resolves the {@code file} parameter against the root directory.
+     *
+     * @param file
+     *            the requested file
+     * @return the real path of the file
+     * @throws IOException
+     *             if the file cannot be resolved
+     * @throws RequestException
+     *             if file requests are refused, or the file is not a valid
+     *             path, missing or outside the root directory
+     */
+    private Path resolve(String file) throws IOException, RequestException {
+        if (this.root == null) {
+            throw new RequestException(FORBIDDEN,
+                    "File requests are disabled; start the server with --root");
+        }
+        Path path;
+        try {
+            path = this.root.resolve(file).toRealPath();
+        } catch (NoSuchFileException e) {
+            throw new RequestException(NOT_FOUND, "No such file: " + file);
+        } catch (InvalidPathException e) {
+            throw new RequestException(BAD_REQUEST,
+                    "Not a valid path: " + e.getReason());
+        }
+        // Checked on the real path, so neither ".." nor a link escapes
+        if (!path.startsWith(this.root) || !Files.isRegularFile(path)) {
+            throw new RequestException(FORBIDDEN, "Not a file under the root: "
+                    + file);
+        }
+        return path;
+    }
+
+    /**
+     * Returns a digest that has been fed the kind of input and the
+     * tokenizer profile.
+     *
+     * @param kind
+     *            {@code 'B'} for a request body, {@code 'F'} for a file
+     * @param profile
+     *            splits the input into words
+     * @return the SHA-256 digest, ready for the input itself
+     */
+    private static MessageDigest digest(char kind, TokenizerProfile profile) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        // The kind keeps a body from ever matching a file's key
+        digest.update((byte) kind);
+        digest.update(profile.spec().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest;
+    }
+
+    /**
+     * Returns the digest of a request body.
+     *
+     * @param body
+     *            the body
+     * @param profile
+     *            splits the body into words
+     * @return the SHA-256 digest of the profile's {@code spec()} followed by
+     *         the body
+     */
+    private static byte[] key(byte[] body, TokenizerProfile profile) {
+        MessageDigest digest = digest('B', profile);
+        digest.update(body);
+        return digest.digest();
+    }
+
+    /**
+     * Returns the digest of a file, from its metadata alone.
+     *
+     * @param path
+     *            the real path of the file
+     * @param profile
+     *            splits the file into words
+     * @return the SHA-256 digest of the profile's {@code spec()} followed by
+     *         the file's path, size and modification time
+     * @throws IOException
+     *             if the file's metadata cannot be read
+     */
+    private static byte[] key(Path path, TokenizerProfile profile)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path,
+                BasicFileAttributes.class);
+        MessageDigest digest = digest('F', profile);
+        digest.update((path + "\0" + attributes.size() + "\0"
+                + attributes.lastModifiedTime().toInstant())
+                .getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    /**
+     * Returns the cache key of a page.
+     *
+     * @param digest
+     *            digest of the input
+     * @param name
+     *            source name in the page
+     * @param words
+     *            number of words
+     * @param scale
+     *            font scale
+     * @param renderer
+     *            output format
+     * @param ignoreCase
+     *            whether words differing only in case are counted as one
+     * @param approximateCapacity
+     *            words monitored by an approximate count, or 0 if exact
+     * @return the key
+     */
+    private static String cacheKey(byte[] digest, String name, int words,
+            FontScale scale, TagCloudRenderer renderer, boolean ignoreCase,
+            int approximateCapacity) {
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.append('/').append(words).append('/').append(scale)
+                .append('/').append(renderer.name()).append('/')
+                .append(ignoreCase ? "insensitive" : "sensitive").append('/')
+                .append(approximateCapacity).append('/').append(name)
+                .toString();
+    }
+
+    /**
+     * Returns the page a request asks for, from the cache if possible.
+     *
+     * @param exchange
+     *            the request
+     * @return the page
+     * @throws IOException
+     *             if the input cannot be read
+     * @throws RequestException
+     *             if the request is malformed
+     */
+    private Page page(HttpExchange exchange)
+            throws IOException, RequestException {
+        Map<String, String> parameters = parameters(exchange);
+        int words = TagCloudBatch.DEFAULT_WORDS;
+        FontScale scale = FontScale.LINEAR;
+        TagCloudRenderer renderer = new HtmlRenderer();
+        TokenizerProfile profile = TokenizerProfile.PROSE;
+        boolean ignoreCase = false;
+        int approximateCapacity = 0;
+        try {
+            if (parameters.containsKey("words")) {
+                words = Integer.parseInt(parameters.get("words"));
+            }
+            if (parameters.containsKey("scale")) {
+                scale = FontScale.valueOf(
+                        parameters.get("scale").toUpperCase(Locale.ROOT));
+            }
+            if (parameters.containsKey("format")) {
+                renderer = TagCloudRenderer.forName(parameters.get("format"));
+            }
+            if (parameters.containsKey("profile")) {
+                profile = TokenizerProfile
+                        .forName(parameters.get("profile"));
+            }
+            if (parameters.containsKey("case")) {
+                ignoreCase = FoldingWordCounter
+                        .ignoresCase(parameters.get("case"));
+            }
+            if (parameters.containsKey("approximate")) {
+                approximateCapacity = Integer
+                        .parseInt(parameters.get("approximate"));
+            }
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            throw new RequestException(BAD_REQUEST, e.getMessage());
+        }
+        if (words < 0 || words > MAX_WORDS) {
+            throw new RequestException(BAD_REQUEST,
+                    "words must be between 0 and " + MAX_WORDS);
+        }
+        if (approximateCapacity < 0
+                || approximateCapacity > MAX_APPROXIMATE_CAPACITY) {
+            throw new RequestException(BAD_REQUEST, "approximate must be "
+                    + "between 0 and " + MAX_APPROXIMATE_CAPACITY);
+        }
+        if (approximateCapacity > 0 && ignoreCase) {
+            throw new RequestException(BAD_REQUEST,
+                    "approximate cannot be used with case=insensitive");
+        }
+
+        String method = exchange.getRequestMethod();
+        String file = parameters.get("file");
+        byte[] body = null;
+        Path path = null;
+        byte[] digest;
+        String name;
+        if ("POST".equals(method) && file == null) {
+            body = readBody(exchange);
+            digest = key(body, profile);
+            name = parameters.getOrDefault("name", DEFAULT_BODY_NAME);
+        } else if ("GET".equals(method) && file != null) {
+            path = this.resolve(file);
+            digest = key(path, profile);
+            name = parameters.getOrDefault("name", file);
+        } else {
+            throw new RequestException(METHOD_NOT_ALLOWED,
+                    "Use POST with the text as the body, or GET with ?file=");
+        }
+
+        String key = cacheKey(digest, name, words, scale, renderer,
+                ignoreCase, approximateCapacity);
+        Page page = this.cache.get(key);
+        exchange.getResponseHeaders().set("X-Cache",
+                page == null ? "MISS" : "HIT");
+        if (page != null) {
+            return page;
+        }
+        CompletableFuture<Page> rendered = new CompletableFuture<>();
+        CompletableFuture<Page> pending = this.rendering.putIfAbsent(key,
+                rendered);
+        if (pending != null) {
+            return await(pending);
+        }
+        try {
+            // Rendered by a request that finished after the lookup above
+            page = this.cache.get(key);
+            if (page == null) {
+                page = render(body, path, profile, ignoreCase,
+                        approximateCapacity, words, name, scale, renderer);
+                this.cache.put(key, page);
+            }
+            rendered.complete(page);
+            return page;
+        } catch (Throwable e) {
+            // Even an Error must release the requests waiting on this page
+            rendered.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.rendering.remove(key);
+        }
+    }
+
+    /**
+     * Waits for a page another request is rendering.
+     *
+     * @param pending
+     *            the page being rendered
+     * @return the page
+     * @throws IOException
+     *             if rendering it failed to read the input
+     */
+    private static Page await(CompletableFuture<Page> pending)
+            throws IOException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Counts the words of an input and renders their page.
+     *
+     * @param body
+     *            the request body, or null to count {@code path}
+     * @param path
+     *            the file to count, if {@code body} is null
+     * @param profile
+     *            splits the input into words
+     * @param ignoreCase
+     *            whether words differing only in case are counted as one
+     * @param approximateCapacity
+     *            words monitored by an approximate count, or 0 to count
+     *            exactly
+     * @param words
+     *            number of words
+     * @param name
+     *            source name in the page
+     * @param scale
+     *            font scale
+     * @param renderer
+     *            output format
+     * @return the page
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    private static Page render(byte[] body, Path path,
+            TokenizerProfile profile, boolean ignoreCase,
+            int approximateCapacity, int words, String name, FontScale scale,
+            TagCloudRenderer renderer) throws IOException {
+        WordCounter counts;
+        if (approximateCapacity > 0) {
+            counts = new SpaceSavingCounter(approximateCapacity);
+        } else if (ignoreCase) {
+            counts = new FoldingWordCounter();
+        } else {
+            counts = new Utf8WordCounter();
+        }
+        if (body != null) {
+            new Utf8WordScanner(profile.separators()).scan(
+                    ByteBuffer.wrap(body), 0, body.length, true, counts);
+        } else {
+            MappedWordCount.countWords(path, profile.separators(),
+                    MappedWordCount.DEFAULT_WINDOW_BYTES, counts);
+        }
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        TagCloudGeneratorJC.generatePage(counts, words, name,
+                Channels.newChannel(rendered), scale, renderer);
+        return new Page(renderer.contentType(), rendered.toByteArray());
+    }
+
+    /**
+     * Answers one request.
+     *
+     * @param exchange
+     *            the request
+     * @throws IOException
+     *             if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean admitted = this.requests.tryAcquire();
+        try {
+            int status = OK;
+            Page page;
+            try {
+                if (!admitted) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    throw new RequestException(UNAVAILABLE,
+                            "Too many requests in progress; try again");
+                }
+                page = this.page(exchange);
+            } catch (RequestException e) {
+                status = e.status;
+                page = new Page("text/plain; charset=utf-8",
+                        Utf8Sink.utf8(e.getMessage() + "\n"));
+            } catch (IOException | RuntimeException e) {
+                // The details stay in the server log; they may name classes
+                // and paths the client has no business seeing
+                System.err.println(exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI() + ": " + e);
+                status = SERVER_ERROR;
+                page = new Page("text/plain; charset=utf-8",
+                        Utf8Sink.utf8("Internal server error\n"));
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                    page.contentType);
+            exchange.sendResponseHeaders(status, page.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(page.body);
+            }
+        } finally {
+            if (admitted) {
+                this.requests.release();
+            }
+            exchange.close();
+        }
+    }
+
+    /**
+     * Prints the usage message.
+     */
+    private static void usage() {
+        System.err.println("Usage: TagCloudServer [--port N] [--bind ADDRESS] "
+                + "[--root DIR] [--cache-mb N] [--max-requests N] "
+                + "[--profiles FILE]");
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            options; see {@link #usage()}
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        String bind = "localhost";
+        Path root = null;
+        long cacheBytes = DEFAULT_CACHE_BYTES;
+        int maxRequests = DEFAULT_MAX_REQUESTS;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                usage();
+                System.exit(USAGE_ERROR);
+                return;
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--bind":
+                        bind = value;
+                        break;
+                    case "--root":
+                        root = Paths.get(value);
+                        break;
+                    case "--cache-mb":
+                        cacheBytes = Math.multiplyExact(
+                                Long.parseLong(value), 1L << 20);
+                        break;
+                    case "--max-requests":
+                        maxRequests = Integer.parseInt(value);
+                        break;
+                    case "--profiles":
+                        TokenizerProfile.load(Paths.get(value));
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i]);
+                        usage();
+                        System.exit(USAGE_ERROR);
+                        return;
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                System.err.println("Bad value for " + args[i] + ": " + value);
+                System.exit(USAGE_ERROR);
+                return;
+            } catch (IOException e) {
+                System.err.println("Error reading profiles: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+
+        if (maxRequests < 1 || cacheBytes < 0) {
+            usage();
+            System.exit(USAGE_ERROR);
+            return;
+        }
+
+        try {
+            TagCloudServer server = new TagCloudServer(root, cacheBytes,
+                    maxRequests);
+            HttpServer http = server.start(new InetSocketAddress(bind, port));
+            System.out.println("Serving tag clouds on http://"
+                    + bind + ":" + http.getAddress().getPort() + "/cloud"
+                    + (VirtualThreads.available() ? " (virtual threads)"
+                            : ""));
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
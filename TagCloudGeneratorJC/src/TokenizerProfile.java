@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * A named way of splitting text into words, compiled once into an immutable
+ * {@code CharClass} of separators that every thread and call shares. A
+ * profile either lists its separator characters, or lists the Unicode
+ * categories (and extra characters) that make up words, every other
+ * character separating them. Compiling categories tests every code point,
+ * so such a profile is compiled when it is first used rather than when it is
+ * defined.
+ *
+ * <p>
+ * The built-in profiles are {@code prose}, the original ASCII punctuation
+ * and whitespace; {@code unicode}, letters, digits and combining marks in
+ * any script; {@code log}, which keeps dotted, dashed and colon-separated
+ * tokens such as addresses, paths and times whole; and {@code code}, source
+ * code identifiers. More can be added, or the built-ins redefined, with
+ * {@link #load(Path)} from a properties file such as:
+ *
+ * <pre>
+ * # Words are split on these characters (Java escapes allowed)
+ * csv.separators = ,;\t\r\n
+ * # Words are made of these categories (letter, digit, mark) and characters
+ * tags.words = letter, digit
+ * tags.word-chars = #@_
+ * </pre>
+ *
+ * @author Victor Ruan
+ */
+public final class TokenizerProfile {
+
+    /**
+     * Key suffix of the separator characters of a profile.
+     */
+    private static final String SEPARATORS_KEY = ".separators";
+
+    /**
+     * Key suffix of the word categories of a profile.
+     */
+    private static final String WORDS_KEY = ".words";
+
+    /**
+     * Key suffix of the extra word characters of a profile.
+     */
+    private static final String WORD_CHARS_KEY = ".word-chars";
+
+    /**
+     * The original separators: ASCII whitespace and punctuation.
+     */
+    public static final TokenizerProfile PROSE = separatedBy("prose",
+            TagCloudGeneratorJC.DEFAULT_SEPARATORS);
+
+    /**
+     * Words of letters, digits and combining marks in any script.
+     */
+    public static final TokenizerProfile UNICODE = wordsOf("unicode",
+            Set.of("letter", "digit", "mark"), "");
+
+    /**
+     * Log lines: whitespace, quotes and brackets separate; dots, dashes,
+     * colons and slashes stay inside tokens.
+     */
+    public static final TokenizerProfile LOG = separatedBy("log",
+            " \t\n\r\"'`,;=|()[]{}<>");
+
+    /**
+     * Source code identifiers.
+     */
+    public static final TokenizerProfile CODE = wordsOf("code",
+            Set.of("letter", "digit"), "_$");
+
+    /**
+     * Profiles by name; replaced as a whole by {@link #load(Path)}.
+     */
+    private static volatile Map<String, TokenizerProfile> profiles = Map.of(
+            PROSE.name, PROSE, UNICODE.name, UNICODE, LOG.name, LOG,
+            CODE.name, CODE);
+
+    /**
+     * Name of the profile.
+     */
+    private final String name;
+
+    /**
+     * Canonical description of how the profile splits words.
+     */
+    private final String spec;
+
+    /**
+     * Tests whether a code point separates words, for a profile compiled on
+     * first use; null otherwise.
+     */
+    private final IntPredicate separatorTest;
+
+    /**
+     * The compiled separators, or null until first use.
+     */
+    private volatile CharClass separators;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            the name
+     * @param spec
+     *            the canonical description
+     * @param separators
+     *            the compiled separators, or null
+     * @param separatorTest
+     *            tests for a separator, if {@code separators} is null
+     */
+    private TokenizerProfile(String name, String spec, CharClass separators,
+            IntPredicate separatorTest) {
+        this.name = name;
+        this.spec = spec;
+        this.separators = separators;
+        this.separatorTest = separatorTest;
+    }
+
+    /**
+     * Returns a profile that splits words on the given characters.
+     *
+     * @param name
+     *            the profile name
+     * @param separators
+     *            the separator characters
+     * @return the profile
+     */
+    public static TokenizerProfile separatedBy(String name,
+            String separators) {
+        assert name != null : "Violation of: name is not null";
+        assert separators != null : "Violation of: separators is not null";
+
+        return new TokenizerProfile(name, separators,
+                CharClass.of(separators), null);
+    }
+
+    /**
+     * Returns a profile whose words are runs of characters in the given
+     * categories or in {@code wordChars}.
+     *
+     * @param name
+     *            the profile name
+     * @param categories
+     *            the word categories: {@code letter}, {@code digit} or
+     *            {@code mark}
+     * @param wordChars
+     *            further characters that belong to words
+     * @return the profile
+     * @throws IllegalArgumentException
+     *             if a category is unknown
+     */
+    public static TokenizerProfile wordsOf(String name, Set<String> categories,
+            String wordChars) {
+        assert name != null : "Violation of: name is not null";
+        assert categories != null : "Violation of: categories is not null";
+        assert wordChars != null : "Violation of: wordChars is not null";
+
+        IntPredicate word = cp -> false;
+        Set<String> sorted = new TreeSet<>();
+        for (String category : categories) {
+            String key = category.trim().toLowerCase(Locale.ROOT);
+            word = word.or(category(key));
+            sorted.add(key);
+        }
+        CharClass extra = CharClass.of(wordChars);
+        IntPredicate inWord = word.or(extra::contains);
+        // Starts with NUL to keep it apart from lists of separators
+        String spec = "\0" + String.join(",", sorted) + "\0" + wordChars;
+        return new TokenizerProfile(name, spec, null, inWord.negate());
+    }
+
+    /**
+     * Returns the test for a word category.
+     *
+     * @param category
+     *            the lower-case category name
+     * @return the test
+     * @throws IllegalArgumentException
+     *             if the category is unknown
+     */
+    private static IntPredicate category(String category) {
+        switch (category) {
+            case "letter":
+                return Character::isLetter;
+            case "digit":
+                return Character::isDigit;
+            case "mark":
+                return cp -> {
+                    int type = Character.getType(cp);
+                    return type == Character.NON_SPACING_MARK
+                            || type == Character.ENCLOSING_MARK
+                            || type == Character.COMBINING_SPACING_MARK;
+                };
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown word category: " + category);
+        }
+    }
+
+    /**
+     * Returns the profile with the given name.
+     *
+     * @param name
+     *            the profile name, in any case
+     * @return the profile
+     * @throws IllegalArgumentException
+     *             if there is no such profile
+     */
+    public static TokenizerProfile forName(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        TokenizerProfile profile = profiles
+                .get(name.toLowerCase(Locale.ROOT));
+        if (profile == null) {
+            throw new IllegalArgumentException(
+                    "Unknown tokenizer profile: " + name);
+        }
+        return profile;
+    }
+
+    /**
+     * Compiles the profiles defined in a properties file and makes them
+     * available to {@link #forName(String)}, replacing any built-in or
+     * earlier profile of the same name. Either every profile in the file is
+     * added or, if any is malformed, none is.
+     *
+     * @param config
+     *            the properties file, in UTF-8
+     * @throws IOException
+     *             if the file cannot be read or defines a malformed profile
+     */
+    public static synchronized void load(Path config) throws IOException {
+        assert config != null : "Violation of: config is not null";
+
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(config,
+                StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+
+        Map<String, TokenizerProfile> loaded = new LinkedHashMap<>(profiles);
+        Set<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0) {
+                throw new IOException(config + ": bad key " + key);
+            }
+            names.add(key.substring(0, dot));
+        }
+        for (String name : names) {
+            String separators = properties.getProperty(name + SEPARATORS_KEY);
+            String words = properties.getProperty(name + WORDS_KEY);
+            String wordChars = properties.getProperty(name + WORD_CHARS_KEY,
+                    "");
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(name + ".")
+                        && !key.equals(name + SEPARATORS_KEY)
+                        && !key.equals(name + WORDS_KEY)
+                        && !key.equals(name + WORD_CHARS_KEY)) {
+                    throw new IOException(config + ": unknown key " + key);
+                }
+            }
+            if ((separators == null) == (words == null)) {
+                throw new IOException(config + ": profile " + name
+                        + " needs either " + SEPARATORS_KEY.substring(1)
+                        + " or " + WORDS_KEY.substring(1));
+            }
+            String key = name.toLowerCase(Locale.ROOT);
+            try {
+                if (separators != null) {
+                    if (!wordChars.isEmpty()) {
+                        throw new IOException(config + ": profile " + name
+                                + " lists separators, so it takes no "
+                                + WORD_CHARS_KEY.substring(1));
+                    }
+                    loaded.put(key, separatedBy(key, separators));
+                } else {
+                    loaded.put(key, wordsOf(key,
+                            Set.of(words.split("\\s*,\\s*")), wordChars));
+                }
+            } catch (IllegalArgumentException e) {
+                // Unknown or repeated category
+                throw new IOException(config + ": profile " + name + ": "
+                        + e.getMessage(), e);
+            }
+        }
+        profiles = Map.copyOf(loaded);
+    }
+
+    /**
+     * Returns the name of this profile.
+     *
+     * @return the name
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Returns a canonical description of how this profile splits words, such
+     * that two profiles split every text alike if their descriptions are
+     * equal. For a profile given by its separators it is those separators,
+     * so it can key cached counts just as the separators used to.
+     *
+     * @return the description
+     */
+    public String spec() {
+        return this.spec;
+    }
+
+    /**
+     * Returns the compiled separators of this profile, shared by every
+     * caller.
+     *
+     * @return the separators
+     */
+    public CharClass separators() {
+        CharClass compiled = this.separators;
+        if (compiled == null) {
+            // A race only compiles an equivalent class twice
+            compiled = CharClass.where(this.separatorTest);
+            this.separators = compiled;
+        }
+        return compiled;
+    }
+}
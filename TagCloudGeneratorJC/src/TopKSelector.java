@@ -0,0 +1,287 @@
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Selects the {@code k} most frequent words from a stream of (word, count)
+ * pairs using a bounded min-heap kept in primitive-friendly parallel arrays.
+ * Each offer costs O(log k), so selecting from {@code n} distinct words costs
+ * O(n log k) and the full sorted list is never materialized.
+ *
+ * <p>
+ * Ties are broken deterministically: among words with the same count, the
+ * word that comes first in {@link String#compareTo(String)} order ranks
+ * higher.
+ *
+ * @author Victor Ruan
+ */
+public final class TopKSelector {
+
+    /**
+     * Initial heap capacity when {@code k} is larger.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Maximum number of words kept.
+     */
+    private final int k;
+
+    /**
+     * Heap of words; {@code words[0]} is the lowest-ranked word kept. Grows
+     * up to {@code k} entries as words are offered.
+     */
+    private String[] words;
+
+    /**
+     * Counts parallel to {@code words}.
+     */
+    private int[] counts;
+
+    /**
+     * Number of words currently in the heap.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param k
+     *            the maximum number of words to select
+     * @requires k >= 0
+     */
+    public TopKSelector(int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+
+        this.k = k;
+        this.words = new String[Math.min(k, INITIAL_CAPACITY)];
+        this.counts = new int[this.words.length];
+        this.size = 0;
+    }
+
+    /**
+     * Reports whether (word1, count1) ranks strictly below (word2, count2).
+     *
+     * @param word1
+     *            the first word
+     * @param count1
+     *            the first count
+     * @param word2
+     *            the second word
+     * @param count2
+     *            the second count
+     * @return true iff the first pair ranks below the second
+     */
+    private static boolean ranksBelow(String word1, int count1, String word2,
+            int count2) {
+        if (count1 != count2) {
+            return count1 < count2;
+        }
+        return word1.compareTo(word2) > 0;
+    }
+
+    /**
+     * Moves the entry at index {@code i} up to restore the heap property.
+     *
+     * @param i
+     *            the index of the entry to move
+     */
+    private void siftUp(int i) {
+        String w = this.words[i];
+        int c = this.counts[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksBelow(w, c, this.words[parent], this.counts[parent])) {
+                break;
+            }
+            this.words[i] = this.words[parent];
+            this.counts[i] = this.counts[parent];
+            i = parent;
+        }
+        this.words[i] = w;
+        this.counts[i] = c;
+    }
+
+    /**
+     * Moves the entry at index {@code i} down to restore the heap property.
+     *
+     * @param i
+     *            the index of the entry to move
+     */
+    private void siftDown(int i) {
+        String w = this.words[i];
+        int c = this.counts[i];
+        int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < this.size && ranksBelow(this.words[right],
+                    this.counts[right], this.words[child],
+                    this.counts[child])) {
+                child = right;
+            }
+            if (!ranksBelow(this.words[child], this.counts[child], w, c)) {
+                break;
+            }
+            this.words[i] = this.words[child];
+            this.counts[i] = this.counts[child];
+            i = child;
+        }
+        this.words[i] = w;
+        this.counts[i] = c;
+    }
+
+    /**
+     * Offers a (word, count) pair for selection. Each word should be offered
+     * at most once.
+     *
+     * @param word
+     *            the word
+     * @param count
+     *            the number of occurrences of {@code word}
+     * @updates this
+     * @requires word is not null
+     */
+    public void offer(String word, int count) {
+        assert word != null : "Violation of: word is not null";
+
+        if (this.size < this.k) {
+            if (this.size == this.words.length) {
+                int capacity = (int) Math.min(this.k, 2L * this.size);
+                this.words = Arrays.copyOf(this.words, capacity);
+                this.counts = Arrays.copyOf(this.counts, capacity);
+            }
+            this.words[this.size] = word;
+            this.counts[this.size] = count;
+            this.siftUp(this.size);
+            this.size++;
+        } else if (this.k > 0
+                && ranksBelow(this.words[0], this.counts[0], word, count)) {
+            this.words[0] = word;
+            this.counts[0] = count;
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * Offers every entry of the given {@code Map} for selection.
+     *
+     * @param wordCountMap
+     *            {@code map} with word keys and count values
+     * @updates this
+     */
+    public void offerAll(Map<String, Integer> wordCountMap) {
+        assert wordCountMap != null : "Violation of: wordCountMap is not null";
+
+        for (Entry<String, Integer> entry : wordCountMap.entrySet()) {
+            this.offer(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Offers every word in the given {@code WordCounter} for selection.
+     *
+     * @param counter
+     *            the word counts
+     * @updates this
+     */
+    public void offerAll(WordCounter counter) {
+        assert counter != null : "Violation of: counter is not null";
+
+        counter.forEach(this::offer);
+    }
+
+    /**
+     * Returns the number of words currently selected.
+     *
+     * @return the number of words selected, at most {@code k}
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the selected words ordered from highest to lowest rank. The
+     * selector is left unchanged.
+     *
+     * @return the selected (word, count) pairs in decreasing count order
+     * @ensures |result| = min(k, number of words offered)
+     */
+    public List<Entry<String, Integer>> toList() {
+        String[] w = new String[this.size];
+        int[] c = new int[this.size];
+        System.arraycopy(this.words, 0, w, 0, this.size);
+        System.arraycopy(this.counts, 0, c, 0, this.size);
+
+        // Pop the heap into the back of the list: the minimum goes last
+        List<Entry<String, Integer>> result = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            result.add(null);
+        }
+        int savedSize = this.size;
+        for (int i = savedSize - 1; i >= 0; i--) {
+            result.set(i, new SimpleImmutableEntry<>(this.words[0],
+                    this.counts[0]));
+            this.size--;
+            if (this.size > 0) {
+                this.words[0] = this.words[this.size];
+                this.counts[0] = this.counts[this.size];
+                this.siftDown(0);
+            }
+        }
+
+        // Restore the heap
+        System.arraycopy(w, 0, this.words, 0, savedSize);
+        System.arraycopy(c, 0, this.counts, 0, savedSize);
+        this.size = savedSize;
+        return result;
+    }
+
+    /**
+     * Returns the {@code k} most frequent words in the given {@code Map}.
+     *
+     * @param wordCountMap
+     *            {@code map} with word keys and count values
+     * @param k
+     *            the maximum number of words to select
+     * @return the selected (word, count) pairs in decreasing count order
+     * @requires k >= 0
+     * @ensures |select| = min(k, |wordCountMap|)
+     */
+    public static List<Entry<String, Integer>> select(
+            Map<String, Integer> wordCountMap, int k) {
+        assert wordCountMap != null : "Violation of: wordCountMap is not null";
+        assert k >= 0 : "Violation of: k >= 0";
+
+        TopKSelector selector = new TopKSelector(
+                Math.min(k, wordCountMap.size()));
+        selector.offerAll(wordCountMap);
+        return selector.toList();
+    }
+
+    /**
+     * Returns the {@code k} most frequent words in the given
+     * {@code WordCounter}, in a single pass over the candidates its
+     * {@code forEachCandidate} reports.
+     *
+     * @param counter
+     *            the word counts
+     * @param k
+     *            the maximum number of words to select
+     * @return the selected (word, count) pairs in decreasing count order
+     * @requires k >= 0
+     * @ensures |select| = min(k, counter.size())
+     */
+    public static List<Entry<String, Integer>> select(WordCounter counter,
+            int k) {
+        assert counter != null : "Violation of: counter is not null";
+        assert k >= 0 : "Violation of: k >= 0";
+
+        TopKSelector selector = new TopKSelector(k);
+        counter.forEachCandidate(k, selector::offer);
+        return selector.toList();
+    }
+}
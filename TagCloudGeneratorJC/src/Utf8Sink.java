@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered UTF-8 output for the {@code TagCloudRenderer}s. Pre-encoded
+ * fragments are copied in whole; text and numbers are encoded by hand
+ * straight into a reusable buffer, which is written to the underlying
+ * channel or stream in large blocks. Nothing is allocated per write.
+ *
+ * @author Victor Ruan
+ */
+public final class Utf8Sink {
+
+    /**
+     * Default size of the buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Most bytes one {@code char} encodes or escapes to.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 6;
+
+    /**
+     * Most digits of an {@code int}, with its sign.
+     */
+    private static final int MAX_INT_DIGITS = 11;
+
+    /**
+     * Substituted for an unpaired surrogate, as {@code String.getBytes}
+     * does.
+     */
+    private static final byte REPLACEMENT = '?';
+
+    /**
+     * Receives the bytes, or null if {@code stream} does.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Receives the bytes, or null if {@code channel} does.
+     */
+    private final OutputStream stream;
+
+    /**
+     * Bytes not yet written.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Reusable view of {@code bytes} used to write to {@code channel}.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of bytes used in {@code bytes}.
+     */
+    private int used;
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            the channel written to, or null
+     * @param stream
+     *            the stream written to, or null
+     * @param bufferSize
+     *            the size of the buffer
+     */
+    private Utf8Sink(WritableByteChannel channel, OutputStream stream,
+            int bufferSize) {
+        assert bufferSize >= 64 : "Violation of: bufferSize >= 64";
+
+        this.channel = channel;
+        this.stream = stream;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(this.bytes);
+        this.used = 0;
+    }
+
+    /**
+     * Constructor for a channel, such as a {@code FileChannel}.
+     *
+     * @param out
+     *            the channel written to; it is never closed
+     */
+    public Utf8Sink(WritableByteChannel out) {
+        this(out, null, DEFAULT_BUFFER_SIZE);
+        assert out != null : "Violation of: out is not null";
+    }
+
+    /**
+     * Constructor for a stream.
+     *
+     * @param out
+     *            the stream written to; it is never closed
+     */
+    public Utf8Sink(OutputStream out) {
+        this(null, out, DEFAULT_BUFFER_SIZE);
+        assert out != null : "Violation of: out is not null";
+    }
+
+    /**
+     * Constructor for a channel with a given buffer size.
+     *
+     * @param out
+     *            the channel written to; it is never closed
+     * @param bufferSize
+     *            the size of the buffer
+     * @requires bufferSize >= 64
+     */
+    public Utf8Sink(WritableByteChannel out, int bufferSize) {
+        this(out, null, bufferSize);
+        assert out != null : "Violation of: out is not null";
+    }
+
+    /**
+     * Returns the UTF-8 bytes of {@code s}, for pre-encoding fragments.
+     *
+     * @param s
+     *            the string
+     * @return its bytes
+     */
+    public static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes {@code length} bytes of {@code b} to the underlying output.
+     *
+     * @param b
+     *            the bytes
+     * @param length
+     *            the number of bytes
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    private void writeOut(byte[] b, int length) throws IOException {
+        if (this.stream != null) {
+            this.stream.write(b, 0, length);
+        } else {
+            ByteBuffer view = b == this.bytes ? this.buffer
+                    : ByteBuffer.wrap(b);
+            view.clear().limit(length);
+            while (view.hasRemaining()) {
+                this.channel.write(view);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying output, and flushes it if
+     * it is a stream.
+     *
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public void flush() throws IOException {
+        this.drain();
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying output.
+     *
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    private void drain() throws IOException {
+        this.writeOut(this.bytes, this.used);
+        this.used = 0;
+    }
+
+    /**
+     * Makes room for {@code n} more bytes.
+     *
+     * @param n
+     *            the number of bytes
+     * @throws IOException
+     *             if the output cannot be written
+     * @requires n <= bytes.length
+     */
+    private void reserve(int n) throws IOException {
+        if (this.used + n > this.bytes.length) {
+            this.drain();
+        }
+    }
+
+    /**
+     * Appends pre-encoded bytes.
+     *
+     * @param fragment
+     *            the bytes
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public void put(byte[] fragment) throws IOException {
+        if (fragment.length > this.bytes.length) {
+            this.drain();
+            this.writeOut(fragment, fragment.length);
+            return;
+        }
+        this.reserve(fragment.length);
+        System.arraycopy(fragment, 0, this.bytes, this.used, fragment.length);
+        this.used += fragment.length;
+    }
+
+    /**
+     * Appends one ASCII character.
+     *
+     * @param c
+     *            the character
+     * @throws IOException
+     *             if the output cannot be written
+     * @requires c < 0x80
+     */
+    public void putAscii(char c) throws IOException {
+        this.reserve(1);
+        this.bytes[this.used] = (byte) c;
+        this.used++;
+    }
+
+    /**
+     * Appends the decimal digits of {@code n}.
+     *
+     * @param n
+     *            the number
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public void putInt(int n) throws IOException {
+        this.reserve(MAX_INT_DIGITS);
+        long value = n;
+        if (value < 0) {
+            this.bytes[this.used] = '-';
+            this.used++;
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = this.used + digits;
+        for (int i = end - 1; i >= this.used; i--) {
+            this.bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.used = end;
+    }
+
+    /**
+     * Appends the UTF-8 encoding of {@code s}.
+     *
+     * @param s
+     *            the text
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public void putText(String s) throws IOException {
+        this.putText(s, null);
+    }
+
+    /**
+     * Appends the UTF-8 encoding of {@code s}, replacing each ASCII
+     * character {@code c} for which {@code escapes[c]} is not null with
+     * those bytes.
+     *
+     * @param s
+     *            the text
+     * @param escapes
+     *            the escape of each ASCII character, or null for none
+     * @throws IOException
+     *             if the output cannot be written
+     * @requires escapes = null or (|escapes| = 128 and every escape is at
+     *           most 6 bytes)
+     */
+    public void putText(String s, byte[][] escapes) throws IOException {
+        final int maxChunk = this.bytes.length / MAX_BYTES_PER_CHAR;
+        int i = 0;
+        while (i < s.length()) {
+            // Encode at most maxChunk chars (plus one low surrogate) at once
+            int end = Math.min(s.length(), i + maxChunk - 1);
+            this.reserve(MAX_BYTES_PER_CHAR * (end - i + 1));
+            byte[] b = this.bytes;
+            int u = this.used;
+            while (i < end) {
+                char c = s.charAt(i);
+                i++;
+                if (c < 0x80) {
+                    byte[] escape = escapes == null ? null : escapes[c];
+                    if (escape == null) {
+                        b[u++] = (byte) c;
+                    } else {
+                        System.arraycopy(escape, 0, b, u, escape.length);
+                        u += escape.length;
+                    }
+                } else if (c < 0x800) {
+                    b[u++] = (byte) (0xC0 | (c >> 6));
+                    b[u++] = (byte) (0x80 | (c & 0x3F));
+                } else if (!Character.isSurrogate(c)) {
+                    b[u++] = (byte) (0xE0 | (c >> 12));
+                    b[u++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[u++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i < s.length()
+                        && Character.isLowSurrogate(s.charAt(i))) {
+                    int cp = Character.toCodePoint(c, s.charAt(i));
+                    i++;
+                    b[u++] = (byte) (0xF0 | (cp >> 18));
+                    b[u++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[u++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[u++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    b[u++] = REPLACEMENT;
+                }
+            }
+            this.used = u;
+        }
+    }
+}
@@ -0,0 +1,525 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Open-addressing {@code WordCounter} keyed by the UTF-8 bytes of each word.
+ * {@code Utf8WordScanner} hands it byte spans of the input, which are hashed
+ * and compared in place; a new word's bytes are appended to one shared
+ * arena, so the table holds no per-word objects at all. Words are decoded to
+ * {@code String}s only when they are read back, and
+ * {@link #forEachCandidate(int, ObjIntConsumer)} decodes only the words that
+ * can rank among the most frequent.
+ *
+ * <p>
+ * Keys must be well-formed UTF-8; the scanner replaces malformed bytes with
+ * the encoding of U+FFFD before counting, so every key decodes to the same
+ * word a char-based table would hold.
+ *
+ * @author Victor Ruan
+ */
+public final class Utf8WordCounter implements WordCounter {
+
+    /**
+     * Default initial number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Initial size of the byte arena per slot.
+     */
+    private static final int ARENA_BYTES_PER_SLOT = 8;
+
+    /**
+     * Bytes of all words, back to back.
+     */
+    private byte[] arena;
+
+    /**
+     * Number of bytes of {@code arena} in use.
+     */
+    private int arenaSize;
+
+    /**
+     * Offset in {@code arena} of the word in each slot.
+     */
+    private int[] offsets;
+
+    /**
+     * Length in bytes of the word in each slot.
+     */
+    private int[] lengths;
+
+    /**
+     * Hash code of the word in each slot.
+     */
+    private int[] hashes;
+
+    /**
+     * Count of the word in each slot; 0 marks an empty slot.
+     */
+    private int[] counts;
+
+    /**
+     * Number of distinct words stored.
+     */
+    private int size;
+
+    /**
+     * Number of distinct words at which the table grows.
+     */
+    private int threshold;
+
+    /**
+     * No-argument constructor.
+     */
+    public Utf8WordCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedWords
+     *            the number of distinct words expected
+     * @requires expectedWords >= 0
+     */
+    public Utf8WordCounter(int expectedWords) {
+        assert expectedWords >= 0 : "Violation of: expectedWords >= 0";
+
+        int capacity = Integer.highestOneBit(Math.max(2 * expectedWords, 16));
+        if (capacity < 2 * expectedWords) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+        this.arena = new byte[capacity * ARENA_BYTES_PER_SLOT];
+        this.arenaSize = 0;
+    }
+
+    /**
+     * Replaces the slot arrays with empty arrays of the given size.
+     *
+     * @param capacity
+     *            the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.threshold = capacity >>> 1;
+    }
+
+    /**
+     * Spreads the bits of a hash code before masking.
+     *
+     * @param hash
+     *            the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the hash code of {@code bytes[offset, offset + length)}.
+     *
+     * @param bytes
+     *            the buffer holding the word; its position and limit are
+     *            ignored
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @return the hash code
+     */
+    private static int hash(ByteBuffer bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes.get(i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the hash code of {@code bytes[offset, offset + length)}.
+     *
+     * @param bytes
+     *            the array holding the word
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @return the hash code
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    /**
+     * Reports whether the word in {@code slot} equals
+     * {@code bytes[offset, offset + length)}.
+     *
+     * @param slot
+     *            a full slot
+     * @param bytes
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @return true iff the two words are equal
+     */
+    private boolean matches(int slot, ByteBuffer bytes, int offset,
+            int length) {
+        if (this.lengths[slot] != length) {
+            return false;
+        }
+        int key = this.offsets[slot];
+        if (bytes.hasArray()) {
+            int start = bytes.arrayOffset() + offset;
+            return Arrays.equals(this.arena, key, key + length, bytes.array(),
+                    start, start + length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.arena[key + i] != bytes.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the slot holding {@code bytes[offset, offset + length)}, or the
+     * empty slot where it belongs.
+     *
+     * @param bytes
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @param hash
+     *            the hash code of the word
+     * @return the slot
+     */
+    private int find(ByteBuffer bytes, int offset, int length, int hash) {
+        int mask = this.counts.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.counts[slot] != 0) {
+            if (this.hashes[slot] == hash
+                    && this.matches(slot, bytes, offset, length)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Stores a new word in the empty slot {@code slot}, growing the table if
+     * it is now too full.
+     *
+     * @param slot
+     *            the empty slot
+     * @param bytes
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @param hash
+     *            the hash code of the word
+     * @param count
+     *            the initial count
+     */
+    private void insert(int slot, ByteBuffer bytes, int offset, int length,
+            int hash, int count) {
+        if (length > this.arena.length - this.arenaSize) {
+            long needed = (long) this.arenaSize + length;
+            if (needed > Integer.MAX_VALUE) {
+                throw new IllegalStateException(
+                        "Too many distinct word bytes to count in memory");
+            }
+            int larger = (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(needed, 2L * this.arena.length));
+            this.arena = Arrays.copyOf(this.arena, larger);
+        }
+        bytes.get(offset, this.arena, this.arenaSize, length);
+        this.offsets[slot] = this.arenaSize;
+        this.lengths[slot] = length;
+        this.hashes[slot] = hash;
+        this.counts[slot] = count;
+        this.arenaSize += length;
+        this.size++;
+        if (this.size > this.threshold) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Doubles the number of slots and rehashes every word.
+     */
+    private void grow() {
+        int[] oldOffsets = this.offsets;
+        int[] oldLengths = this.lengths;
+        int[] oldHashes = this.hashes;
+        int[] oldCounts = this.counts;
+        this.allocate(oldCounts.length << 1);
+        int mask = this.counts.length - 1;
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (this.counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.offsets[slot] = oldOffsets[i];
+                this.lengths[slot] = oldLengths[i];
+                this.hashes[slot] = oldHashes[i];
+                this.counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Adds {@code count} occurrences of the word whose UTF-8 encoding is
+     * {@code bytes[offset, offset + length)}.
+     *
+     * @param bytes
+     *            the buffer holding the word; its position and limit are
+     *            ignored
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @param count
+     *            the number of occurrences to add
+     * @updates this
+     * @requires bytes[offset, offset + length) is well-formed UTF-8 and
+     *           length > 0 and count > 0
+     */
+    public void add(ByteBuffer bytes, int offset, int length, int count) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        int h = hash(bytes, offset, length);
+        int slot = this.find(bytes, offset, length, h);
+        if (this.counts[slot] != 0) {
+            this.counts[slot] += count;
+        } else {
+            this.insert(slot, bytes, offset, length, h, count);
+        }
+    }
+
+    /**
+     * Adds {@code count} occurrences of the word whose UTF-8 encoding is
+     * {@code bytes[offset, offset + length)}.
+     *
+     * @param bytes
+     *            the array holding the word
+     * @param offset
+     *            the index of the first byte of the word
+     * @param length
+     *            the number of bytes in the word
+     * @param count
+     *            the number of occurrences to add
+     * @updates this
+     * @requires bytes[offset, offset + length) is well-formed UTF-8 and
+     *           length > 0 and count > 0
+     */
+    public void add(byte[] bytes, int offset, int length, int count) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        int h = hash(bytes, offset, length);
+        int slot = this.find(wrapped, offset, length, h);
+        if (this.counts[slot] != 0) {
+            this.counts[slot] += count;
+        } else {
+            this.insert(slot, wrapped, offset, length, h, count);
+        }
+    }
+
+    @Override
+    public void add(char[] text, int offset, int length, int count) {
+        assert text != null : "Violation of: text is not null";
+        assert length > 0 : "Violation of: length > 0";
+
+        byte[] utf8 = new String(text, offset, length)
+                .getBytes(StandardCharsets.UTF_8);
+        this.add(utf8, 0, utf8.length, count);
+    }
+
+    @Override
+    public void add(CharSequence word, int count) {
+        assert word != null : "Violation of: word is not null";
+        assert word.length() > 0 : "Violation of: |word| > 0";
+
+        byte[] utf8 = word.toString().getBytes(StandardCharsets.UTF_8);
+        this.add(utf8, 0, utf8.length, count);
+    }
+
+    /**
+     * Adds every count in {@code other} to this. Another
+     * {@code Utf8WordCounter} is merged by the UTF-8 bytes of its words, so
+     * none of them is decoded.
+     *
+     * @param other
+     *            the counts to merge in
+     * @updates this
+     */
+    @Override
+    public void addAll(WordCounter other) {
+        assert other != null : "Violation of: other is not null";
+
+        if (!(other instanceof Utf8WordCounter)) {
+            other.forEach(this::add);
+            return;
+        }
+        Utf8WordCounter utf8 = (Utf8WordCounter) other;
+        ByteBuffer arena = ByteBuffer.wrap(utf8.arena);
+        for (int i = 0; i < utf8.counts.length; i++) {
+            if (utf8.counts[i] != 0) {
+                this.add(arena, utf8.offsets[i], utf8.lengths[i],
+                        utf8.counts[i]);
+            }
+        }
+    }
+
+    @Override
+    public int count(CharSequence word) {
+        assert word != null : "Violation of: word is not null";
+
+        byte[] utf8 = word.toString().getBytes(StandardCharsets.UTF_8);
+        int slot = this.find(ByteBuffer.wrap(utf8), 0, utf8.length,
+                hash(utf8, 0, utf8.length));
+        return this.counts[slot];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the word in {@code slot} as a {@code String}.
+     *
+     * @param slot
+     *            a full slot
+     * @return the word
+     */
+    private String word(int slot) {
+        return new String(this.arena, this.offsets[slot], this.lengths[slot],
+                StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<String> action) {
+        assert action != null : "Violation of: action is not null";
+
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] != 0) {
+                action.accept(this.word(i), this.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls {@code action} for every word whose count is at least the
+     * {@code k}-th largest count. The threshold is found with a min-heap of
+     * counts, so only those words, ties included, are decoded.
+     *
+     * @param k
+     *            the number of words being selected
+     * @param action
+     *            receives each candidate (word, count) pair
+     */
+    @Override
+    public void forEachCandidate(int k, ObjIntConsumer<String> action) {
+        assert k >= 0 : "Violation of: k >= 0";
+        assert action != null : "Violation of: action is not null";
+
+        if (k == 0) {
+            return;
+        }
+        if (k >= this.size) {
+            this.forEach(action);
+            return;
+        }
+        int[] heap = new int[k];
+        int n = 0;
+        for (int c : this.counts) {
+            if (c == 0) {
+                continue;
+            }
+            if (n < k) {
+                heap[n] = c;
+                siftUp(heap, n);
+                n++;
+            } else if (c > heap[0]) {
+                heap[0] = c;
+                siftDown(heap, k);
+            }
+        }
+        int least = heap[0];
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] >= least) {
+                action.accept(this.word(i), this.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Moves {@code heap[i]} up to restore the min-heap property.
+     *
+     * @param heap
+     *            the heap
+     * @param i
+     *            the index of the entry to move
+     */
+    private static void siftUp(int[] heap, int i) {
+        int c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= c) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = c;
+    }
+
+    /**
+     * Moves {@code heap[0]} down to restore the min-heap property.
+     *
+     * @param heap
+     *            the heap
+     * @param size
+     *            the number of entries in the heap
+     */
+    private static void siftDown(int[] heap, int size) {
+        int c = heap[0];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= c) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = c;
+    }
+}
@@ -0,0 +1,375 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Finds words directly in UTF-8 encoded bytes, such as a mapped file, without
+ * running a {@code CharsetDecoder}. Runs of ASCII separators and ASCII word
+ * bytes are skipped by the separators' {@code ByteRunScanner}, a vector at a
+ * time where the JVM allows; multi-byte sequences are decoded in place only
+ * to classify the code point and append it to the current word. Malformed
+ * sequences become U+FFFD, one per offending byte.
+ *
+ * <p>
+ * A {@code Utf8WordCounter} is handed each word as its span of input bytes,
+ * so words are neither decoded nor copied; only a word containing malformed
+ * bytes is re-encoded, with U+FFFD in their place, before it is counted.
+ *
+ * <p>
+ * A scanner keeps a reusable word buffer, so it must not be shared between
+ * threads.
+ *
+ * @author Victor Ruan
+ */
+public final class Utf8WordScanner {
+
+    /**
+     * Initial size of the reusable word buffer.
+     */
+    private static final int INITIAL_WORD_BUFFER = 64;
+
+    /**
+     * Payload bits of a lead byte, indexed by sequence length.
+     */
+    private static final int[] LEAD_MASKS = {0, 0, 0x1F, 0x0F, 0x07};
+
+    /**
+     * Smallest code point that may be encoded with a sequence of each length,
+     * used to reject overlong encodings.
+     */
+    private static final int[] MINIMUMS = {0, 0, 0x80, 0x800, 0x10000};
+
+    /**
+     * The separator characters.
+     */
+    private final CharClass separators;
+
+    /**
+     * Skips runs of ASCII separators and ASCII word bytes.
+     */
+    private final ByteRunScanner runs;
+
+    /**
+     * Characters of the word being scanned.
+     */
+    private char[] word;
+
+    /**
+     * Well-formed UTF-8 of the last malformed word, grown as needed.
+     */
+    private byte[] repaired;
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separator characters
+     */
+    public Utf8WordScanner(CharClass separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        this.separators = separators;
+        this.runs = separators.byteRuns();
+        this.word = new char[INITIAL_WORD_BUFFER];
+        this.repaired = new byte[INITIAL_WORD_BUFFER];
+    }
+
+    /**
+     * Returns the length of the UTF-8 sequence that starts with {@code lead},
+     * or 0 if {@code lead} cannot start a sequence.
+     *
+     * @param lead
+     *            the first byte of the sequence
+     * @return the sequence length in bytes, or 0
+     */
+    private static int sequenceLength(int lead) {
+        final int twoByteMin = 0xC2;
+        final int threeByteMin = 0xE0;
+        final int fourByteMin = 0xF0;
+        final int fourByteMax = 0xF4;
+        int len = 0;
+        if (lead >= twoByteMin && lead < threeByteMin) {
+            len = 2;
+        } else if (lead >= threeByteMin && lead < fourByteMin) {
+            len = 3;
+        } else if (lead >= fourByteMin && lead <= fourByteMax) {
+            len = 4;
+        }
+        return len;
+    }
+
+    /**
+     * Decodes the UTF-8 sequence of {@code length} bytes at {@code index}.
+     *
+     * @param bytes
+     *            the encoded input
+     * @param index
+     *            the index of the lead byte
+     * @param length
+     *            the sequence length from {@link #sequenceLength(int)}
+     * @return the code point, or -1 if the sequence is malformed
+     */
+    private static int decode(ByteBuffer bytes, int index, int length) {
+        final int continuationMask = 0xC0;
+        final int continuationTag = 0x80;
+        final int payloadBits = 6;
+        final int payloadMask = 0x3F;
+
+        int cp = bytes.get(index) & LEAD_MASKS[length];
+        for (int i = 1; i < length; i++) {
+            int b = bytes.get(index + i);
+            if ((b & continuationMask) != continuationTag) {
+                return -1;
+            }
+            cp = (cp << payloadBits) | (b & payloadMask);
+        }
+        if (cp < MINIMUMS[length] || cp > Character.MAX_CODE_POINT
+                || (cp >= Character.MIN_SURROGATE
+                        && cp <= Character.MAX_SURROGATE)) {
+            return -1;
+        }
+        return cp;
+    }
+
+    /**
+     * Appends {@code c} to the current word, growing the buffer if needed.
+     *
+     * @param length
+     *            the current word length
+     * @param c
+     *            the character to append
+     * @return the new word length
+     */
+    private int append(int length, char c) {
+        if (length == this.word.length) {
+            char[] larger = new char[2 * this.word.length];
+            System.arraycopy(this.word, 0, larger, 0, length);
+            this.word = larger;
+        }
+        this.word[length] = c;
+        return length + 1;
+    }
+
+    /**
+     * Appends the ASCII bytes {@code bytes[from, to)} to the current word.
+     *
+     * @param bytes
+     *            the input
+     * @param from
+     *            the index of the first byte
+     * @param to
+     *            the index one past the last byte
+     * @param length
+     *            the current word length
+     * @return the new word length
+     */
+    private int appendAscii(ByteBuffer bytes, int from, int to, int length) {
+        int newLength = length + to - from;
+        if (newLength > this.word.length) {
+            char[] larger = new char[Math.max(newLength, 2 * this.word.length)];
+            System.arraycopy(this.word, 0, larger, 0, length);
+            this.word = larger;
+        }
+        char[] w = this.word;
+        for (int i = from, j = length; i < to; i++, j++) {
+            w[j] = (char) bytes.get(i);
+        }
+        return newLength;
+    }
+
+    /**
+     * Counts the word {@code bytes[from, to)}, which holds malformed
+     * sequences, into {@code counter} with U+FFFD in place of each byte of
+     * them.
+     *
+     * @param bytes
+     *            the input
+     * @param from
+     *            the index of the first byte of the word
+     * @param to
+     *            the index one past the last byte of the word
+     * @param counter
+     *            receives the word
+     */
+    private void addRepaired(ByteBuffer bytes, int from, int to,
+            Utf8WordCounter counter) {
+        final byte[] replacement = {(byte) 0xEF, (byte) 0xBF, (byte) 0xBD};
+        final int byteMask = 0xFF;
+        final int asciiLimit = 0x80;
+        int maxLength = replacement.length * (to - from);
+        if (this.repaired.length < maxLength) {
+            this.repaired = new byte[maxLength];
+        }
+        int n = 0;
+        int i = from;
+        while (i < to) {
+            int b = bytes.get(i) & byteMask;
+            int length = 1;
+            boolean valid = b < asciiLimit;
+            if (!valid) {
+                length = sequenceLength(b);
+                valid = length > 0 && i + length <= to
+                        && decode(bytes, i, length) >= 0;
+            }
+            if (valid) {
+                bytes.get(i, this.repaired, n, length);
+                n += length;
+                i += length;
+            } else {
+                System.arraycopy(replacement, 0, this.repaired, n,
+                        replacement.length);
+                n += replacement.length;
+                i++;
+            }
+        }
+        counter.add(this.repaired, 0, n, 1);
+    }
+
+    /**
+     * Counts every word in {@code bytes[from, to)} into {@code counter}. If
+     * {@code endOfInput} is false, a word or a multi-byte sequence that runs up
+     * to {@code to} might continue past it, so it is not counted; its start
+     * index is returned instead so the caller can rescan it with more input.
+     *
+     * @param bytes
+     *            the UTF-8 encoded input; its position and limit are ignored
+     * @param from
+     *            the index of the first byte to scan
+     * @param to
+     *            the index one past the last byte to scan
+     * @param endOfInput
+     *            whether {@code bytes[to]} is known to be a word boundary
+     * @param counter
+     *            receives each complete word
+     * @return the index of the first byte not consumed, or {@code to} if
+     *         every word was counted
+     * @requires 0 <= from <= to <= bytes.capacity() and from is not inside a
+     *           word or a multi-byte sequence
+     */
+    public int scan(ByteBuffer bytes, int from, int to, boolean endOfInput,
+            WordCounter counter) {
+        assert bytes != null : "Violation of: bytes is not null";
+        assert counter != null : "Violation of: counter is not null";
+        assert 0 <= from : "Violation of: 0 <= from";
+        assert from <= to : "Violation of: from <= to";
+        assert to <= bytes.capacity() : "Violation of: to <= bytes.capacity()";
+
+        final int byteMask = 0xFF;
+        final int asciiLimit = 0x80;
+        final int replacement = 0xFFFD;
+        // Byte-keyed tables take spans of the input; others take chars
+        Utf8WordCounter utf8 = null;
+        if (counter instanceof Utf8WordCounter) {
+            utf8 = (Utf8WordCounter) counter;
+        }
+        int wordStart = -1;
+        int wordLength = 0;
+        boolean malformed = false;
+        int i = from;
+        while (i < to) {
+            // Skip a whole run of ASCII separators or ASCII word bytes; the
+            // byte that ends it is handled below
+            if (wordStart < 0) {
+                i = this.runs.skipSeparators(bytes, i, to);
+            } else {
+                int end = this.runs.skipWord(bytes, i, to);
+                if (utf8 == null) {
+                    wordLength = this.appendAscii(bytes, i, end, wordLength);
+                }
+                i = end;
+            }
+            if (i == to) {
+                break;
+            }
+
+            int b = bytes.get(i) & byteMask;
+            int cp = b;
+            int length = 1;
+            if (b >= asciiLimit) {
+                length = sequenceLength(b);
+                if (length == 0) {
+                    cp = -1;
+                    length = 1;
+                } else if (i + length > to) {
+                    if (!endOfInput) {
+                        return wordStart < 0 ? i : wordStart;
+                    }
+                    cp = -1;
+                    length = 1;
+                } else {
+                    cp = decode(bytes, i, length);
+                    if (cp < 0) {
+                        length = 1;
+                    }
+                }
+            }
+            boolean bad = cp < 0;
+            if (bad) {
+                cp = replacement;
+            }
+
+            if (this.separators.contains(cp)) {
+                if (wordStart >= 0) {
+                    this.count(bytes, wordStart, i, wordLength, malformed,
+                            counter, utf8);
+                    wordStart = -1;
+                    wordLength = 0;
+                    malformed = false;
+                }
+            } else {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+                if (utf8 != null) {
+                    malformed |= bad;
+                } else if (Character.isBmpCodePoint(cp)) {
+                    wordLength = this.append(wordLength, (char) cp);
+                } else {
+                    wordLength = this.append(wordLength,
+                            Character.highSurrogate(cp));
+                    wordLength = this.append(wordLength,
+                            Character.lowSurrogate(cp));
+                }
+            }
+            i += length;
+        }
+
+        if (wordStart >= 0) {
+            if (!endOfInput) {
+                return wordStart;
+            }
+            this.count(bytes, wordStart, to, wordLength, malformed, counter,
+                    utf8);
+        }
+        return to;
+    }
+
+    /**
+     * Counts a complete word: the span {@code bytes[from, to)} if
+     * {@code utf8} is not null, or else the first {@code length} chars of the
+     * word buffer.
+     *
+     * @param bytes
+     *            the input
+     * @param from
+     *            the index of the first byte of the word
+     * @param to
+     *            the index one past the last byte of the word
+     * @param length
+     *            the number of chars in the word buffer
+     * @param malformed
+     *            whether the span holds malformed sequences
+     * @param counter
+     *            receives the word as chars
+     * @param utf8
+     *            {@code counter} as a byte-keyed table, or null
+     */
+    private void count(ByteBuffer bytes, int from, int to, int length,
+            boolean malformed, WordCounter counter, Utf8WordCounter utf8) {
+        if (utf8 == null) {
+            counter.add(this.word, 0, length, 1);
+        } else if (malformed) {
+            this.addRepaired(bytes, from, to, utf8);
+        } else {
+            utf8.add(bytes, from, to - from, 1);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@code ByteRunScanner} on the incubating Vector API. Each step loads a
+ * whole vector of bytes (32 or 64 on current x86) and classifies every lane
+ * with two table lookups: the low nibble of a byte selects the set of high
+ * nibbles that make a separator with it, the high nibble selects one bit,
+ * and the byte is a separator iff the two share that bit. The cost does not
+ * depend on how many separators there are. The first lane that ends the run
+ * is found with {@code VectorMask.firstTrue()}; on JDK 17,
+ * {@code VectorMask.toLong()} is not an intrinsic and is several times
+ * slower. Most runs in prose are a few bytes long, so the first bytes of a
+ * run are checked one at a time and vectors are used only past them; short
+ * tails use the scalar scanner too.
+ *
+ * <p>
+ * Needs {@code --add-modules jdk.incubator.vector} at compile time and at
+ * run time; create it through {@link ByteRunScanner#of(CharClass)}, which
+ * falls back to the scalar scanner without the module.
+ *
+ * @author Victor Ruan
+ */
+public final class VectorByteRunScanner implements ByteRunScanner {
+
+    /**
+     * The widest byte vectors the platform supports.
+     */
+    private static final VectorSpecies<Byte> SPECIES = ByteVector
+            .SPECIES_PREFERRED;
+
+    /**
+     * Lanes per vector.
+     */
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Bytes checked one at a time before a run is scanned by vectors.
+     */
+    private static final int SCALAR_PROBE = 16;
+
+    /**
+     * Values of a nibble, the size of each lookup table.
+     */
+    private static final int NIBBLES = 16;
+
+    /**
+     * Mask of the low nibble of a byte.
+     */
+    private static final byte LOW_NIBBLE = 0x0F;
+
+    /**
+     * In each lane, the bit of high nibble {@code lane % 16}; 0 for the high
+     * nibbles of non-ASCII bytes.
+     */
+    private final ByteVector highBits;
+
+    /**
+     * In each lane, the bits of the high nibbles that make a separator with
+     * low nibble {@code lane % 16}.
+     */
+    private final ByteVector lowSets;
+
+    /**
+     * Handles the start of each run and tails shorter than a vector.
+     */
+    private final ScalarByteRunScanner scalar;
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separator characters
+     */
+    public VectorByteRunScanner(CharClass separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        if (LANES < NIBBLES) {
+            throw new UnsupportedOperationException(
+                    "Byte vectors of " + LANES + " lanes are too narrow");
+        }
+        final int asciiHighNibbles = 8;
+        byte[] high = new byte[LANES];
+        byte[] low = new byte[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            int nibble = lane % NIBBLES;
+            if (nibble < asciiHighNibbles) {
+                high[lane] = (byte) (1 << nibble);
+            }
+            for (int h = 0; h < asciiHighNibbles; h++) {
+                if (separators.contains((char) ((h << 4) | nibble))) {
+                    low[lane] |= (byte) (1 << h);
+                }
+            }
+        }
+        this.highBits = ByteVector.fromArray(SPECIES, high, 0);
+        this.lowSets = ByteVector.fromArray(SPECIES, low, 0);
+        this.scalar = new ScalarByteRunScanner(separators);
+    }
+
+    /**
+     * Returns the lanes of {@code v} that hold ASCII separators.
+     *
+     * @param v
+     *            the bytes
+     * @return the mask of separator lanes
+     */
+    private VectorMask<Byte> separators(ByteVector v) {
+        ByteVector low = v.and(LOW_NIBBLE);
+        ByteVector high = v.lanewise(VectorOperators.LSHR, 4).and(LOW_NIBBLE);
+        return low.selectFrom(this.lowSets)
+                .and(high.selectFrom(this.highBits))
+                .compare(VectorOperators.NE, 0);
+    }
+
+    @Override
+    public int skipSeparators(ByteBuffer bytes, int from, int to) {
+        int i = this.scalar.skipSeparators(bytes, from,
+                Math.min(to, from + SCALAR_PROBE));
+        if (i < from + SCALAR_PROBE) {
+            return i;
+        }
+        while (i + LANES <= to) {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, bytes, i,
+                    ByteOrder.nativeOrder());
+            VectorMask<Byte> stops = this.separators(v).not();
+            if (stops.anyTrue()) {
+                return i + stops.firstTrue();
+            }
+            i += LANES;
+        }
+        return this.scalar.skipSeparators(bytes, i, to);
+    }
+
+    @Override
+    public int skipWord(ByteBuffer bytes, int from, int to) {
+        int i = this.scalar.skipWord(bytes, from,
+                Math.min(to, from + SCALAR_PROBE));
+        if (i < from + SCALAR_PROBE) {
+            return i;
+        }
+        while (i + LANES <= to) {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, bytes, i,
+                    ByteOrder.nativeOrder());
+            VectorMask<Byte> stops = this.separators(v)
+                    .or(v.compare(VectorOperators.LT, 0));
+            if (stops.anyTrue()) {
+                return i + stops.firstTrue();
+            }
+            i += LANES;
+        }
+        return this.scalar.skipWord(bytes, i, to);
+    }
+}
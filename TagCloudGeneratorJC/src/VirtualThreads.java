@@ -0,0 +1,63 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates thread-per-task executors that use virtual threads when the
+ * running JDK has them (21 and later). The build targets Java 17, so the
+ * JDK 21 factory is looked up reflectively; on older JDKs the executors
+ * fall back to cached pools of daemon platform threads, which behave the
+ * same but cost a kernel thread per running task.
+ *
+ * @author Victor Ruan
+ */
+public final class VirtualThreads {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * Reports whether executors from this class use virtual threads.
+     *
+     * @return true iff the JDK supports virtual threads
+     */
+    public static boolean available() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns an executor that starts a new thread for each task.
+     *
+     * @param name
+     *            prefix of the names of platform threads, when virtual
+     *            threads are not available
+     * @return the executor; shut it down when done
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        assert name != null : "Violation of: name is not null";
+
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger next = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(task,
+                        name + "-" + next.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Table of word counts that can be updated directly from a character span,
+ * so callers do not have to build a {@code String} for every token.
+ *
+ * @author Victor Ruan
+ */
+public interface WordCounter extends WordSpanTokenizer.SpanConsumer {
+
+    /**
+     * Adds {@code count} occurrences of the word
+     * {@code text[offset, offset + length)}.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @param count
+     *            the number of occurrences to add
+     * @updates this
+     * @requires 0 <= offset <= offset + length <= |text| and length > 0 and
+     *           count > 0
+     */
+    void add(char[] text, int offset, int length, int count);
+
+    /**
+     * Adds {@code count} occurrences of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @param count
+     *            the number of occurrences to add
+     * @updates this
+     * @requires |word| > 0 and count > 0
+     */
+    void add(CharSequence word, int count);
+
+    /**
+     * Returns the number of occurrences of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @return the count of {@code word}, or 0 if it has not been added
+     */
+    int count(CharSequence word);
+
+    /**
+     * Returns the number of distinct words.
+     *
+     * @return the number of distinct words
+     */
+    int size();
+
+    /**
+     * Calls {@code action} once for every distinct word and its count, in no
+     * particular order.
+     *
+     * @param action
+     *            receives each (word, count) pair
+     */
+    void forEach(ObjIntConsumer<String> action);
+
+    /**
+     * Calls {@code action} for every word that may rank among the {@code k}
+     * most frequent, and its count; every word with a count at least that of
+     * the {@code k}-th most frequent word must be included. Tables that do
+     * not store words as {@code String}s override this to build only the
+     * candidates; by default it is {@link #forEach(ObjIntConsumer)}.
+     *
+     * @param k
+     *            the number of words being selected
+     * @param action
+     *            receives each candidate (word, count) pair
+     * @requires k >= 0
+     */
+    default void forEachCandidate(int k, ObjIntConsumer<String> action) {
+        this.forEach(action);
+    }
+
+    /**
+     * Adds one occurrence of the word {@code text[offset, offset + length)}.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     * @updates this
+     * @requires 0 <= offset <= offset + length <= |text| and length > 0
+     */
+    default void increment(char[] text, int offset, int length) {
+        this.add(text, offset, length, 1);
+    }
+
+    /**
+     * Adds one occurrence of {@code word}.
+     *
+     * @param word
+     *            the word
+     * @updates this
+     * @requires |word| > 0
+     */
+    default void increment(CharSequence word) {
+        this.add(word, 1);
+    }
+
+    /**
+     * Counts the word span reported by a tokenizer.
+     *
+     * @param text
+     *            the buffer holding the word
+     * @param offset
+     *            the index of the first character of the word
+     * @param length
+     *            the number of characters in the word
+     */
+    @Override
+    default void word(char[] text, int offset, int length) {
+        this.add(text, offset, length, 1);
+    }
+
+    /**
+     * Adds every count in {@code other} to this.
+     *
+     * @param other
+     *            the counts to merge in
+     * @updates this
+     */
+    default void addAll(WordCounter other) {
+        other.forEach(this::add);
+    }
+
+    /**
+     * Returns the counts as a {@code Map}.
+     *
+     * @return a {@code map} with word keys and count values
+     */
+    default Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>();
+        this.forEach(map::put);
+        return map;
+    }
+}
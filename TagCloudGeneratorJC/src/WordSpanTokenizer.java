@@ -0,0 +1,165 @@
+/**
+ * Splits text held in a {@code char[]} into words without allocating: each
+ * word is reported as an (offset, length) span over the caller's buffer, and
+ * separator runs are skipped without being materialized. Characters are
+ * classified by code point, so a surrogate pair is a separator or a word
+ * character as a whole, exactly as {@code Utf8WordScanner} classifies it.
+ *
+ * @author Victor Ruan
+ */
+public final class WordSpanTokenizer {
+
+    /**
+     * Receives word spans found by the tokenizer.
+     */
+    @FunctionalInterface
+    public interface SpanConsumer {
+
+        /**
+         * Accepts the word {@code text[offset, offset + length)}. The buffer
+         * may be overwritten after this call returns, so implementations
+         * must copy any characters they keep.
+         *
+         * @param text
+         *            the buffer holding the word
+         * @param offset
+         *            the index of the first character of the word
+         * @param length
+         *            the number of characters in the word
+         */
+        void word(char[] text, int offset, int length);
+    }
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private WordSpanTokenizer() {
+    }
+
+    /**
+     * Returns the code point at {@code text[pos]}, combining a surrogate pair
+     * that lies within {@code text[pos, end)}.
+     *
+     * @param text
+     *            the buffer
+     * @param pos
+     *            the index of the character
+     * @param end
+     *            the index one past the last character that may be read
+     * @return the code point, or the lone surrogate itself
+     * @requires 0 <= pos < end <= |text|
+     */
+    private static int codePointAt(char[] text, int pos, int end) {
+        char c = text[pos];
+        if (Character.isHighSurrogate(c)) {
+            return Character.codePointAt(text, pos, end);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the index of the first non-separator character in
+     * {@code text[position, end)}, or {@code end} if there is none.
+     *
+     * @param text
+     *            the buffer to scan
+     * @param position
+     *            the starting index
+     * @param end
+     *            the index one past the last character to scan
+     * @param separators
+     *            the separator characters
+     * @return the start of the next word, or {@code end}
+     * @requires 0 <= position <= end <= |text|
+     */
+    public static int skipSeparators(char[] text, int position, int end,
+            CharClass separators) {
+        int pos = position;
+        while (pos < end) {
+            int cp = codePointAt(text, pos, end);
+            if (!separators.contains(cp)) {
+                break;
+            }
+            pos += Character.charCount(cp);
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the index of the first separator character in
+     * {@code text[position, end)}, or {@code end} if there is none.
+     *
+     * @param text
+     *            the buffer to scan
+     * @param position
+     *            the starting index
+     * @param end
+     *            the index one past the last character to scan
+     * @param separators
+     *            the separator characters
+     * @return the end of the word starting at {@code position}, or {@code end}
+     * @requires 0 <= position <= end <= |text|
+     */
+    public static int wordEnd(char[] text, int position, int end,
+            CharClass separators) {
+        int pos = position;
+        while (pos < end) {
+            int cp = codePointAt(text, pos, end);
+            if (separators.contains(cp)) {
+                break;
+            }
+            pos += Character.charCount(cp);
+        }
+        return pos;
+    }
+
+    /**
+     * Reports every word in {@code text[from, to)} to {@code consumer}. If
+     * {@code endOfInput} is false, a word that runs up to {@code to} might
+     * continue in the next block of input, so it is not reported; its start
+     * index is returned instead so the caller can carry it over. So is a high
+     * surrogate at {@code to - 1}, whose low surrogate may be in the next
+     * block.
+     *
+     * @param text
+     *            the buffer to tokenize
+     * @param from
+     *            the index of the first character to tokenize
+     * @param to
+     *            the index one past the last character to tokenize
+     * @param separators
+     *            the separator characters
+     * @param endOfInput
+     *            whether {@code text[to]} is known to be a word boundary
+     * @param consumer
+     *            receives each complete word
+     * @return the start of the unreported trailing word or high surrogate,
+     *         or {@code to} if every word was reported
+     * @requires 0 <= from <= to <= |text|
+     */
+    public static int tokenize(char[] text, int from, int to,
+            CharClass separators, boolean endOfInput, SpanConsumer consumer) {
+        assert text != null : "Violation of: text is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert consumer != null : "Violation of: consumer is not null";
+        assert 0 <= from : "Violation of: 0 <= from";
+        assert from <= to : "Violation of: from <= to";
+        assert to <= text.length : "Violation of: to <= |text|";
+
+        int limit = to;
+        if (!endOfInput && limit > from
+                && Character.isHighSurrogate(text[limit - 1])) {
+            limit--;
+        }
+        int pos = skipSeparators(text, from, limit, separators);
+        while (pos < limit) {
+            int end = wordEnd(text, pos, limit, separators);
+            if (end == limit && !endOfInput) {
+                return pos;
+            }
+            consumer.word(text, pos, end - pos);
+            pos = skipSeparators(text, end, limit, separators);
+        }
+        return limit;
+    }
+}
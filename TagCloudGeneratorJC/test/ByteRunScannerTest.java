@@ -0,0 +1,167 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ByteRunScanner}: the vector and the scalar
+ * scanners must find the same run ends as a byte-at-a-time reading of the
+ * {@code CharClass}, from every start and at every buffer end, so that runs
+ * cut off in every lane of a vector and in every tail are covered.
+ *
+ * @author Victor Ruan
+ */
+public final class ByteRunScannerTest {
+
+    /**
+     * Profiles whose separators are scanned.
+     */
+    private static final String[] PROFILES = {"prose", "unicode", "log",
+        "code" };
+
+    /**
+     * Length of each input; several vectors of the widest species.
+     */
+    private static final int LENGTH = 300;
+
+    /**
+     * Returns input of long runs of separators and of word bytes, with
+     * non-ASCII bytes here and there, so that runs outlast the scalar probe
+     * and end in every lane.
+     *
+     * @param separators
+     *            the separator characters
+     * @param seed
+     *            the random seed
+     * @return the input
+     */
+    private static byte[] runs(CharClass separators, long seed) {
+        Random random = new Random(seed);
+        byte[] bytes = new byte[LENGTH];
+        int i = 0;
+        boolean separator = false;
+        while (i < bytes.length) {
+            int end = Math.min(bytes.length, i + random.nextInt(100));
+            for (; i < end; i++) {
+                int b;
+                do {
+                    b = random.nextInt(128);
+                } while (separators.contains((char) b) != separator);
+                bytes[i] = (byte) b;
+            }
+            if (i < bytes.length && random.nextInt(4) == 0) {
+                bytes[i++] = (byte) (0x80 | random.nextInt(128));
+            }
+            separator = !separator;
+        }
+        return bytes;
+    }
+
+    /**
+     * Reference {@code skipSeparators}.
+     *
+     * @param separators
+     *            the separator characters
+     * @param bytes
+     *            the input
+     * @param from
+     *            the index of the first byte to examine
+     * @param to
+     *            the index one past the last byte to examine
+     * @return the end of the run of separators starting at {@code from}
+     */
+    private static int skipSeparators(CharClass separators, ByteBuffer bytes,
+            int from, int to) {
+        int i = from;
+        while (i < to && bytes.get(i) >= 0
+                && separators.contains((char) bytes.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Reference {@code skipWord}.
+     *
+     * @param separators
+     *            the separator characters
+     * @param bytes
+     *            the input
+     * @param from
+     *            the index of the first byte to examine
+     * @param to
+     *            the index one past the last byte to examine
+     * @return the end of the run of ASCII word bytes starting at
+     *         {@code from}
+     */
+    private static int skipWord(CharClass separators, ByteBuffer bytes,
+            int from, int to) {
+        int i = from;
+        while (i < to && bytes.get(i) >= 0
+                && !separators.contains((char) bytes.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks {@code scanner} against the reference on every range of the
+     * inputs, in heap and direct buffers.
+     *
+     * @param vector
+     *            whether to check the vector scanner rather than the scalar
+     *            one
+     */
+    private static void assertScansEveryRange(boolean vector) {
+        for (String name : PROFILES) {
+            CharClass separators = TokenizerProfile.forName(name)
+                    .separators();
+            ByteRunScanner scanner = vector ? ByteRunScanner.of(separators)
+                    : new ScalarByteRunScanner(separators);
+            for (long seed = 0; seed < 4; seed++) {
+                byte[] input = runs(separators, seed);
+                ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+                direct.put(input);
+                for (ByteBuffer bytes : new ByteBuffer[] {
+                    ByteBuffer.wrap(input), direct }) {
+                    for (int from = 0; from <= input.length; from++) {
+                        for (int to = from; to <= input.length; to++) {
+                            String range = name + " seed " + seed + " ["
+                                    + from + ", " + to + ")";
+                            assertEquals(range,
+                                    skipSeparators(separators, bytes, from,
+                                            to),
+                                    scanner.skipSeparators(bytes, from, to));
+                            assertEquals(range,
+                                    skipWord(separators, bytes, from, to),
+                                    scanner.skipWord(bytes, from, to));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The scalar scanner finds every run end.
+     */
+    @Test
+    public void testScalar() {
+        assertScansEveryRange(false);
+    }
+
+    /**
+     * The vector scanner finds every run end. Skipped when the JVM runs
+     * without {@code --add-modules jdk.incubator.vector}.
+     */
+    @Test
+    public void testVector() {
+        assumeFalse("jdk.incubator.vector is not loaded",
+                ByteRunScanner.of(TokenizerProfile.PROSE
+                        .separators()) instanceof ScalarByteRunScanner);
+        assertScansEveryRange(true);
+    }
+}
@@ -0,0 +1,156 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ConcurrentWordCounter}: once every producer
+ * has flushed, the counts of words added from many threads at once must
+ * equal the counts of the same words added on one thread, whether they
+ * reached their segments by eviction, by the flush threshold or by
+ * {@code flush()}.
+ *
+ * @author Victor Ruan
+ */
+public final class ConcurrentWordCounterTest {
+
+    /**
+     * Number of producer threads.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Words each producer adds.
+     */
+    private static final int WORDS_PER_THREAD = 50_000;
+
+    /**
+     * Distinct words; far more than a thread buffers, so buffered words are
+     * evicted.
+     */
+    private static final int VOCABULARY = 2_000;
+
+    /**
+     * Returns the words producer {@code thread} adds: a few heavy hitters
+     * that pass the flush threshold, and a long tail.
+     *
+     * @param thread
+     *            the producer
+     * @return its words
+     */
+    private static String[] words(int thread) {
+        Random random = new Random(thread);
+        String[] words = new String[WORDS_PER_THREAD];
+        for (int i = 0; i < words.length; i++) {
+            if (random.nextBoolean()) {
+                words[i] = "the";
+            } else if (random.nextInt(4) == 0) {
+                words[i] = "and";
+            } else {
+                words[i] = "w" + random.nextInt(VOCABULARY);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Counts added from many threads equal the sequential counts.
+     *
+     * @throws Exception
+     *             if a producer fails
+     */
+    @Test
+    public void testConcurrentMatchesSequential() throws Exception {
+        HashWordCounter expected = new HashWordCounter();
+        for (int t = 0; t < THREADS; t++) {
+            for (String word : words(t)) {
+                expected.increment(word);
+            }
+        }
+
+        ConcurrentWordCounter counter = new ConcurrentWordCounter(4);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> producers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String[] words = words(t);
+                boolean chars = t % 2 == 0;
+                Callable<Void> producer = () -> {
+                    start.await();
+                    for (String word : words) {
+                        // Half the producers add through the char[] path
+                        if (chars) {
+                            char[] text = (" " + word).toCharArray();
+                            counter.add(text, 1, word.length(), 1);
+                        } else {
+                            counter.increment(word);
+                        }
+                    }
+                    counter.flush();
+                    return null;
+                };
+                producers.add(pool.submit(producer));
+            }
+            for (Future<Void> producer : producers) {
+                producer.get();
+            }
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(expected.size(), counter.size());
+        assertEquals(expected.toMap(), counter.toMap());
+        assertEquals(expected.toMap(), counter.snapshot().toMap());
+        assertEquals(expected.count("the"), counter.count("the"));
+    }
+
+    /**
+     * Buffered counts are seen by the thread that buffered them, and by
+     * readers only once flushed.
+     */
+    @Test
+    public void testFlush() {
+        ConcurrentWordCounter counter = new ConcurrentWordCounter(1);
+        counter.add("cloud", 3);
+        assertEquals(3, counter.count("cloud"));
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.snapshot().size());
+
+        counter.flush();
+        assertEquals(3, counter.count("cloud"));
+        assertEquals(1, counter.size());
+        assertEquals(3, counter.snapshot().count("cloud"));
+
+        counter.flush();
+        assertEquals(3, counter.count("cloud"));
+    }
+
+    /**
+     * Merged counts go straight to the segments and add to buffered ones.
+     */
+    @Test
+    public void testAddAll() {
+        HashWordCounter other = new HashWordCounter();
+        other.add("tag", 2);
+        other.add("cloud", 5);
+        ConcurrentWordCounter counter = new ConcurrentWordCounter();
+        counter.increment("tag");
+        counter.addAll(other);
+        assertEquals(5, counter.snapshot().count("cloud"));
+        assertEquals(3, counter.count("tag"));
+        counter.flush();
+        assertEquals(3, counter.snapshot().count("tag"));
+    }
+}
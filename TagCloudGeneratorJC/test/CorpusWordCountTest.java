@@ -0,0 +1,128 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CorpusWordCount}: counting a directory on
+ * many workers must give the sum of the counts of its files, each counted
+ * alone on one thread.
+ *
+ * @author Victor Ruan
+ */
+public final class CorpusWordCountTest {
+
+    /**
+     * Files in the corpus; many more than the workers counting them.
+     */
+    private static final int FILES = 120;
+
+    /**
+     * The corpus directory.
+     */
+    private Path dir;
+
+    /**
+     * Creates the corpus directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        this.dir = Files.createTempDirectory("tagcloud-test");
+    }
+
+    /**
+     * Deletes the corpus directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            for (Path path : (Iterable<Path>) paths
+                    .sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Writes the corpus, half of it in a subdirectory, and returns the sum
+     * of the counts of its files.
+     *
+     * @return the expected counts
+     * @throws IOException
+     *             if a file cannot be written or read
+     */
+    private WordCounter writeCorpus() throws IOException {
+        Path sub = Files.createDirectory(this.dir.resolve("sub"));
+        Random random = new Random(FILES);
+        WordCounter expected = new HashWordCounter();
+        for (int f = 0; f < FILES; f++) {
+            StringBuilder text = new StringBuilder();
+            int words = random.nextInt(3000);
+            for (int w = 0; w < words; w++) {
+                text.append(random.nextBoolean() ? "the"
+                        : "w" + random.nextInt(500));
+                text.append(random.nextInt(8) == 0 ? ".\n" : " ");
+            }
+            Path file = (f % 2 == 0 ? this.dir : sub).resolve(f + ".txt");
+            Files.write(file,
+                    text.toString().getBytes(StandardCharsets.UTF_8));
+            expected.addAll(MappedWordCount.countWords(file));
+        }
+        return expected;
+    }
+
+    /**
+     * The corpus counts are the sums of the file counts.
+     *
+     * @throws IOException
+     *             if the corpus cannot be written or read
+     */
+    @Test
+    public void testSumsFileCounts() throws IOException {
+        WordCounter expected = this.writeCorpus();
+        WordCounter counted = CorpusWordCount.countWords(this.dir,
+                TokenizerProfile.PROSE.separators(), 4,
+                new ConcurrentWordCounter());
+        assertEquals(expected.toMap(), counted.toMap());
+    }
+
+    /**
+     * A single worker counts every file.
+     *
+     * @throws IOException
+     *             if the corpus cannot be written or read
+     */
+    @Test
+    public void testOneWorker() throws IOException {
+        WordCounter expected = this.writeCorpus();
+        WordCounter counted = CorpusWordCount.countWords(this.dir,
+                TokenizerProfile.PROSE.separators(), 1,
+                new ConcurrentWordCounter());
+        assertEquals(expected.toMap(), counted.toMap());
+    }
+
+    /**
+     * A missing directory is reported.
+     */
+    @Test
+    public void testMissingDirectory() {
+        assertThrows(IOException.class, () -> CorpusWordCount
+                .countWords(this.dir.resolve("missing")));
+    }
+}
@@ -0,0 +1,248 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CountSnapshot}: a saved snapshot must load
+ * as the counts it was saved from, and a corrupt or truncated one must be
+ * rejected with an {@code IOException} rather than loaded as wrong counts.
+ *
+ * @author Victor Ruan
+ */
+public final class CountSnapshotTest {
+
+    /**
+     * Bytes before the number of words: the magic number and the key.
+     */
+    private static final int HEADER_BYTES = 4 + 32;
+
+    /**
+     * Directory the snapshots are kept in.
+     */
+    private Path dir;
+
+    /**
+     * The snapshot of each test.
+     */
+    private Path file;
+
+    /**
+     * A key.
+     */
+    private byte[] key;
+
+    /**
+     * Creates the snapshot directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        this.dir = Files.createTempDirectory("tagcloud-test");
+        this.key = new byte[32];
+        Arrays.fill(this.key, (byte) 0x5A);
+        this.file = CountSnapshot.location(this.dir, this.key);
+    }
+
+    /**
+     * Deletes the snapshot directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            for (Path path : (Iterable<Path>) paths
+                    .sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Returns counts that exercise the front coding: shared prefixes, a
+     * long word, non-ASCII and supplementary characters, and counts that
+     * take one to five varint bytes.
+     *
+     * @return the counts
+     */
+    private static WordCounter sample() {
+        WordCounter counts = new HashWordCounter();
+        counts.add("a", 1);
+        counts.add("ab", 127);
+        counts.add("abc", 128);
+        counts.add("abd", 1 << 14);
+        counts.add("b", 1 << 21);
+        counts.add("\u00E9t\u00E9", 1 << 28);
+        counts.add("\uD835\uDC00x", Integer.MAX_VALUE);
+        counts.add("x".repeat(1000), 3);
+        return counts;
+    }
+
+    /**
+     * Saves {@code sample()} and returns the snapshot's bytes.
+     *
+     * @return the saved bytes
+     * @throws IOException
+     *             if the snapshot cannot be written or read
+     */
+    private byte[] saveSample() throws IOException {
+        CountSnapshot.save(this.file, this.key, sample());
+        return Files.readAllBytes(this.file);
+    }
+
+    /**
+     * Checks that loading {@code bytes} as a snapshot fails.
+     *
+     * @param bytes
+     *            the snapshot's contents
+     * @return the failure
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    private IOException assertRejected(byte[] bytes) throws IOException {
+        Files.write(this.file, bytes);
+        return assertThrows(IOException.class,
+                () -> CountSnapshot.load(this.file, this.key));
+    }
+
+    /**
+     * Saved counts load back unchanged.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written or read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        this.saveSample();
+        assertEquals(sample().toMap(),
+                CountSnapshot.load(this.file, this.key).toMap());
+    }
+
+    /**
+     * An empty table loads back empty.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written or read
+     */
+    @Test
+    public void testEmptyRoundTrip() throws IOException {
+        CountSnapshot.save(this.file, this.key, new HashWordCounter());
+        assertEquals(0, CountSnapshot.load(this.file, this.key).size());
+    }
+
+    /**
+     * A missing snapshot, another key or another format is not loaded.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written or read
+     */
+    @Test
+    public void testNoMatchingSnapshot() throws IOException {
+        assertNull(CountSnapshot.load(this.file, this.key));
+
+        byte[] bytes = this.saveSample();
+        byte[] otherKey = this.key.clone();
+        otherKey[31] ^= 1;
+        assertNull(CountSnapshot.load(this.file, otherKey));
+
+        bytes[0] ^= 1;
+        Files.write(this.file, bytes);
+        assertNull(CountSnapshot.load(this.file, this.key));
+    }
+
+    /**
+     * Every truncation of a snapshot is rejected.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] bytes = this.saveSample();
+        for (int length = 0; length < bytes.length; length++) {
+            this.assertRejected(Arrays.copyOf(bytes, length));
+        }
+    }
+
+    /**
+     * Fields that cannot come from {@code save} are rejected.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    @Test
+    public void testCorrupt() throws IOException {
+        CountSnapshot.save(this.file, this.key, new HashWordCounter());
+        byte[] header = Arrays.copyOf(Files.readAllBytes(this.file),
+                HEADER_BYTES);
+        // Number of words, shared prefix, remaining chars, chars, count
+        byte[][] bodies = {
+            // More words than the file could hold
+            {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0, 1, 'a', 1 },
+            // A varint longer than five bytes
+            {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                0x01 },
+            // A prefix shared with a previous word that is not there
+            {1, 1, 1, 'a', 1 },
+            // An empty word
+            {1, 0, 0, 1 },
+            // A char past U+FFFF
+            {1, 0, 1, (byte) 0x80, (byte) 0x80, 0x04, 1 },
+            // A zero count
+            {1, 0, 1, 'a', 0 },
+            // A word longer than the file
+            {1, 0, 0x7F, 'a', 1 },
+        };
+        for (byte[] body : bodies) {
+            byte[] bytes = Arrays.copyOf(header, HEADER_BYTES + body.length);
+            System.arraycopy(body, 0, bytes, HEADER_BYTES, body.length);
+            // Found corrupt, not just cut short
+            String message = this.assertRejected(bytes).getMessage();
+            assertTrue(message, message.startsWith("Corrupt snapshot"));
+        }
+    }
+
+    /**
+     * A corrupt snapshot is replaced by a fresh count of the input.
+     *
+     * @throws IOException
+     *             if the input or a snapshot cannot be read or written
+     */
+    @Test
+    public void testCountWordsRebuildsCorrupt() throws IOException {
+        Path input = this.dir.resolve("input.txt");
+        Files.write(input, "to be or not to be\n"
+                .getBytes(StandardCharsets.UTF_8));
+        WordCounter counted = CountSnapshot.countWords(input, this.dir);
+        assertEquals(2, counted.count("be"));
+
+        byte[] inputKey = CountSnapshot.key(input,
+                TokenizerProfile.PROSE.spec());
+        Path snapshot = CountSnapshot.location(this.dir, inputKey);
+        byte[] saved = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(saved, saved.length - 1));
+
+        assertEquals(counted.toMap(),
+                CountSnapshot.countWords(input, this.dir).toMap());
+        assertArrayEquals(saved, Files.readAllBytes(snapshot));
+        assertNotNull(CountSnapshot.load(snapshot, inputKey));
+    }
+}
@@ -0,0 +1,170 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ParallelWordCount}: its counts must equal
+ * those of {@code MappedWordCount}, the sequential path, on every profile.
+ *
+ * @author Victor Ruan
+ */
+public final class ParallelWordCountTest {
+
+    /**
+     * Malformed UTF-8 (a truncated three-byte sequence) and a supplementary
+     * letter (U+10330 GOTHIC LETTER AHSA).
+     */
+    private static final byte[] MIXED = {'a', 'b', (byte) 0xE2, (byte) 0x82,
+        'c', ' ', 'x', (byte) 0xF0, (byte) 0x90, (byte) 0x8C, (byte) 0xB0,
+        'z', ' ' };
+
+    /**
+     * Profiles every test is run with.
+     */
+    private static final String[] PROFILES = {"prose", "unicode", "log",
+        "code" };
+
+    /**
+     * Pool the chunks are counted on.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * The input file of each test.
+     */
+    private Path file;
+
+    /**
+     * Starts the pool.
+     */
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    /**
+     * Stops the pool.
+     */
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Creates the input file.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Before
+    public void createFile() throws IOException {
+        this.file = Files.createTempFile("tagcloud-test", ".txt");
+    }
+
+    /**
+     * Deletes the input file.
+     *
+     * @throws IOException
+     *             if the file cannot be deleted
+     */
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Checks that both paths count {@code file} the same under every
+     * profile.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private void assertSameCounts() throws IOException {
+        for (String name : PROFILES) {
+            CharClass separators = TokenizerProfile.forName(name)
+                    .separators();
+            Map<String, Integer> sequential = MappedWordCount
+                    .countWords(this.file, separators,
+                            MappedWordCount.DEFAULT_WINDOW_BYTES,
+                            new Utf8WordCounter())
+                    .toMap();
+            Map<String, Integer> parallel = ParallelWordCount
+                    .countWords(this.file, separators, pool).toMap();
+            assertEquals(name, sequential, parallel);
+        }
+    }
+
+    /**
+     * Empty file.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        this.assertSameCounts();
+    }
+
+    /**
+     * One U+FFFD per malformed byte, and a supplementary letter kept whole.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testMalformedAndSupplementary() throws IOException {
+        Files.write(this.file, MIXED);
+        this.assertSameCounts();
+
+        Map<String, Integer> counts = ParallelWordCount.countWords(this.file,
+                TokenizerProfile.forName("prose").separators(), pool).toMap();
+        assertEquals(Integer.valueOf(1), counts.get("ab\uFFFD\uFFFDc"));
+        assertEquals(Integer.valueOf(1), counts.get("x\uD800\uDF30z"));
+    }
+
+    /**
+     * A file large enough to be split into several chunks, with malformed
+     * and supplementary input around the chunk boundaries.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testManyChunks() throws IOException {
+        final int lines = 200_000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < lines; i++) {
+            out.write(MIXED, 0, MIXED.length);
+            out.writeBytes(("w" + (i % 1000) + " caf\u00E9, \uD83D\uDE00\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(this.file, out.toByteArray());
+        this.assertSameCounts();
+    }
+
+    /**
+     * A word longer than the read buffer.
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testLongWord() throws IOException {
+        final int length = 200_000;
+        Files.writeString(this.file, "a ".repeat(10) + "b".repeat(length)
+                + " a", StandardCharsets.UTF_8);
+        this.assertSameCounts();
+    }
+}
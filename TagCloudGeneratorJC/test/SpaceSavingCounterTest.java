@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code SpaceSavingCounter}: it must count exactly
+ * while it has room, evict the word with the smallest count when it is
+ * full, and keep every true count within the bounds it reports.
+ *
+ * @author Victor Ruan
+ */
+public final class SpaceSavingCounterTest {
+
+    /**
+     * Below capacity every count is exact.
+     */
+    @Test
+    public void testExactBelowCapacity() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(4);
+        counter.add("tag", 2);
+        counter.increment("cloud");
+        counter.increment("tag");
+        assertEquals(2, counter.size());
+        assertEquals(3, counter.count("tag"));
+        assertEquals(0, counter.error("tag"));
+        assertEquals(0, counter.minCount());
+        assertEquals(4, counter.totalCount());
+        assertEquals(0, counter.count("absent"));
+    }
+
+    /**
+     * A new word replaces the word with the smallest count and inherits
+     * that count as its error.
+     */
+    @Test
+    public void testEviction() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(2);
+        counter.add("a", 3);
+        counter.add("b", 1);
+        counter.increment("c");
+
+        assertEquals(2, counter.size());
+        assertEquals(3, counter.count("a"));
+        assertEquals(0, counter.error("a"));
+        assertEquals(2, counter.count("c"));
+        assertEquals(1, counter.error("c"));
+        assertEquals(0, counter.count("b"));
+        assertEquals(2, counter.minCount());
+        assertEquals(counter.minCount(), counter.error("b"));
+
+        // "c" now has the smallest count, so it is the next one replaced
+        counter.add("d", 5);
+        assertEquals(0, counter.count("c"));
+        assertEquals(7, counter.count("d"));
+        assertEquals(2, counter.error("d"));
+        assertEquals(3, counter.count("a"));
+    }
+
+    /**
+     * On a skewed stream far larger than the capacity, every reported count
+     * bounds the true count from above within its error, and every word
+     * with a true count above {@code minCount()} is monitored.
+     */
+    @Test
+    public void testErrorBounds() {
+        final int capacity = 50;
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(capacity);
+        final int stream = 100_000;
+        for (int i = 0; i < stream; i++) {
+            // Roughly Zipfian over a thousand words
+            String word = "w" + (int) Math.pow(1000, random.nextDouble());
+            exact.merge(word, 1, Integer::sum);
+            if (i % 2 == 0) {
+                counter.increment(word);
+            } else {
+                char[] text = (word + " ").toCharArray();
+                counter.add(text, 0, word.length(), 1);
+            }
+        }
+
+        assertEquals(capacity, counter.size());
+        assertEquals(stream, counter.totalCount());
+        int minCount = counter.minCount();
+        assertTrue(minCount <= stream / capacity);
+        counter.forEachWithError((word, count, error) -> {
+            int truth = exact.get(word);
+            assertEquals(counter.count(word), count);
+            assertEquals(counter.error(word), error);
+            assertTrue(word, count - error <= truth && truth <= count);
+        });
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            if (counter.count(entry.getKey()) == 0) {
+                assertTrue(entry.getKey(), entry.getValue() <= minCount);
+            }
+        }
+        // The heaviest hitter is never evicted
+        assertTrue(counter.count("w1") >= exact.get("w1"));
+    }
+}
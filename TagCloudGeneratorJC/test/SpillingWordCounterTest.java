@@ -0,0 +1,208 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code SpillingWordCounter}: merging its runs must
+ * give the counts of an in-memory {@code HashWordCounter}, however the words
+ * were spilled, and merging the runs at the fan-in limit must not lose or
+ * leave behind anything.
+ *
+ * @author Victor Ruan
+ */
+public final class SpillingWordCounterTest {
+
+    /**
+     * A budget every new word exceeds, so each one is spilled alone.
+     */
+    private static final long SPILL_EVERY_WORD = 1;
+
+    /**
+     * A budget of about a dozen words.
+     */
+    private static final long SMALL_BUDGET = 1200;
+
+    /**
+     * Runs merged at once; {@code SpillingWordCounter.MAX_RUNS}.
+     */
+    private static final int FAN_IN = 64;
+
+    /**
+     * Directory the runs are written to.
+     */
+    private Path dir;
+
+    /**
+     * Creates the run directory.
+     *
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        this.dir = Files.createTempDirectory("tagcloud-test");
+    }
+
+    /**
+     * Deletes the run directory, which closing each counter must have
+     * emptied.
+     *
+     * @throws IOException
+     *             if the directory cannot be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.delete(this.dir);
+    }
+
+    /**
+     * Returns the number of files in the run directory.
+     *
+     * @return the number of files
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(this.dir)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Returns the words of {@code counter} in the order it visits them.
+     *
+     * @param counter
+     *            the counter
+     * @return its words
+     */
+    private static List<String> words(WordCounter counter) {
+        List<String> words = new ArrayList<>();
+        counter.forEach((word, count) -> words.add(word));
+        return words;
+    }
+
+    /**
+     * A counter under its budget keeps everything in memory.
+     *
+     * @throws IOException
+     *             if the counter cannot be closed
+     */
+    @Test
+    public void testInMemory() throws IOException {
+        HashWordCounter expected = new HashWordCounter();
+        try (SpillingWordCounter counter = new SpillingWordCounter(1 << 20,
+                this.dir)) {
+            for (String word : "the cat and the hat".split(" ")) {
+                counter.increment(word);
+                expected.increment(word);
+            }
+            assertEquals(0, counter.runs());
+            assertEquals(0, this.files());
+            assertEquals(expected.toMap(), counter.toMap());
+            assertEquals(2, counter.count("the"));
+        }
+    }
+
+    /**
+     * Counts of one word spread over many runs are summed, and the merged
+     * words come in {@code String} order.
+     *
+     * @throws IOException
+     *             if the counter cannot be closed
+     */
+    @Test
+    public void testMergeSumsRuns() throws IOException {
+        HashWordCounter expected = new HashWordCounter();
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                SMALL_BUDGET, this.dir)) {
+            for (int i = 0; i < 500; i++) {
+                String word = "w" + (i * 7 % 31);
+                counter.add(word, i % 3 + 1);
+                expected.add(word, i % 3 + 1);
+            }
+            assertTrue(counter.runs() > 1);
+            assertEquals(counter.runs(), this.files());
+            assertEquals(expected.size(), counter.size());
+            assertEquals(expected.toMap(), counter.toMap());
+            assertEquals(expected.count("w0"), counter.count("w0"));
+            assertEquals(0, counter.count("absent"));
+
+            List<String> words = words(counter);
+            List<String> sorted = new ArrayList<>(words);
+            sorted.sort(null);
+            assertEquals(sorted, words);
+        }
+        assertEquals(0, this.files());
+    }
+
+    /**
+     * Words of other lengths, sharing prefixes and past the BMP survive the
+     * front coding of a run.
+     *
+     * @throws IOException
+     *             if the counter cannot be closed
+     */
+    @Test
+    public void testFrontCoding() throws IOException {
+        String[] words = {"a", "ab", "abc", "abd", "b", "\u00E9t\u00E9",
+            "\uD835\uDC00x", "\uD835\uDC00y", "a".repeat(300) };
+        HashWordCounter expected = new HashWordCounter();
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                SPILL_EVERY_WORD, this.dir)) {
+            for (int i = 0; i < words.length; i++) {
+                counter.add(words[i], 1000 * i + 1);
+                expected.add(words[i], 1000 * i + 1);
+            }
+            assertEquals(expected.toMap(), counter.toMap());
+        }
+    }
+
+    /**
+     * The runs are merged into one when the fan-in limit is reached, and
+     * the merged run still holds every count.
+     *
+     * @throws IOException
+     *             if the counter cannot be closed
+     */
+    @Test
+    public void testCompactionAtFanIn() throws IOException {
+        HashWordCounter expected = new HashWordCounter();
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                SPILL_EVERY_WORD, this.dir)) {
+            for (int i = 0; i < FAN_IN - 1; i++) {
+                String word = "w" + i % 10;
+                counter.increment(word);
+                expected.increment(word);
+            }
+            assertEquals(FAN_IN - 1, counter.runs());
+            assertEquals(FAN_IN - 1, this.files());
+
+            counter.increment("last");
+            expected.increment("last");
+            assertEquals(1, counter.runs());
+            assertEquals(1, this.files());
+            assertEquals(expected.toMap(), counter.toMap());
+
+            // Runs after a merge are merged with it the next time
+            for (int i = 0; i < 3 * FAN_IN; i++) {
+                String word = "v" + i % 50;
+                counter.add(word, i + 1);
+                expected.add(word, i + 1);
+            }
+            assertTrue(counter.runs() < FAN_IN);
+            assertEquals(counter.runs(), this.files());
+            assertEquals(expected.toMap(), counter.toMap());
+        }
+        assertEquals(0, this.files());
+    }
+}
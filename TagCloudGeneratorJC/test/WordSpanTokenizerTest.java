@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code WordSpanTokenizer}: it must split text into
+ * the same words as {@code Utf8WordScanner} splits its UTF-8 encoding.
+ *
+ * @author Victor Ruan
+ */
+public final class WordSpanTokenizerTest {
+
+    /**
+     * Profiles every test is run with.
+     */
+    private static final String[] PROFILES = {"prose", "unicode", "log",
+        "code" };
+
+    /**
+     * Gothic and CJK Extension B letters, an emoji and a supplementary
+     * digit, next to ASCII and BMP words.
+     */
+    private static final String SUPPLEMENTARY = "x\uD800\uDF30z \uD800\uDF30"
+            + " caf\u00E9 \uD840\uDC00\uD840\uDC01, a\uD83D\uDE00b"
+            + " n\uD835\uDFCE_1 \uD83D\uDE00 end";
+
+    /**
+     * Checks that both tokenizers count {@code text} the same under every
+     * profile.
+     *
+     * @param text
+     *            the text
+     */
+    private static void assertSameWords(String text) {
+        for (String name : PROFILES) {
+            CharClass separators = TokenizerProfile.forName(name)
+                    .separators();
+            WordCounter chars = new HashWordCounter();
+            char[] buffer = text.toCharArray();
+            WordSpanTokenizer.tokenize(buffer, 0, buffer.length, separators,
+                    true, chars);
+            WordCounter bytes = new Utf8WordCounter();
+            ByteBuffer utf8 = ByteBuffer
+                    .wrap(text.getBytes(StandardCharsets.UTF_8));
+            new Utf8WordScanner(separators).scan(utf8, 0, utf8.limit(), true,
+                    bytes);
+            assertEquals(name, bytes.toMap(), chars.toMap());
+        }
+    }
+
+    /**
+     * Supplementary letters, digits and symbols.
+     */
+    @Test
+    public void testSupplementary() {
+        assertSameWords(SUPPLEMENTARY);
+    }
+
+    /**
+     * A supplementary letter is one word character under the unicode
+     * profile.
+     */
+    @Test
+    public void testSupplementaryLetterKeptWhole() {
+        WordCounter counter = new HashWordCounter();
+        char[] text = "x\uD800\uDF30z".toCharArray();
+        WordSpanTokenizer.tokenize(text, 0, text.length,
+                TokenizerProfile.forName("unicode").separators(), true,
+                counter);
+        assertEquals(1, counter.size());
+        assertEquals(1, counter.count("x\uD800\uDF30z"));
+    }
+
+    /**
+     * A high surrogate at the end of a block is carried over with the word
+     * before it.
+     */
+    @Test
+    public void testHighSurrogateAtBlockEnd() {
+        CharClass separators = TokenizerProfile.forName("unicode")
+                .separators();
+        WordCounter counter = new HashWordCounter();
+        char[] text = "ab x\uD800\uDF30z".toCharArray();
+        int split = "ab x\uD800".length();
+        int carry = WordSpanTokenizer.tokenize(text, 0, split, separators,
+                false, counter);
+        assertEquals("ab ".length(), carry);
+        WordSpanTokenizer.tokenize(text, carry, text.length, separators, true,
+                counter);
+        assertEquals(1, counter.count("ab"));
+        assertEquals(1, counter.count("x\uD800\uDF30z"));
+        assertEquals(2, counter.size());
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import tagcloud.bench.Workload;
+
+/**
+ * Binds the benchmark {@code Workload} to the tag cloud generator.
+ *
+ * @author Victor Ruan
+ */
+public final class TagCloudWorkload implements Workload {
+
+    /**
+     * Separators as the original boxed set.
+     */
+    private final Set<Character> separatorSet = new HashSet<>();
+
+    /**
+     * Separators as a compiled class.
+     */
+    private final CharClass separatorClass = CharClass
+            .of(TagCloudGeneratorJC.DEFAULT_SEPARATORS);
+
+    /**
+     * Constructor.
+     */
+    public TagCloudWorkload() {
+        TagCloudGeneratorJC.generateElements(
+                TagCloudGeneratorJC.DEFAULT_SEPARATORS, this.separatorSet);
+    }
+
+    @Override
+    public int scanWithSet(String text) {
+        int tokens = 0;
+        int pos = 0;
+        while (pos < text.length()) {
+            pos += TagCloudGeneratorJC
+                    .nextWordOrSeparator(text, pos, this.separatorSet)
+                    .length();
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Override
+    public int scanWithCharClass(String text) {
+        int tokens = 0;
+        int pos = 0;
+        while (pos < text.length()) {
+            pos += TagCloudGeneratorJC
+                    .nextWordOrSeparator(text, pos, this.separatorClass)
+                    .length();
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Override
+    public int scanSpans(char[] text) {
+        int[] words = new int[1];
+        WordSpanTokenizer.tokenize(text, 0, text.length, this.separatorClass,
+                true, (buffer, offset, length) -> words[0]++);
+        return words[0];
+    }
+
+    @Override
+    public Object mapWithWordCount(String text) throws IOException {
+        return TagCloudGeneratorJC
+                .mapWithWordCount(new BufferedReader(new StringReader(text)));
+    }
+
+    @Override
+    public Object countWords(String text) throws IOException {
+        return TagCloudGeneratorJC
+                .countWords(new BufferedReader(new StringReader(text)));
+    }
+
+    @Override
+    public int[] topCounts(Object counts, int k) {
+        List<Entry<String, Integer>> top = TopKSelector
+                .select((WordCounter) counts, k);
+        int[] result = new int[top.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = top.get(i).getValue();
+        }
+        return result;
+    }
+
+    @Override
+    public int fontSizes(int[] counts, int largestCount) {
+        int checksum = 0;
+        for (int count : counts) {
+            checksum += TagCloudGeneratorJC.getFontSize(count, largestCount)
+                    .hashCode();
+        }
+        return checksum;
+    }
+
+    @Override
+    public int fontSizes(int[] counts, int largestCount, String scale) {
+        FontScale curve = FontScale.valueOf(scale);
+        int checksum = 0;
+        for (int count : counts) {
+            checksum += curve.className(count, largestCount).hashCode();
+        }
+        return checksum;
+    }
+
+    @Override
+    public void generatePage(Object counts, int numOfWords, Writer out) {
+        PrintWriter page = new PrintWriter(out);
+        TagCloudGeneratorJC.generatePage((WordCounter) counts, numOfWords,
+                "benchmark", null, page);
+        page.flush();
+    }
+
+    @Override
+    public void renderPage(Object counts, int numOfWords, String format,
+            WritableByteChannel out) throws IOException {
+        TagCloudGeneratorJC.generatePage((WordCounter) counts, numOfWords,
+                "benchmark", out, FontScale.LINEAR,
+                TagCloudRenderer.forName(format));
+    }
+
+    @Override
+    public Object newSharedCounter(String kind) {
+        if ("striped".equals(kind)) {
+            return new ConcurrentWordCounter();
+        }
+        return new HashWordCounter();
+    }
+
+    @Override
+    public void incrementAll(Object counter, char[][] words) {
+        if (counter instanceof ConcurrentWordCounter) {
+            ConcurrentWordCounter striped = (ConcurrentWordCounter) counter;
+            for (char[] word : words) {
+                striped.increment(word, 0, word.length);
+            }
+            striped.flush();
+        } else {
+            WordCounter locked = (WordCounter) counter;
+            for (char[] word : words) {
+                synchronized (locked) {
+                    locked.increment(word, 0, word.length);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object countUtf8(ByteBuffer utf8, String table) {
+        WordCounter counts = new HashWordCounter();
+        if ("bytes".equals(table)) {
+            counts = new Utf8WordCounter();
+        } else if ("folded".equals(table)) {
+            counts = new FoldingWordCounter();
+        }
+        new Utf8WordScanner(this.separatorClass).scan(utf8, utf8.position(),
+                utf8.limit(), true, counts);
+        return counts;
+    }
+
+    @Override
+    public Object newByteRunScanner(String kind) {
+        if ("vector".equals(kind)) {
+            return ByteRunScanner.of(this.separatorClass);
+        }
+        return new ScalarByteRunScanner(this.separatorClass);
+    }
+
+    @Override
+    public int skipRuns(Object scanner, ByteBuffer bytes) {
+        ByteRunScanner runs = (ByteRunScanner) scanner;
+        int tokens = 0;
+        int i = bytes.position();
+        int to = bytes.limit();
+        while (i < to) {
+            int end = runs.skipSeparators(bytes, i, to);
+            if (end == i) {
+                end = runs.skipWord(bytes, i, to);
+                if (end == i) {
+                    end = i + 1;
+                }
+            }
+            i = end;
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Override
+    public Object countFile(Path file, String mode) throws IOException {
+        if ("parallel".equals(mode)) {
+            return ParallelWordCount.countWords(file);
+        }
+        // The byte path the generator counts a UTF-8 file with on one thread
+        return MappedWordCount.countWords(file);
+    }
+
+    @Override
+    public boolean sameCounts(Object counts, Object other) {
+        return ((WordCounter) counts).toMap()
+                .equals(((WordCounter) other).toMap());
+    }
+}
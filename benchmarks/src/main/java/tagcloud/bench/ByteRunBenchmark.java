@@ -0,0 +1,59 @@
+package tagcloud.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Finding word boundaries in UTF-8 bytes a run at a time: the table-driven
+ * scalar {@code ByteRunScanner} against the Vector API one. The corpus is
+ * copied into a direct buffer, as {@code MappedWordCount} sees a mapped
+ * file. The fork adds {@code jdk.incubator.vector}; without it the
+ * {@code vector} case silently measures the scalar scanner.
+ *
+ * @author Victor Ruan
+ */
+@Fork(jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ByteRunBenchmark extends CorpusState {
+
+    /**
+     * The scanner.
+     */
+    @Param({"scalar", "vector"})
+    public String scanner;
+
+    /**
+     * The corpus as UTF-8 in a direct buffer.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * The scanner under test.
+     */
+    private Object runs;
+
+    /**
+     * Encodes the corpus and creates the scanner.
+     */
+    @Setup
+    public void encode() {
+        byte[] utf8 = this.text.getBytes(StandardCharsets.UTF_8);
+        this.bytes = ByteBuffer.allocateDirect(utf8.length);
+        this.bytes.put(utf8).flip();
+        this.runs = this.workload.newByteRunScanner(this.scanner);
+    }
+
+    /**
+     * Walks the corpus run by run.
+     *
+     * @return the number of runs
+     */
+    @Benchmark
+    public int skipRuns() {
+        return this.workload.skipRuns(this.runs, this.bytes);
+    }
+}
@@ -0,0 +1,96 @@
+package tagcloud.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Loads the texts the benchmarks run on: the sample inputs in the
+ * generator's {@code data} directory, or a seeded Zipf-distributed corpus of
+ * a given size and vocabulary.
+ *
+ * @author Victor Ruan
+ */
+final class Corpora {
+
+    /**
+     * Name of the synthetic corpus parameter value.
+     */
+    static final String SYNTHETIC = "synthetic";
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Corpora() {
+    }
+
+    /**
+     * Returns the generator's data directory: the {@code tagcloud.data}
+     * system property if set, or else the first of
+     * {@code TagCloudGeneratorJC/data} and {@code ../TagCloudGeneratorJC/data}
+     * that exists.
+     *
+     * @return the data directory
+     */
+    static Path dataDirectory() {
+        String configured = System.getProperty("tagcloud.data");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path fromRoot = Paths.get("TagCloudGeneratorJC", "data");
+        if (Files.isDirectory(fromRoot)) {
+            return fromRoot;
+        }
+        return Paths.get("..", "TagCloudGeneratorJC", "data");
+    }
+
+    /**
+     * Loads the named corpus.
+     *
+     * @param name
+     *            a file in the data directory, or {@link #SYNTHETIC}
+     * @param syntheticBytes
+     *            the approximate size of a synthetic corpus
+     * @param syntheticVocabulary
+     *            the number of distinct words in a synthetic corpus
+     * @return the text of the corpus
+     */
+    static String load(String name, int syntheticBytes,
+            int syntheticVocabulary) {
+        try {
+            if (SYNTHETIC.equals(name)) {
+                return synthetic(syntheticBytes, syntheticVocabulary);
+            }
+            return new String(Files.readAllBytes(dataDirectory().resolve(name)),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns about {@code bytes} bytes of Zipf-distributed text.
+     *
+     * @param bytes
+     *            the approximate size of the text
+     * @param vocabulary
+     *            the number of distinct words
+     * @return the synthetic text
+     * @throws IOException
+     *             never, the text is built in memory
+     */
+    private static String synthetic(int bytes, int vocabulary)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes + 1024);
+        new ZipfCorpusGenerator(vocabulary,
+                ZipfCorpusGenerator.DEFAULT_EXPONENT,
+                ZipfCorpusGenerator.DEFAULT_WORDS_PER_LINE,
+                ZipfCorpusGenerator.DEFAULT_PUNCTUATION,
+                ZipfCorpusGenerator.DEFAULT_SEED).write(out, bytes);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
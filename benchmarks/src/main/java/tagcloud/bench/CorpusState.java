@@ -0,0 +1,55 @@
+package tagcloud.bench;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Common state of the benchmarks: the corpus under test and the workload
+ * bound to the generator.
+ *
+ * @author Victor Ruan
+ */
+@State(Scope.Benchmark)
+public abstract class CorpusState {
+
+    /**
+     * The corpus: a file in the generator's data directory, or
+     * {@code synthetic}.
+     */
+    @Param({"alice.txt", "importance.txt", Corpora.SYNTHETIC})
+    public String corpus;
+
+    /**
+     * Approximate size of the synthetic corpus in bytes.
+     */
+    @Param({"8388608"})
+    public int syntheticBytes;
+
+    /**
+     * Number of distinct words in the synthetic corpus.
+     */
+    @Param({"100000"})
+    public int syntheticVocabulary;
+
+    /**
+     * The operations under test.
+     */
+    protected Workload workload;
+
+    /**
+     * Text of the corpus.
+     */
+    protected String text;
+
+    /**
+     * Loads the corpus and binds the workload.
+     */
+    @Setup
+    public void loadCorpus() {
+        this.workload = Workload.load();
+        this.text = Corpora.load(this.corpus, this.syntheticBytes,
+                this.syntheticVocabulary);
+    }
+}
@@ -0,0 +1,38 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Counting throughput: {@code mapWithWordCount} and {@code countWords} over
+ * an in-memory reader.
+ *
+ * @author Victor Ruan
+ */
+public class CountingBenchmark extends CorpusState {
+
+    /**
+     * {@code mapWithWordCount}, which builds a {@code Map}.
+     *
+     * @return the word counts
+     * @throws IOException
+     *             never
+     */
+    @Benchmark
+    public Object mapWithWordCount() throws IOException {
+        return this.workload.mapWithWordCount(this.text);
+    }
+
+    /**
+     * {@code countWords}, which builds a {@code WordCounter}.
+     *
+     * @return the word counts
+     * @throws IOException
+     *             never
+     */
+    @Benchmark
+    public Object countWords() throws IOException {
+        return this.workload.countWords(this.text);
+    }
+}
@@ -0,0 +1,68 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * {@code getFontSize} throughput over the counts of the most common words.
+ *
+ * @author Victor Ruan
+ */
+public class FontSizeBenchmark extends CorpusState {
+
+    /**
+     * Number of words sized per call.
+     */
+    @Param({"1000"})
+    public int numOfWords;
+
+    /**
+     * Counts of the most common words, in decreasing order.
+     */
+    private int[] counts;
+
+    /**
+     * Counts the corpus and keeps the top counts.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Setup
+    public void selectCounts() throws IOException {
+        this.counts = this.workload.topCounts(
+                this.workload.countWords(this.text), this.numOfWords);
+    }
+
+    /**
+     * Sizes every selected word.
+     *
+     * @return a checksum of the size classes
+     */
+    @Benchmark
+    public int getFontSize() {
+        return this.workload.fontSizes(this.counts, this.counts[0]);
+    }
+
+    /**
+     * Sizes every selected word with a square-root curve.
+     *
+     * @return a checksum of the size classes
+     */
+    @Benchmark
+    public int sqrtScale() {
+        return this.workload.fontSizes(this.counts, this.counts[0], "SQRT");
+    }
+
+    /**
+     * Sizes every selected word with a logarithmic curve.
+     *
+     * @return a checksum of the size classes
+     */
+    @Benchmark
+    public int logScale() {
+        return this.workload.fontSizes(this.counts, this.counts[0], "LOG");
+    }
+}
@@ -0,0 +1,48 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * {@code generatePage} throughput from precomputed counts, writing to a
+ * sink that discards the page.
+ *
+ * @author Victor Ruan
+ */
+public class GeneratePageBenchmark extends CorpusState {
+
+    /**
+     * Number of words in the cloud.
+     */
+    @Param({"100", "1000"})
+    public int numOfWords;
+
+    /**
+     * Word counts of the corpus.
+     */
+    private Object counts;
+
+    /**
+     * Counts the corpus.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Setup
+    public void countCorpus() throws IOException {
+        this.counts = this.workload.countWords(this.text);
+    }
+
+    /**
+     * Selects, sorts and renders the cloud.
+     */
+    @Benchmark
+    public void generatePage() {
+        this.workload.generatePage(this.counts, this.numOfWords,
+                Writer.nullWriter());
+    }
+}
@@ -0,0 +1,74 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Counting one file sequentially with {@code MappedWordCount} against
+ * counting its chunks in parallel with {@code ParallelWordCount}. Setup checks that
+ * both give the same counts, so a run also verifies the parallel path.
+ *
+ * @author Victor Ruan
+ */
+public class ParallelCountingBenchmark extends CorpusState {
+
+    /**
+     * How the file is counted.
+     */
+    @Param({"sequential", "parallel"})
+    public String mode;
+
+    /**
+     * The corpus, written to a temporary UTF-8 file.
+     */
+    private Path file;
+
+    /**
+     * Writes the corpus to a file and checks that counting it in parallel
+     * gives the sequential counts.
+     *
+     * @throws IOException
+     *             if the file cannot be written or read
+     */
+    @Setup
+    public void writeFile() throws IOException {
+        this.file = Files.createTempFile("tagcloud-bench", ".txt");
+        Files.write(this.file, this.text.getBytes(StandardCharsets.UTF_8));
+        if (!this.workload.sameCounts(
+                this.workload.countFile(this.file, "sequential"),
+                this.workload.countFile(this.file, "parallel"))) {
+            throw new IllegalStateException("Parallel counts of "
+                    + this.corpus + " differ from the sequential counts");
+        }
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException
+     *             if the file cannot be deleted
+     */
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Counts the file.
+     *
+     * @return the counts
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Benchmark
+    public Object count() throws IOException {
+        return this.workload.countFile(this.file, this.mode);
+    }
+}
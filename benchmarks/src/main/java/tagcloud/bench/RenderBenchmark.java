@@ -0,0 +1,85 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * {@code TagCloudRenderer} throughput from precomputed counts in each
+ * output format, writing UTF-8 bytes to a channel that discards them.
+ *
+ * @author Victor Ruan
+ */
+public class RenderBenchmark extends CorpusState {
+
+    /**
+     * Number of words in the cloud.
+     */
+    @Param({"100", "1000"})
+    public int numOfWords;
+
+    /**
+     * Output format.
+     */
+    @Param({"html", "json", "csv", "svg"})
+    public String format;
+
+    /**
+     * Channel that discards everything written to it.
+     */
+    private static final class NullChannel implements WritableByteChannel {
+
+        /**
+         * The shared instance.
+         */
+        static final NullChannel INSTANCE = new NullChannel();
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Word counts of the corpus.
+     */
+    private Object counts;
+
+    /**
+     * Counts the corpus.
+     *
+     * @throws IOException
+     *             never
+     */
+    @Setup
+    public void countCorpus() throws IOException {
+        this.counts = this.workload.countWords(this.text);
+    }
+
+    /**
+     * Selects, sizes and renders the cloud.
+     *
+     * @throws IOException
+     *             never, the sink discards the document
+     */
+    @Benchmark
+    public void render() throws IOException {
+        this.workload.renderPage(this.counts, this.numOfWords, this.format,
+                NullChannel.INSTANCE);
+    }
+}
@@ -0,0 +1,77 @@
+package tagcloud.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Several threads counting the same words into one table: a
+ * {@code HashWordCounter} behind a single lock against the striped
+ * {@code ConcurrentWordCounter}. Every thread counts the same corpus words,
+ * so the hot words are contended as hard as they can be.
+ *
+ * @author Victor Ruan
+ */
+@Threads(4)
+public class SharedCountingBenchmark extends CorpusState {
+
+    /**
+     * Words counted per operation.
+     */
+    private static final int WORDS_PER_OP = 1 << 16;
+
+    /**
+     * The shared table.
+     */
+    @Param({"locked", "striped"})
+    public String counter;
+
+    /**
+     * The first {@code WORDS_PER_OP} words of the corpus.
+     */
+    private char[][] words;
+
+    /**
+     * The table, fresh for every iteration so counts cannot overflow.
+     */
+    private Object table;
+
+    /**
+     * Splits the start of the corpus into words.
+     */
+    @Setup
+    public void splitWords() {
+        List<char[]> list = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(this.text,
+                " \t\n\r,-.!?[]';:/()\"*`");
+        while (tokens.hasMoreTokens() && list.size() < WORDS_PER_OP) {
+            list.add(tokens.nextToken().toCharArray());
+        }
+        this.words = list.toArray(new char[0][]);
+    }
+
+    /**
+     * Creates an empty table.
+     */
+    @Setup(Level.Iteration)
+    public void newTable() {
+        this.table = this.workload.newSharedCounter(this.counter);
+    }
+
+    /**
+     * Counts the words into the shared table.
+     *
+     * @return the table
+     */
+    @Benchmark
+    public Object increment() {
+        this.workload.incrementAll(this.table, this.words);
+        return this.table;
+    }
+}
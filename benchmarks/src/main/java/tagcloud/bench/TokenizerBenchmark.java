@@ -0,0 +1,56 @@
+package tagcloud.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Tokenizer throughput: {@code nextWordOrSeparator} with the original boxed
+ * separator set and with {@code CharClass}, and the span tokenizer.
+ *
+ * @author Victor Ruan
+ */
+public class TokenizerBenchmark extends CorpusState {
+
+    /**
+     * Text of the corpus as a {@code char[]}.
+     */
+    private char[] chars;
+
+    /**
+     * Copies the corpus into a {@code char[]}.
+     */
+    @Setup
+    public void copyChars() {
+        this.chars = this.text.toCharArray();
+    }
+
+    /**
+     * {@code nextWordOrSeparator} with a {@code HashSet<Character>}.
+     *
+     * @return the number of tokens
+     */
+    @Benchmark
+    public int nextWordOrSeparatorHashSet() {
+        return this.workload.scanWithSet(this.text);
+    }
+
+    /**
+     * {@code nextWordOrSeparator} with a {@code CharClass}.
+     *
+     * @return the number of tokens
+     */
+    @Benchmark
+    public int nextWordOrSeparatorCharClass() {
+        return this.workload.scanWithCharClass(this.text);
+    }
+
+    /**
+     * {@code WordSpanTokenizer.tokenize} over a {@code char[]}.
+     *
+     * @return the number of words
+     */
+    @Benchmark
+    public int wordSpans() {
+        return this.workload.scanSpans(this.chars);
+    }
+}
@@ -0,0 +1,55 @@
+package tagcloud.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Counting UTF-8 bytes and selecting the top words: a {@code HashWordCounter}
+ * fed decoded chars against a {@code Utf8WordCounter} fed byte spans, which
+ * decodes only the candidates for the top words, and against the
+ * case-insensitive {@code FoldingWordCounter}.
+ *
+ * @author Victor Ruan
+ */
+public class Utf8CountingBenchmark extends CorpusState {
+
+    /**
+     * Words selected from the counts.
+     */
+    private static final int TOP_WORDS = 100;
+
+    /**
+     * The count table.
+     */
+    @Param({"chars", "bytes", "folded"})
+    public String table;
+
+    /**
+     * The corpus as UTF-8.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * Encodes the corpus.
+     */
+    @Setup
+    public void encode() {
+        this.bytes = ByteBuffer
+                .wrap(this.text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Counts the corpus and selects the top words.
+     *
+     * @return the top counts
+     */
+    @Benchmark
+    public int[] countAndSelect() {
+        return this.workload.topCounts(
+                this.workload.countUtf8(this.bytes, this.table), TOP_WORDS);
+    }
+}
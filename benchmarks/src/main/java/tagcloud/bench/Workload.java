@@ -0,0 +1,235 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Operations of the tag cloud generator measured by the benchmarks. JMH
+ * refuses benchmark classes in the default package, where the generator
+ * lives, so the benchmarks call it through this interface; the one
+ * implementation, {@code TagCloudWorkload}, sits in the default package and
+ * is bound once per trial, so the calls stay monomorphic and inline.
+ *
+ * @author Victor Ruan
+ */
+public interface Workload {
+
+    /**
+     * Returns the default-package implementation.
+     *
+     * @return the workload
+     */
+    static Workload load() {
+        try {
+            return (Workload) Class.forName("TagCloudWorkload")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("TagCloudWorkload not found", e);
+        }
+    }
+
+    /**
+     * Walks {@code text} with {@code nextWordOrSeparator} and a
+     * {@code HashSet<Character>} of separators.
+     *
+     * @param text
+     *            the text
+     * @return the number of words and separator runs found
+     */
+    int scanWithSet(String text);
+
+    /**
+     * Walks {@code text} with {@code nextWordOrSeparator} and a compiled
+     * {@code CharClass} of separators.
+     *
+     * @param text
+     *            the text
+     * @return the number of words and separator runs found
+     */
+    int scanWithCharClass(String text);
+
+    /**
+     * Walks {@code text} with the allocation-free span tokenizer.
+     *
+     * @param text
+     *            the text
+     * @return the number of words found
+     */
+    int scanSpans(char[] text);
+
+    /**
+     * Runs {@code mapWithWordCount} over {@code text}.
+     *
+     * @param text
+     *            the text
+     * @return the resulting map
+     * @throws IOException
+     *             never, the text is in memory
+     */
+    Object mapWithWordCount(String text) throws IOException;
+
+    /**
+     * Runs {@code countWords} over {@code text}.
+     *
+     * @param text
+     *            the text
+     * @return the resulting {@code WordCounter}
+     * @throws IOException
+     *             never, the text is in memory
+     */
+    Object countWords(String text) throws IOException;
+
+    /**
+     * Returns the counts of the {@code k} most common words.
+     *
+     * @param counts
+     *            a {@code WordCounter} from {@link #countWords(String)}
+     * @param k
+     *            the number of words
+     * @return the counts in decreasing order
+     */
+    int[] topCounts(Object counts, int k);
+
+    /**
+     * Runs {@code getFontSize} for every count.
+     *
+     * @param counts
+     *            the word counts
+     * @param largestCount
+     *            the largest count
+     * @return a checksum of the font size classes
+     */
+    int fontSizes(int[] counts, int largestCount);
+
+    /**
+     * Sizes every count with the named {@code FontScale} curve.
+     *
+     * @param counts
+     *            the word counts
+     * @param largestCount
+     *            the largest count
+     * @param scale
+     *            the name of the curve, such as {@code "LOG"}
+     * @return a checksum of the font size classes
+     */
+    int fontSizes(int[] counts, int largestCount, String scale);
+
+    /**
+     * Runs {@code generatePage} to {@code out}.
+     *
+     * @param counts
+     *            a {@code WordCounter} from {@link #countWords(String)}
+     * @param numOfWords
+     *            the number of words in the cloud
+     * @param out
+     *            receives the page
+     */
+    void generatePage(Object counts, int numOfWords, Writer out);
+
+    /**
+     * Runs {@code generatePage} through the named {@code TagCloudRenderer}
+     * to {@code out}.
+     *
+     * @param counts
+     *            a {@code WordCounter} from {@link #countWords(String)}
+     * @param numOfWords
+     *            the number of words in the cloud
+     * @param format
+     *            the renderer name, such as {@code "html"}
+     * @param out
+     *            receives the page
+     * @throws IOException
+     *             if {@code out} cannot be written
+     */
+    void renderPage(Object counts, int numOfWords, String format,
+            WritableByteChannel out) throws IOException;
+
+    /**
+     * Returns an empty table that many threads may count into.
+     *
+     * @param kind
+     *            {@code "locked"} for a {@code HashWordCounter} behind one
+     *            lock, or {@code "striped"} for a
+     *            {@code ConcurrentWordCounter}
+     * @return the table
+     */
+    Object newSharedCounter(String kind);
+
+    /**
+     * Increments every word in {@code counter}, from any thread, and flushes
+     * what the calling thread buffered.
+     *
+     * @param counter
+     *            a table from {@link #newSharedCounter(String)}
+     * @param words
+     *            the words
+     */
+    void incrementAll(Object counter, char[][] words);
+
+    /**
+     * Counts the words of UTF-8 text with {@code Utf8WordScanner}.
+     *
+     * @param utf8
+     *            the text
+     * @param table
+     *            {@code "chars"} for a {@code HashWordCounter},
+     *            {@code "bytes"} for a {@code Utf8WordCounter}, or
+     *            {@code "folded"} for a case-insensitive
+     *            {@code FoldingWordCounter}
+     * @return the resulting {@code WordCounter}
+     */
+    Object countUtf8(ByteBuffer utf8, String table);
+
+    /**
+     * Returns a scanner of ASCII byte runs.
+     *
+     * @param kind
+     *            {@code "scalar"} for the table-driven scanner, or
+     *            {@code "vector"} for the one {@code ByteRunScanner.of}
+     *            picks, which uses the Vector API when the JVM has the
+     *            module
+     * @return the scanner
+     */
+    Object newByteRunScanner(String kind);
+
+    /**
+     * Walks {@code bytes} from position to limit a run at a time, stepping
+     * over each non-ASCII byte on its own.
+     *
+     * @param scanner
+     *            a scanner from {@link #newByteRunScanner(String)}
+     * @param bytes
+     *            UTF-8 encoded text
+     * @return the number of runs and non-ASCII bytes found
+     */
+    int skipRuns(Object scanner, ByteBuffer bytes);
+
+    /**
+     * Counts the words of a UTF-8 file.
+     *
+     * @param file
+     *            the file
+     * @param mode
+     *            {@code "sequential"} for {@code MappedWordCount} on the
+     *            calling thread, or {@code "parallel"} for
+     *            {@code ParallelWordCount} on the common pool
+     * @return the resulting {@code WordCounter}
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    Object countFile(Path file, String mode) throws IOException;
+
+    /**
+     * Reports whether two {@code WordCounter}s hold the same counts.
+     *
+     * @param counts
+     *            a {@code WordCounter}
+     * @param other
+     *            another {@code WordCounter}
+     * @return true iff every word has the same count in both
+     */
+    boolean sameCounts(Object counts, Object other);
+}
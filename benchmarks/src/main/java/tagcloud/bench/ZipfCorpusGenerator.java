@@ -0,0 +1,402 @@
+package tagcloud.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Writes reproducible synthetic text whose word frequencies follow a Zipf
+ * distribution, for scaling tests far beyond the sample inputs. Words are
+ * drawn in O(1) each with Vose's alias method and written through a small
+ * byte buffer, so corpora of any size stream to disk in constant memory
+ * (apart from the vocabulary itself).
+ *
+ * <p>
+ * The same seed and parameters always produce the same bytes.
+ *
+ * @author Victor Ruan
+ */
+public final class ZipfCorpusGenerator {
+
+    /**
+     * Default number of distinct words.
+     */
+    public static final int DEFAULT_VOCABULARY = 100_000;
+
+    /**
+     * Default Zipf exponent; 1.0 is typical of natural language.
+     */
+    public static final double DEFAULT_EXPONENT = 1.0;
+
+    /**
+     * Default mean number of words per line.
+     */
+    public static final int DEFAULT_WORDS_PER_LINE = 12;
+
+    /**
+     * Default probability that a word is followed by punctuation rather than
+     * a single space.
+     */
+    public static final double DEFAULT_PUNCTUATION = 0.15;
+
+    /**
+     * Default seed.
+     */
+    public static final long DEFAULT_SEED = 2231;
+
+    /**
+     * Punctuation runs written after a word; those ending a sentence come
+     * first.
+     */
+    private static final byte[][] PUNCTUATION = {ascii(". "), ascii("! "),
+        ascii("? "), ascii(", "), ascii("; "), ascii(": "), ascii(" - "),
+        ascii(" ("), ascii(") "), ascii(" \""), ascii("\" "), ascii(" '"),
+        ascii("' "), ascii("*"), ascii("/"), ascii("["), ascii("] "),
+        ascii("\t"), ascii("`")};
+
+    /**
+     * Number of leading {@code PUNCTUATION} runs that end a sentence.
+     */
+    private static final int SENTENCE_ENDS = 3;
+
+    /**
+     * Size of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Letters words are made of.
+     */
+    private static final int ALPHABET = 26;
+
+    /**
+     * Attempts at a word length before trying a longer word.
+     */
+    private static final int ATTEMPTS_PER_LENGTH = 8;
+
+    /**
+     * Vocabulary in rank order, as ASCII bytes.
+     */
+    private final byte[][] words;
+
+    /**
+     * Alias table: acceptance probability of each rank.
+     */
+    private final double[] probability;
+
+    /**
+     * Alias table: rank drawn when a rank is not accepted.
+     */
+    private final int[] alias;
+
+    /**
+     * Mean number of words per line.
+     */
+    private final int wordsPerLine;
+
+    /**
+     * Probability of punctuation after a word.
+     */
+    private final double punctuation;
+
+    /**
+     * Seed of the word stream.
+     */
+    private final long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param vocabulary
+     *            the number of distinct words
+     * @param exponent
+     *            the Zipf exponent
+     * @param wordsPerLine
+     *            the mean number of words per line
+     * @param punctuation
+     *            the probability of punctuation after a word
+     * @param seed
+     *            the seed of the vocabulary and the word stream
+     * @requires vocabulary > 0 and exponent >= 0 and wordsPerLine > 0 and
+     *           0 <= punctuation <= 1
+     */
+    public ZipfCorpusGenerator(int vocabulary, double exponent,
+            int wordsPerLine, double punctuation, long seed) {
+        assert vocabulary > 0 : "Violation of: vocabulary > 0";
+        assert exponent >= 0 : "Violation of: exponent >= 0";
+        assert wordsPerLine > 0 : "Violation of: wordsPerLine > 0";
+        assert 0 <= punctuation
+                && punctuation <= 1 : "Violation of: 0 <= punctuation <= 1";
+
+        this.words = vocabulary(vocabulary, new SplittableRandom(~seed));
+        this.probability = new double[vocabulary];
+        this.alias = new int[vocabulary];
+        this.buildAliasTable(exponent);
+        this.wordsPerLine = wordsPerLine;
+        this.punctuation = punctuation;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the ASCII bytes of {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return its bytes
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns {@code size} distinct lowercase words. Lower ranks tend to get
+     * shorter words, as in natural language.
+     *
+     * @param size
+     *            the number of words
+     * @param random
+     *            the source of letters
+     * @return the words in rank order
+     */
+    private static byte[][] vocabulary(int size, SplittableRandom random) {
+        final int minLength = 1;
+        byte[][] result = new byte[size][];
+        Set<String> seen = new HashSet<>(2 * size);
+        for (int rank = 0; rank < size; rank++) {
+            // Typical length grows with the log of the rank
+            int length = minLength + random.nextInt(
+                    2 + 32 - Integer.numberOfLeadingZeros(rank + 1));
+            String word;
+            int attempts = 0;
+            do {
+                char[] letters = new char[length];
+                for (int i = 0; i < length; i++) {
+                    letters[i] = (char) ('a' + random.nextInt(ALPHABET));
+                }
+                word = new String(letters);
+                attempts++;
+                if (attempts % ATTEMPTS_PER_LENGTH == 0) {
+                    length++;
+                }
+            } while (!seen.add(word));
+            result[rank] = ascii(word);
+        }
+        return result;
+    }
+
+    /**
+     * Fills the alias table for P(rank r) proportional to 1 / (r + 1)^s.
+     *
+     * @param exponent
+     *            the Zipf exponent s
+     */
+    private void buildAliasTable(double exponent) {
+        int n = this.words.length;
+        double[] scaled = new double[n];
+        double total = 0;
+        for (int r = 0; r < n; r++) {
+            scaled[r] = Math.pow(r + 1, -exponent);
+            total += scaled[r];
+        }
+
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int r = 0; r < n; r++) {
+            scaled[r] = scaled[r] * n / total;
+            if (scaled[r] < 1) {
+                small.push(r);
+            } else {
+                large.push(r);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int s = small.pop();
+            int l = large.pop();
+            this.probability[s] = scaled[s];
+            this.alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1;
+            if (scaled[l] < 1) {
+                small.push(l);
+            } else {
+                large.push(l);
+            }
+        }
+        while (!large.isEmpty()) {
+            this.probability[large.pop()] = 1;
+        }
+        while (!small.isEmpty()) {
+            this.probability[small.pop()] = 1;
+        }
+    }
+
+    /**
+     * Draws a word rank.
+     *
+     * @param random
+     *            the source of randomness
+     * @return a rank with Zipf probability
+     */
+    private int nextRank(SplittableRandom random) {
+        int r = random.nextInt(this.words.length);
+        if (random.nextDouble() < this.probability[r]) {
+            return r;
+        }
+        return this.alias[r];
+    }
+
+    /**
+     * Writes at least {@code bytes} bytes of text to {@code out}, stopping at
+     * the end of the line that reaches the size.
+     *
+     * @param out
+     *            the output stream; it is flushed but not closed
+     * @param bytes
+     *            the size to reach
+     * @return the number of bytes written
+     * @throws IOException
+     *             if the text cannot be written
+     */
+    public long write(OutputStream out, long bytes) throws IOException {
+        assert out != null : "Violation of: out is not null";
+
+        SplittableRandom random = new SplittableRandom(this.seed);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int used = 0;
+        long written = 0;
+        boolean sentenceStart = true;
+        while (written + used < bytes) {
+            int lineWords = 1 + random.nextInt(2 * this.wordsPerLine - 1);
+            for (int w = 0; w < lineWords; w++) {
+                byte[] word = this.words[this.nextRank(random)];
+                int mark = -1;
+                int needed = word.length + 1;
+                if (w + 1 < lineWords
+                        && random.nextDouble() < this.punctuation) {
+                    mark = random.nextInt(PUNCTUATION.length);
+                    needed += PUNCTUATION[mark].length;
+                }
+                if (used + needed > buffer.length) {
+                    out.write(buffer, 0, used);
+                    written += used;
+                    used = 0;
+                }
+
+                System.arraycopy(word, 0, buffer, used, word.length);
+                if (sentenceStart) {
+                    buffer[used] = (byte) Character.toUpperCase(buffer[used]);
+                    sentenceStart = false;
+                }
+                used += word.length;
+                if (w + 1 == lineWords) {
+                    buffer[used] = '\n';
+                    used++;
+                } else if (mark < 0) {
+                    buffer[used] = ' ';
+                    used++;
+                } else {
+                    byte[] run = PUNCTUATION[mark];
+                    System.arraycopy(run, 0, buffer, used, run.length);
+                    used += run.length;
+                    sentenceStart = mark < SENTENCE_ENDS;
+                }
+            }
+        }
+        out.write(buffer, 0, used);
+        out.flush();
+        return written + used;
+    }
+
+    /**
+     * Parses a size such as {@code 512K}, {@code 64M} or {@code 10G}.
+     *
+     * @param size
+     *            the size, with an optional binary suffix
+     * @return the number of bytes
+     */
+    static long parseSize(String size) {
+        final int kilo = 10;
+        final int mega = 20;
+        final int giga = 30;
+        String digits = size.trim().toUpperCase();
+        int shift = 0;
+        char suffix = digits.charAt(digits.length() - 1);
+        if (suffix == 'K' || suffix == 'M' || suffix == 'G') {
+            if (suffix == 'K') {
+                shift = kilo;
+            } else if (suffix == 'M') {
+                shift = mega;
+            } else {
+                shift = giga;
+            }
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        return Long.parseLong(digits) << shift;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            {@code <output file> <size>} followed by optional
+     *            {@code --vocabulary N}, {@code --exponent S},
+     *            {@code --words-per-line N}, {@code --punctuation P} and
+     *            {@code --seed N}
+     * @throws IOException
+     *             if the output cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println("Usage: ZipfCorpusGenerator <output file> "
+                    + "<size, e.g. 10G> [--vocabulary N] [--exponent S] "
+                    + "[--words-per-line N] [--punctuation P] [--seed N]");
+            return;
+        }
+
+        int vocabulary = DEFAULT_VOCABULARY;
+        double exponent = DEFAULT_EXPONENT;
+        int wordsPerLine = DEFAULT_WORDS_PER_LINE;
+        double punctuation = DEFAULT_PUNCTUATION;
+        long seed = DEFAULT_SEED;
+        for (int i = 2; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--vocabulary":
+                    vocabulary = Integer.parseInt(value);
+                    break;
+                case "--exponent":
+                    exponent = Double.parseDouble(value);
+                    break;
+                case "--words-per-line":
+                    wordsPerLine = Integer.parseInt(value);
+                    break;
+                case "--punctuation":
+                    punctuation = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        ZipfCorpusGenerator generator = new ZipfCorpusGenerator(vocabulary,
+                exponent, wordsPerLine, punctuation, seed);
+        long start = System.nanoTime();
+        long written;
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[0]))) {
+            written = generator.write(out, parseSize(args[1]));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %d bytes to %s in %.1f s%n", written, args[0],
+                seconds);
+    }
+}